@@ -0,0 +1,151 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.GC;
+
+/**
+ * A synthetic bare repository for the benchmarks : files of random content spread in a tree of folders, committed
+ * with a history where each commit modifies one file out of a hundred.
+ */
+public final class GitBenchmarkRepository implements Closeable
+{
+
+	private final File gitDir;
+	private final List<String> files;
+	private final List<String> folders;
+
+	private GitBenchmarkRepository(File gitDir, List<String> files, List<String> folders)
+	{
+		this.gitDir = gitDir;
+		this.files = files;
+		this.folders = folders;
+	}
+
+	/**
+	 * @param fileCount the number of files of the tree
+	 * @param depth the number of folders above each file
+	 * @param blobSize the size in bytes of each file
+	 * @param historyLength the number of commits
+	 * @param packed pack the objects, otherwise they are left loose
+	 */
+	public static GitBenchmarkRepository create(int fileCount, int depth, int blobSize, int historyLength, boolean packed) throws IOException
+	{
+		File gitDir = File.createTempFile("git", "benchmark");
+		gitDir.delete();
+		gitDir.mkdirs();
+		Repository repository = new RepositoryBuilder().setGitDir(gitDir).setBare().build();
+		repository.create(true);
+
+		// the same number of entries in every folder
+		int fanOut = Math.max(2, (int) Math.ceil(Math.pow(fileCount, 1.0 / (depth + 1))));
+		List<String> files = new ArrayList<String>();
+		Set<String> folders = new LinkedHashSet<String>();
+		for (int i = 0; i < fileCount; i++)
+		{
+			StringBuilder path = new StringBuilder();
+			for (int level = depth; level > 0; level--)
+			{
+				path.append("folder").append((int) (i / Math.pow(fanOut, level)) % fanOut).append('/');
+			}
+			String folder = path.length() == 0 ? "" : path.substring(0, path.length() - 1);
+			if ( folder.length() > 0 )
+			{
+				folders.add(folder);
+			}
+			files.add(path.append("file").append(i).append(".txt").toString());
+		}
+
+		StandardFileSystemManager manager = new StandardFileSystemManager();
+		manager.init();
+		try
+		{
+			GitFileSystem fileSystem = (GitFileSystem) manager.resolveFile("git://" + gitDir.getAbsolutePath(), new FileSystemOptions()).getFileSystem();
+			Random random = new Random(42);
+			for (int commit = 0; commit < historyLength; commit++)
+			{
+				GitTransaction transaction = fileSystem.beginTransaction();
+				try
+				{
+					int step = commit == 0 ? 1 : 100;
+					for (int i = random.nextInt(step); i < files.size(); i += step)
+					{
+						byte[] content = new byte[blobSize];
+						random.nextBytes(content);
+						transaction.write(files.get(i), content);
+					}
+					transaction.commit("commit " + commit);
+				} finally
+				{
+					transaction.close();
+				}
+			}
+		} finally
+		{
+			manager.close();
+		}
+
+		if ( packed )
+		{
+			try
+			{
+				new GC((FileRepository) repository).gc();
+			} catch (ParseException e)
+			{
+				throw new IOException(e);
+			}
+		}
+		repository.close();
+		return new GitBenchmarkRepository(gitDir, Collections.unmodifiableList(files), Collections.unmodifiableList(new ArrayList<String>(folders)));
+	}
+
+	public File getGitDir()
+	{
+		return gitDir;
+	}
+
+	/**
+	 * @return the uri of the root of the repository
+	 */
+	public String getUri()
+	{
+		return "git://" + gitDir.getAbsolutePath();
+	}
+
+	/**
+	 * @return the paths of the files relative to the repository root
+	 */
+	public List<String> getFiles()
+	{
+		return files;
+	}
+
+	/**
+	 * @return the paths of the folders relative to the repository root, except the root
+	 */
+	public List<String> getFolders()
+	{
+		return folders;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		FileUtils.deleteDirectory(gitDir);
+	}
+}
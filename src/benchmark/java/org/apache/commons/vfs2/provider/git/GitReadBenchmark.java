@@ -0,0 +1,153 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The read paths of the provider on a synthetic repository. The files are picked at random ; the lookups refresh the
+ * file first so that the entry is looked up in the tree again instead of being answered by the cached file object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitReadBenchmark
+{
+
+	private static final int READ_SIZE = 4096;
+
+	@Param({ "1000", "10000" })
+	public int fileCount;
+
+	@Param({ "3" })
+	public int depth;
+
+	@Param({ "1024", "262144" })
+	public int blobSize;
+
+	@Param({ "10" })
+	public int historyLength;
+
+	@Param({ "true", "false" })
+	public boolean packed;
+
+	private GitBenchmarkRepository repository;
+	private StandardFileSystemManager manager;
+	private FileObject root;
+	private List<String> files;
+	private List<String> folders;
+	private final Random random = new Random(42);
+
+	@Setup(Level.Trial)
+	public void createRepository() throws IOException
+	{
+		repository = GitBenchmarkRepository.create(fileCount, depth, blobSize, historyLength, packed);
+		files = repository.getFiles();
+		folders = repository.getFolders();
+		manager = new StandardFileSystemManager();
+		manager.init();
+		root = manager.resolveFile(repository.getUri(), new FileSystemOptions());
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteRepository() throws IOException
+	{
+		manager.close();
+		repository.close();
+	}
+
+	@Benchmark
+	public FileObject resolveFile() throws IOException
+	{
+		return root.resolveFile(randomFile());
+	}
+
+	@Benchmark
+	public FileType getType() throws IOException
+	{
+		FileObject file = root.resolveFile(randomFile());
+		file.refresh();
+		return file.getType();
+	}
+
+	@Benchmark
+	public FileObject[] getChildren() throws IOException
+	{
+		FileObject folder = folders.isEmpty() ? root : root.resolveFile(folders.get(random.nextInt(folders.size())));
+		folder.refresh();
+		return folder.getChildren();
+	}
+
+	@Benchmark
+	public void getInputStream(Blackhole blackhole) throws IOException
+	{
+		InputStream inputStream = root.resolveFile(randomFile()).getContent().getInputStream();
+		try
+		{
+			byte[] buffer = new byte[READ_SIZE];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1)
+			{
+				blackhole.consume(read);
+			}
+			blackhole.consume(buffer);
+		} finally
+		{
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	@Benchmark
+	public byte[] randomAccess() throws IOException
+	{
+		RandomAccessContent content = root.resolveFile(randomFile()).getContent().getRandomAccessContent(RandomAccessMode.READ);
+		try
+		{
+			byte[] buffer = new byte[Math.min(READ_SIZE, blobSize)];
+			content.seek(random.nextInt(blobSize - buffer.length + 1));
+			content.readFully(buffer);
+			return buffer;
+		} finally
+		{
+			content.close();
+		}
+	}
+
+	@Benchmark
+	public FileObject[] findFiles() throws IOException
+	{
+		return root.findFiles(GitFileSelector.suffix("7.txt"));
+	}
+
+	private String randomFile()
+	{
+		return files.get(random.nextInt(files.size()));
+	}
+}
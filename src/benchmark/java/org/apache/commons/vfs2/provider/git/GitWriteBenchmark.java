@@ -0,0 +1,107 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The write paths of the provider, in files per second : a commit for each file written through its output stream,
+ * against a bulk import of many files committed once by a {@link GitTransaction}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitWriteBenchmark
+{
+
+	private static final int BULK_IMPORT_SIZE = 1000;
+
+	@Param({ "1000" })
+	public int fileCount;
+
+	@Param({ "1024" })
+	public int blobSize;
+
+	private GitBenchmarkRepository repository;
+	private StandardFileSystemManager manager;
+	private FileObject root;
+	private byte[] content;
+	private int written;
+
+	@Setup(Level.Trial)
+	public void createRepository() throws IOException
+	{
+		repository = GitBenchmarkRepository.create(fileCount, 2, blobSize, 1, true);
+		manager = new StandardFileSystemManager();
+		manager.init();
+		root = manager.resolveFile(repository.getUri(), new FileSystemOptions());
+		content = new byte[blobSize];
+		new Random(42).nextBytes(content);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteRepository() throws IOException
+	{
+		manager.close();
+		repository.close();
+	}
+
+	@Benchmark
+	public void writeAndCommit() throws IOException
+	{
+		OutputStream outputStream = root.resolveFile(nextPath()).getContent().getOutputStream();
+		try
+		{
+			outputStream.write(content);
+		} finally
+		{
+			outputStream.close();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BULK_IMPORT_SIZE)
+	public void bulkImport() throws IOException
+	{
+		GitTransaction transaction = ((GitFileSystem) root.getFileSystem()).beginTransaction();
+		try
+		{
+			for (int i = 0; i < BULK_IMPORT_SIZE; i++)
+			{
+				transaction.write(nextPath(), content);
+			}
+			transaction.commit("Import " + BULK_IMPORT_SIZE + " files");
+		} finally
+		{
+			transaction.close();
+		}
+	}
+
+	private String nextPath()
+	{
+		written++;
+		return "import/" + (written % 100) + "/file" + written + ".txt";
+	}
+}
@@ -0,0 +1,147 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * Inflated content of the small blobs of a repository, keyed by object id : a blob never changes, so its content is
+ * shared by all the references and file systems reading it. The cache is bounded by the total size of the blobs and
+ * evicts the least recently used ones. The content is kept in heap arrays or in direct (off-heap) buffers.
+ */
+final class GitBlobCache
+{
+
+	private final Cache<ObjectId, ByteBuffer> blobs;
+	private final int maxBlobSize;
+	private final boolean offHeap;
+
+	/**
+	 * @param maxBytes the maximum total size of the cached blobs
+	 * @param maxBlobSize the size of the largest blob to cache
+	 * @param offHeap keep the blobs in direct buffers
+	 */
+	GitBlobCache(long maxBytes, int maxBlobSize, boolean offHeap)
+	{
+		this.maxBlobSize = maxBlobSize;
+		this.offHeap = offHeap;
+		this.blobs = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<ObjectId, ByteBuffer>()
+		{
+			@Override
+			public int weigh(ObjectId key, ByteBuffer value)
+			{
+				return value.capacity();
+			}
+		}).recordStats().build();
+	}
+
+	/**
+	 * @param metrics the counters of the reading file system, which counts its own hits and misses
+	 * @return a read only buffer of the content of the blob or null if the blob is too large to be cached
+	 */
+	ByteBuffer getContent(Repository repository, ObjectId blobId, GitMetrics metrics) throws IOException
+	{
+		ByteBuffer content = blobs.getIfPresent(blobId);
+		metrics.blobCacheRead(content != null);
+		if ( content == null )
+		{
+			ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+			if ( loader.isLarge() || loader.getSize() > maxBlobSize )
+			{
+				return null;
+			}
+
+			byte[] bytes = loader.getCachedBytes();
+			if ( offHeap )
+			{
+				content = ByteBuffer.allocateDirect(bytes.length);
+				content.put(bytes);
+				content.flip();
+			} else
+			{
+				content = ByteBuffer.wrap(bytes);
+			}
+			content = content.asReadOnlyBuffer();
+			blobs.put(blobId.copy(), content);
+		}
+		// the cached buffer is shared, its position mustn't move
+		return content.duplicate();
+	}
+
+	/**
+	 * Open the content of a blob, from the cache if the blob is small enough.
+	 */
+	InputStream openStream(Repository repository, ObjectId blobId, GitMetrics metrics) throws IOException
+	{
+		ByteBuffer content = getContent(repository, blobId, metrics);
+		if ( content == null )
+		{
+			return repository.open(blobId, Constants.OBJ_BLOB).openStream();
+		}
+		return new BufferInputStream(content);
+	}
+
+	/**
+	 * @return the statistics of the cache, for all the file systems of the repository
+	 */
+	CacheStats getStats()
+	{
+		return blobs.stats();
+	}
+
+	private static final class BufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if ( len == 0 )
+			{
+				return 0;
+			}
+			if ( !buffer.hasRemaining() )
+			{
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n)
+		{
+			int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepository;
+
+/**
+ * Collect the content of a blob until the stream is closed, then insert it : this isn't streaming, the object
+ * database needs the length of a blob before its content since the length is part of the header the object id is
+ * computed from. The content is kept in memory up to a threshold and beyond in a temporary file of the objects
+ * directory, next to the temporary files of the loose objects, so that a large blob is copied on the disk holding the
+ * objects only.
+ */
+abstract class GitBlobOutputStream extends OutputStream
+{
+
+	static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+	private final File tempDirectory;
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private File tempFile;
+	private OutputStream out = buffer;
+	private long length;
+	private boolean closed;
+
+	GitBlobOutputStream(Repository repository)
+	{
+		this.tempDirectory = repository instanceof FileRepository ? ((FileRepository) repository).getObjectsDirectory() : repository.getDirectory();
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		spillIfNeeded(1);
+		out.write(b);
+		length++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		spillIfNeeded(len);
+		out.write(b, off, len);
+		length += len;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if ( closed )
+		{
+			return;
+		}
+		closed = true;
+
+		try
+		{
+			out.close();
+			InputStream content = tempFile == null ? new ByteArrayInputStream(buffer.toByteArray()) : new FileInputStream(tempFile);
+			try
+			{
+				insert(content, length);
+			} finally
+			{
+				IOUtils.closeQuietly(content);
+			}
+		} finally
+		{
+			buffer = null;
+			if ( tempFile != null )
+			{
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Called once when the stream is closed.
+	 * @param content the whole content written
+	 * @param contentLength the number of bytes of the content
+	 */
+	protected abstract void insert(InputStream content, long contentLength) throws IOException;
+
+	private void spillIfNeeded(int len) throws IOException
+	{
+		if ( tempFile == null && length + len > MEMORY_THRESHOLD )
+		{
+			tempFile = File.createTempFile("vfs-git", ".tmp", tempDirectory);
+			out = new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024);
+			buffer.writeTo(out);
+			buffer = null;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a commit can't move a branch because somebody else moved it since the changes were staged. The changes
+ * can be staged again on top of the new head of the branch.
+ */
+public class GitBranchMovedException extends IOException
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private final String branch;
+
+	public GitBranchMovedException(String branch, String message)
+	{
+		super(message);
+		this.branch = branch;
+	}
+
+	/**
+	 * @return the full name of the branch
+	 */
+	public String getBranch()
+	{
+		return branch;
+	}
+}
@@ -0,0 +1,96 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.provider.AbstractRandomAccessStreamContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+
+/**
+ * Read only random access over a blob fully loaded in a heap or direct buffer.
+ */
+class GitBufferRandomAccessContent extends AbstractRandomAccessStreamContent
+{
+
+	private final ByteBuffer buffer;
+	private final DataInputStream dis;
+
+	GitBufferRandomAccessContent(ByteBuffer buffer, RandomAccessMode mode)
+	{
+		super(mode);
+		this.buffer = buffer;
+		this.dis = new DataInputStream(new InputStream()
+		{
+			@Override
+			public int read()
+			{
+				return GitBufferRandomAccessContent.this.buffer.hasRemaining() ? GitBufferRandomAccessContent.this.buffer.get() & 0xff : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len)
+			{
+				ByteBuffer source = GitBufferRandomAccessContent.this.buffer;
+				if (len == 0)
+				{
+					return 0;
+				}
+				if (!source.hasRemaining())
+				{
+					return -1;
+				}
+				int count = Math.min(len, source.remaining());
+				source.get(b, off, count);
+				return count;
+			}
+
+			@Override
+			public long skip(long n)
+			{
+				ByteBuffer source = GitBufferRandomAccessContent.this.buffer;
+				int count = (int) Math.max(0, Math.min(n, source.remaining()));
+				source.position(source.position() + count);
+				return count;
+			}
+
+			@Override
+			public int available()
+			{
+				return GitBufferRandomAccessContent.this.buffer.remaining();
+			}
+		});
+	}
+
+	@Override
+	protected DataInputStream getDataInputStream() throws IOException
+	{
+		return dis;
+	}
+
+	public long getFilePointer() throws IOException
+	{
+		return buffer.position();
+	}
+
+	public void seek(long pos) throws IOException
+	{
+		if (pos < 0 || pos > buffer.limit())
+		{
+			throw new FileSystemException("vfs.provider/random-access-invalid-position.error", new Object[] { Long.valueOf(pos) });
+		}
+		buffer.position((int) pos);
+	}
+
+	public long length() throws IOException
+	{
+		return buffer.limit();
+	}
+
+	public void close() throws IOException
+	{
+		// nothing to release, the buffer is left to the garbage collector
+	}
+}
@@ -0,0 +1,195 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.ObjectDirectory;
+import org.eclipse.jgit.storage.file.PackFile;
+
+/**
+ * Read many blobs in the order they are stored in the packs, so that consecutive reads hit the same pack windows
+ * instead of seeking back and forth. The blobs are read in batches of consecutive blobs, one batch per task when an
+ * executor is given. The blobs are taken from the blob cache of the file system when it is enabled, and only the blobs
+ * up to a maximum size are loaded in memory.
+ */
+final class GitBulkReader
+{
+
+	// large enough for a batch to read a few pack windows in a row, small enough to spread over the threads
+	private static final int BATCH_SIZE = 64;
+
+	private final GitFileSystem fileSystem;
+	private final Repository repository;
+	private final int maxSize;
+
+	/**
+	 * @param maxSize the size of the largest blob to load in memory
+	 */
+	GitBulkReader(GitFileSystem fileSystem, Repository repository, int maxSize)
+	{
+		this.fileSystem = fileSystem;
+		this.repository = repository;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param executor the executor of the batches, null to read them in the calling thread
+	 * @return the read only content of each blob
+	 * @throws IOException if a blob is larger than the maximum size
+	 */
+	Map<ObjectId, ByteBuffer> read(Collection<ObjectId> blobIds, ExecutorService executor) throws IOException
+	{
+		List<ObjectId> sorted = sortByLocation(blobIds);
+		Map<ObjectId, ByteBuffer> contents = new HashMap<ObjectId, ByteBuffer>();
+		if ( executor == null )
+		{
+			contents.putAll(readBatch(sorted));
+			return contents;
+		}
+
+		List<Future<Map<ObjectId, ByteBuffer>>> batches = new ArrayList<Future<Map<ObjectId, ByteBuffer>>>();
+		try
+		{
+			for (int start = 0; start < sorted.size(); start += BATCH_SIZE)
+			{
+				final List<ObjectId> batch = sorted.subList(start, Math.min(start + BATCH_SIZE, sorted.size()));
+				batches.add(executor.submit(new Callable<Map<ObjectId, ByteBuffer>>()
+				{
+					@Override
+					public Map<ObjectId, ByteBuffer> call() throws IOException
+					{
+						return readBatch(batch);
+					}
+				}));
+			}
+			for (Future<Map<ObjectId, ByteBuffer>> batch : batches)
+			{
+				contents.putAll(batch.get());
+			}
+			return contents;
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the blobs");
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+			{
+				throw (IOException) cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		} finally
+		{
+			for (Future<Map<ObjectId, ByteBuffer>> batch : batches)
+			{
+				batch.cancel(true);
+			}
+		}
+	}
+
+	private Map<ObjectId, ByteBuffer> readBatch(List<ObjectId> blobIds) throws IOException
+	{
+		Map<ObjectId, ByteBuffer> contents = new HashMap<ObjectId, ByteBuffer>();
+		GitBlobCache blobCache = fileSystem.getBlobCache();
+		GitReaderPool readers = fileSystem.getReaderPool();
+		ObjectReader reader = readers.acquire();
+		try
+		{
+			for (ObjectId blobId : blobIds)
+			{
+				// the blobs read from the cache are counted by its hits and misses
+				ByteBuffer content = blobCache == null ? null : blobCache.getContent(repository, blobId, fileSystem.getMetricsRecorder());
+				if ( content == null )
+				{
+					ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+					if ( loader.getSize() > maxSize )
+					{
+						throw new IOException(String.format("The blob %s of %d bytes is larger than %d bytes, it must be read as a stream", blobId.name(),
+								loader.getSize(), maxSize));
+					}
+					// the bytes of a small blob are shared with JGit, they mustn't be written
+					byte[] bytes = loader.getCachedBytes(maxSize);
+					fileSystem.getMetricsRecorder().opened(bytes.length);
+					content = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+				}
+				contents.put(blobId, content);
+			}
+			return contents;
+		} finally
+		{
+			readers.release(reader);
+		}
+	}
+
+	/**
+	 * Sort the blobs by pack and offset in the pack, the loose blobs last.
+	 */
+	private List<ObjectId> sortByLocation(Collection<ObjectId> blobIds) throws IOException
+	{
+		List<ObjectId> sorted = new ArrayList<ObjectId>(blobIds);
+		ObjectDatabase objectDatabase = repository.getObjectDatabase();
+		if ( !(objectDatabase instanceof ObjectDirectory) )
+		{
+			return sorted;
+		}
+
+		Collection<PackFile> packs = ((ObjectDirectory) objectDatabase).getPacks();
+		final Map<ObjectId, long[]> locations = new HashMap<ObjectId, long[]>();
+		for (ObjectId blobId : sorted)
+		{
+			long[] location = { packs.size(), 0 };
+			int pack = 0;
+			for (PackFile packFile : packs)
+			{
+				long offset = packFile.getIndex().findOffset(blobId);
+				if ( offset != -1 )
+				{
+					location[0] = pack;
+					location[1] = offset;
+					break;
+				}
+				pack++;
+			}
+			locations.put(blobId, location);
+		}
+
+		Collections.sort(sorted, new Comparator<ObjectId>()
+		{
+			@Override
+			public int compare(ObjectId first, ObjectId second)
+			{
+				long[] firstLocation = locations.get(first);
+				long[] secondLocation = locations.get(second);
+				if ( firstLocation[0] != secondLocation[0] )
+				{
+					return firstLocation[0] < secondLocation[0] ? -1 : 1;
+				}
+				return firstLocation[1] < secondLocation[1] ? -1 : firstLocation[1] == secondLocation[1] ? 0 : 1;
+			}
+		});
+		return sorted;
+	}
+}
@@ -0,0 +1,88 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A change of a branch made outside of a {@link GitTransaction} : it can be replayed on a new transaction if the
+ * branch moved before it has been committed.
+ */
+abstract class GitChange
+{
+
+	private final String message;
+
+	private GitChange(String message)
+	{
+		this.message = message;
+	}
+
+	String getMessage()
+	{
+		return message;
+	}
+
+	abstract void apply(GitTransaction transaction) throws IOException;
+
+	/**
+	 * @param blobId the content of the file, already in the object database
+	 */
+	static GitChange write(final String path, final ObjectId blobId)
+	{
+		return new GitChange(String.format("Modify %s", path))
+		{
+			@Override
+			void apply(GitTransaction transaction) throws IOException
+			{
+				transaction.write(path, FileMode.REGULAR_FILE, blobId);
+			}
+		};
+	}
+
+	static GitChange delete(final String path)
+	{
+		return new GitChange(String.format("Delete %s", path))
+		{
+			@Override
+			void apply(GitTransaction transaction) throws IOException
+			{
+				transaction.delete(path);
+			}
+		};
+	}
+
+	static GitChange rename(final String source, final String destination)
+	{
+		return new GitChange(String.format("Rename %s to %s", source, destination))
+		{
+			@Override
+			void apply(GitTransaction transaction) throws IOException
+			{
+				transaction.rename(source, destination);
+			}
+		};
+	}
+
+	/**
+	 * Replace a file or folder with files already in the object database, keeping their blobs and modes.
+	 * @param files the copied entries with their destination path
+	 */
+	static GitChange copy(final String source, final String destination, final List<GitEntry> files)
+	{
+		return new GitChange(String.format("Copy %s to %s", source, destination))
+		{
+			@Override
+			void apply(GitTransaction transaction) throws IOException
+			{
+				transaction.delete(destination);
+				for (GitEntry file : files)
+				{
+					transaction.write(file.getPath(), file.getFileMode(), file.getObjectId());
+				}
+			}
+		};
+	}
+}
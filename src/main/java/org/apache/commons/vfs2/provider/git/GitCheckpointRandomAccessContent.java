@@ -0,0 +1,38 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Read only random access which resumes inflating the blob at the nearest checkpoint before the seeked position.
+ */
+class GitCheckpointRandomAccessContent extends GitStreamRandomAccessContent
+{
+
+	private final GitCompressedBlob blob;
+	private final GitInflateIndex index;
+
+	GitCheckpointRandomAccessContent(GitFileSystem fileSystem, ObjectId objectId, long length, GitCompressedBlob blob, GitInflateIndex index, RandomAccessMode mode)
+	{
+		super(fileSystem, objectId, length, mode);
+		this.blob = blob;
+		this.index = index;
+	}
+
+	@Override
+	protected InputStream openStream(long position) throws IOException
+	{
+		int checkpoint = index.floor(position + blob.getHeaderLength());
+		streamPosition = index.getOffset(checkpoint) - blob.getHeaderLength();
+		return blob.open(index, checkpoint);
+	}
+
+	@Override
+	protected boolean isSkipCheaper(long distance)
+	{
+		return distance <= index.getSpan();
+	}
+}
@@ -0,0 +1,134 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * The commits of the first-parent history of a branch sorted by commit time, so that the state of the branch at a
+ * date is found with a binary search.
+ * <p>
+ * The commits are numbered from the oldest one and their object ids kept in one byte array. The sorted keys hold the
+ * commit time in their high bits and the number of the commit in their low bits : commits with the same time keep the
+ * order of the history.
+ */
+final class GitCommitTimeIndex
+{
+
+	private final ObjectId tip;
+	private final int count;
+	// the raw object ids of the commits, the oldest one first
+	private final byte[] objectIds;
+	private final long[] keys;
+
+	private GitCommitTimeIndex(ObjectId tip, int count, byte[] objectIds, long[] keys)
+	{
+		this.tip = tip;
+		this.count = count;
+		this.objectIds = objectIds;
+		this.keys = keys;
+	}
+
+	/**
+	 * Walk the first parents of a commit.
+	 * @param previous indexes of older tips of the branch, the walk stops at the first commit which is the tip of one
+	 *            of them and extends it
+	 */
+	static GitCommitTimeIndex build(RevWalk walk, AnyObjectId tip, Lookup previous) throws IOException
+	{
+		GitCommitTimeIndex base = null;
+		int newCount = 0;
+		int[] newTimes = new int[64];
+		byte[] newIds = new byte[64 * Constants.OBJECT_ID_LENGTH];
+
+		RevCommit commit = walk.parseCommit(tip);
+		while (commit != null)
+		{
+			base = previous.get(commit);
+			if ( base != null )
+			{
+				break;
+			}
+
+			if ( newCount == newTimes.length )
+			{
+				newTimes = Arrays.copyOf(newTimes, newCount * 2);
+				newIds = Arrays.copyOf(newIds, newCount * 2 * Constants.OBJECT_ID_LENGTH);
+			}
+			newTimes[newCount] = commit.getCommitTime();
+			commit.copyRawTo(newIds, newCount * Constants.OBJECT_ID_LENGTH);
+			newCount++;
+
+			commit = commit.getParentCount() == 0 ? null : walk.parseCommit(commit.getParent(0));
+		}
+
+		int baseCount = base == null ? 0 : base.count;
+		int count = baseCount + newCount;
+		byte[] objectIds = new byte[count * Constants.OBJECT_ID_LENGTH];
+		long[] keys = new long[count];
+		if ( base != null )
+		{
+			System.arraycopy(base.objectIds, 0, objectIds, 0, baseCount * Constants.OBJECT_ID_LENGTH);
+			System.arraycopy(base.keys, 0, keys, 0, baseCount);
+		}
+		// the new commits were walked from the newest one
+		for (int i = 0; i < newCount; i++)
+		{
+			int position = baseCount + i;
+			int walked = newCount - 1 - i;
+			System.arraycopy(newIds, walked * Constants.OBJECT_ID_LENGTH, objectIds, position * Constants.OBJECT_ID_LENGTH, Constants.OBJECT_ID_LENGTH);
+			keys[position] = key(newTimes[walked], position);
+		}
+		Arrays.sort(keys);
+		return new GitCommitTimeIndex(tip.copy(), count, objectIds, keys);
+	}
+
+	ObjectId getTip()
+	{
+		return tip;
+	}
+
+	int size()
+	{
+		return count;
+	}
+
+	/**
+	 * @param time a date in milliseconds
+	 * @return the newest commit made at or before the date, null if the branch had no commit yet
+	 */
+	ObjectId find(long time)
+	{
+		// the greatest key of the time in seconds
+		long searched = key((int) Math.min(Integer.MAX_VALUE, Math.floor(time / 1000d)), Integer.MAX_VALUE);
+		int insertion = Arrays.binarySearch(keys, searched);
+		int slot = insertion >= 0 ? insertion : -insertion - 2;
+		if ( slot < 0 )
+		{
+			return null;
+		}
+		int position = (int) keys[slot];
+		return ObjectId.fromRaw(objectIds, position * Constants.OBJECT_ID_LENGTH);
+	}
+
+	private static long key(int time, int position)
+	{
+		return ((long) time << 32) | position;
+	}
+
+	/**
+	 * The indexes already built for a branch.
+	 */
+	interface Lookup
+	{
+		/**
+		 * @return the index whose tip is the given commit or null if there is none
+		 */
+		GitCommitTimeIndex get(AnyObjectId tip);
+	}
+}
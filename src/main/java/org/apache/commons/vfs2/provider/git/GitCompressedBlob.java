@@ -0,0 +1,276 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.ObjectDirectory;
+import org.eclipse.jgit.storage.file.PackFile;
+
+/**
+ * Where the deflated bytes of a blob are stored : a loose object file or a whole (not deltified) object of a pack.
+ */
+final class GitCompressedBlob
+{
+
+	private static final int ZLIB_HEADER_LENGTH = 2;
+
+	private final File file;
+	private final long deflateOffset;
+	private final int headerLength;
+	private final String source;
+
+	private GitCompressedBlob(File file, long deflateOffset, int headerLength, String source)
+	{
+		this.file = file;
+		this.deflateOffset = deflateOffset;
+		this.headerLength = headerLength;
+		this.source = source;
+	}
+
+	/**
+	 * @return the location of the blob or null if it isn't stored as a whole deflated stream in a local object
+	 *         directory (a delta for instance)
+	 */
+	static GitCompressedBlob locate(Repository repository, ObjectId objectId) throws IOException
+	{
+		ObjectDatabase objectDatabase = repository.getObjectDatabase();
+		if (!(objectDatabase instanceof ObjectDirectory))
+		{
+			return null;
+		}
+
+		ObjectDirectory objectDirectory = (ObjectDirectory) objectDatabase;
+		for (PackFile pack : objectDirectory.getPacks())
+		{
+			long offset = pack.getIndex().findOffset(objectId);
+			if (offset != -1)
+			{
+				return fromPack(pack.getPackFile(), offset);
+			}
+		}
+
+		File looseFile = objectDirectory.fileFor(objectId);
+		return looseFile.isFile() ? fromLooseObject(looseFile) : null;
+	}
+
+	private static GitCompressedBlob fromPack(File packFile, long offset) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(packFile, "r");
+		try
+		{
+			raf.seek(offset);
+			int c = raf.read();
+			int type = (c >> 4) & 7;
+			while ((c & 0x80) != 0)
+			{
+				c = raf.read();
+			}
+			if (type != Constants.OBJ_BLOB || !isZlibHeader(raf.read(), raf.read()))
+			{
+				return null;
+			}
+			return new GitCompressedBlob(packFile, raf.getFilePointer(), 0, packFile.getName() + "@" + offset);
+		} finally
+		{
+			raf.close();
+		}
+	}
+
+	private static GitCompressedBlob fromLooseObject(File looseFile) throws IOException
+	{
+		InputStream in = new FileInputStream(looseFile);
+		try
+		{
+			if (!isZlibHeader(in.read(), in.read()))
+			{
+				return null;
+			}
+
+			// the inflated loose object starts with the "blob <size>\0" header
+			Inflater inflater = new Inflater(true);
+			try
+			{
+				byte[] input = new byte[64];
+				byte[] header = new byte[64];
+				int read = in.read(input);
+				inflater.setInput(input, 0, Math.max(read, 0));
+				int length = inflater.inflate(header);
+				for (int i = 0; i < length; i++)
+				{
+					if (header[i] == 0)
+					{
+						return new GitCompressedBlob(looseFile, ZLIB_HEADER_LENGTH, i + 1, "loose");
+					}
+				}
+				return null;
+			} catch (DataFormatException e)
+			{
+				return null;
+			} finally
+			{
+				inflater.end();
+			}
+		} finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private static boolean isZlibHeader(int cmf, int flg)
+	{
+		return cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && (flg & 0x20) == 0 && ((cmf << 8) | flg) % 31 == 0;
+	}
+
+	/**
+	 * Identifies the deflated stream, a checkpoint index is valid only for the stream it was built on.
+	 */
+	String getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * @return the number of inflated bytes preceding the content of the blob
+	 */
+	int getHeaderLength()
+	{
+		return headerLength;
+	}
+
+	GitInflateIndex buildIndex(int span) throws IOException
+	{
+		InputStream in = openCompressed(0);
+		try
+		{
+			return new GitInflateScanner(in).scan(span, source);
+		} finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Resume inflating at a checkpoint.
+	 * @return the inflated bytes following the checkpoint
+	 */
+	InputStream open(GitInflateIndex index, int checkpoint) throws IOException
+	{
+		long bitPosition = index.getBitPosition(checkpoint);
+		InputStream in = openCompressed(bitPosition / 8);
+		int shift = (int) (bitPosition % 8);
+		if (shift != 0)
+		{
+			in = new BitShiftInputStream(in, shift);
+		}
+
+		final Inflater inflater = new Inflater(true);
+		byte[] window = index.getWindow(checkpoint);
+		if (window.length > 0)
+		{
+			inflater.setDictionary(window);
+		}
+		return new InflaterInputStream(in, inflater, 64 * 1024)
+		{
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				} finally
+				{
+					inflater.end();
+				}
+			}
+		};
+	}
+
+	private InputStream openCompressed(long byteOffset) throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			in.getChannel().position(deflateOffset + byteOffset);
+		} catch (IOException e)
+		{
+			IOUtils.closeQuietly(in);
+			throw e;
+		}
+		return new BufferedInputStream(in, 64 * 1024);
+	}
+
+	/**
+	 * Drop the first bits of a stream. Deflate packs bits starting from the least significant one, so a block starting
+	 * in the middle of a byte is moved to a byte boundary by shifting every byte with the bits of the next one.
+	 */
+	private static final class BitShiftInputStream extends FilterInputStream
+	{
+		private final int shift;
+		private int current;
+
+		BitShiftInputStream(InputStream in, int shift) throws IOException
+		{
+			super(in);
+			this.shift = shift;
+			this.current = in.read();
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			if (current < 0)
+			{
+				return -1;
+			}
+			int next = in.read();
+			int value = (current >>> shift) | ((Math.max(next, 0) << (8 - shift)) & 0xff);
+			current = next;
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			int count = 0;
+			while (count < len)
+			{
+				int value = read();
+				if (value < 0)
+				{
+					break;
+				}
+				b[off + count++] = (byte) value;
+			}
+			return count == 0 ? -1 : count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			throw new IOException("skip not supported");
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return current < 0 ? 0 : in.available();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.apache.commons.vfs2.provider.git;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A path changed between two trees, with the mode and the blob id of each side. The old side of an added path and the
+ * new side of a deleted path have a null path, the {@link FileMode#MISSING} mode and the zero id.
+ * @see GitFileSystem#diff(String, String, String...)
+ */
+public final class GitDiffEntry
+{
+
+	public enum ChangeType
+	{
+		ADDED, MODIFIED, DELETED,
+
+		/**
+		 * A file deleted and added at another path with the same content.
+		 */
+		RENAMED
+	}
+
+	private final ChangeType changeType;
+	private final String oldPath;
+	private final String newPath;
+	private final FileMode oldMode;
+	private final FileMode newMode;
+	private final ObjectId oldId;
+	private final ObjectId newId;
+
+	GitDiffEntry(ChangeType changeType, String oldPath, String newPath, FileMode oldMode, FileMode newMode, ObjectId oldId, ObjectId newId)
+	{
+		this.changeType = changeType;
+		this.oldPath = oldPath;
+		this.newPath = newPath;
+		this.oldMode = oldMode;
+		this.newMode = newMode;
+		this.oldId = oldId;
+		this.newId = newId;
+	}
+
+	public ChangeType getChangeType()
+	{
+		return changeType;
+	}
+
+	/**
+	 * @return the path relative to the repository root in the old tree, null if the path has been added
+	 */
+	public String getOldPath()
+	{
+		return oldPath;
+	}
+
+	/**
+	 * @return the path relative to the repository root in the new tree, null if the path has been deleted
+	 */
+	public String getNewPath()
+	{
+		return newPath;
+	}
+
+	public FileMode getOldMode()
+	{
+		return oldMode;
+	}
+
+	public FileMode getNewMode()
+	{
+		return newMode;
+	}
+
+	public ObjectId getOldId()
+	{
+		return oldId;
+	}
+
+	public ObjectId getNewId()
+	{
+		return newId;
+	}
+
+	@Override
+	public String toString()
+	{
+		switch (changeType)
+		{
+		case ADDED:
+			return String.format("%s %s", changeType, newPath);
+		case DELETED:
+			return String.format("%s %s", changeType, oldPath);
+		case RENAMED:
+			return String.format("%s %s %s", changeType, oldPath, newPath);
+		default:
+			return String.format("%s %s", changeType, newPath);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.apache.commons.vfs2.provider.git;
+
+import org.apache.commons.vfs2.FileType;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * An entry of a git tree : its repository relative path, its mode and the id of the blob or tree it points to.
+ */
+public final class GitEntry
+{
+
+	private final String path;
+	private final FileMode fileMode;
+	private final ObjectId objectId;
+
+	public GitEntry(String path, FileMode fileMode, ObjectId objectId)
+	{
+		this.path = path;
+		this.fileMode = fileMode;
+		this.objectId = objectId;
+	}
+
+	/**
+	 * @return the path relative to the repository root, the empty string for the root tree
+	 */
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String getName()
+	{
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+
+	public FileMode getFileMode()
+	{
+		return fileMode;
+	}
+
+	public ObjectId getObjectId()
+	{
+		return objectId;
+	}
+
+	public FileType getFileType()
+	{
+		return toFileType(fileMode);
+	}
+
+	static FileType toFileType(FileMode fileMode)
+	{
+		if (fileMode == FileMode.TREE)
+		{
+			return FileType.FOLDER;
+		} else if (fileMode == FileMode.EXECUTABLE_FILE || fileMode == FileMode.REGULAR_FILE)
+		{
+			return FileType.FILE;
+		} else
+		{
+			return FileType.IMAGINARY;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s %s %s", fileMode, objectId.name(), path);
+	}
+}
@@ -0,0 +1,180 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Iterate the entries of a folder one at a time : the entries are read from the tree object as they are iterated, so
+ * the listing of a huge folder is never held in memory. The iterator must be closed if it isn't iterated to its end.
+ */
+public abstract class GitEntryIterator extends AbstractIterator<GitEntry> implements Closeable
+{
+
+	private boolean closed;
+
+	GitEntryIterator()
+	{
+	}
+
+	@Override
+	protected final GitEntry computeNext()
+	{
+		GitEntry entry = closed ? null : readNext();
+		if ( entry == null )
+		{
+			close();
+			return endOfData();
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the next entry or null at the end of the folder
+	 */
+	abstract GitEntry readNext();
+
+	/**
+	 * Release the resources of the iterator, it ends the iteration.
+	 */
+	@Override
+	public void close()
+	{
+		if ( !closed )
+		{
+			closed = true;
+			release();
+		}
+	}
+
+	void release()
+	{
+	}
+
+	/**
+	 * Iterate the children of a folder with a walk of its tree.
+	 * @param path the path of the folder relative to the repository root, the empty string for the root
+	 */
+	static GitEntryIterator ofTree(Repository repository, final String path, AnyObjectId treeId) throws IOException
+	{
+		final TreeWalk treeWalk = new TreeWalk(repository);
+		try
+		{
+			treeWalk.addTree(treeId);
+		} catch (IOException e)
+		{
+			treeWalk.release();
+			throw e;
+		}
+
+		return new GitEntryIterator()
+		{
+			@Override
+			GitEntry readNext()
+			{
+				try
+				{
+					if ( !treeWalk.next() )
+					{
+						return null;
+					}
+				} catch (IOException e)
+				{
+					close();
+					throw new GitIterationException(e);
+				}
+				String childPath = path.length() == 0 ? treeWalk.getNameString() : path + "/" + treeWalk.getNameString();
+				return new GitEntry(childPath, treeWalk.getFileMode(0), treeWalk.getObjectId(0));
+			}
+
+			@Override
+			void release()
+			{
+				treeWalk.release();
+			}
+		};
+	}
+
+	/**
+	 * Iterate the children of a folder of a tree index.
+	 */
+	static GitEntryIterator ofIndex(final GitTreeIndex index, int slot)
+	{
+		final int end = index.getEnd(slot);
+		final int first = slot + 1;
+		return new GitEntryIterator()
+		{
+			private int child = first;
+
+			@Override
+			GitEntry readNext()
+			{
+				if ( child >= end )
+				{
+					return null;
+				}
+				GitEntry entry = index.getEntry(child);
+				child = index.getEnd(child);
+				return entry;
+			}
+		};
+	}
+
+	/**
+	 * Iterate the children of a folder from the listing of its tree.
+	 * @param path the path of the folder relative to the repository root, the empty string for the root
+	 */
+	static GitEntryIterator ofListing(final GitTreeListing listing, final String path)
+	{
+		return new GitEntryIterator()
+		{
+			private int slot;
+
+			@Override
+			GitEntry readNext()
+			{
+				return slot < listing.size() ? listing.getEntry(slot++, path) : null;
+			}
+		};
+	}
+
+	/**
+	 * Iterate entries already listed.
+	 */
+	static GitEntryIterator of(final Iterator<GitEntry> entries)
+	{
+		return new GitEntryIterator()
+		{
+			@Override
+			GitEntry readNext()
+			{
+				return entries.hasNext() ? entries.next() : null;
+			}
+		};
+	}
+
+	/**
+	 * Thrown by the iteration when a tree object can't be read.
+	 */
+	public static final class GitIterationException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		GitIterationException(IOException cause)
+		{
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause()
+		{
+			return (IOException) super.getCause();
+		}
+	}
+}
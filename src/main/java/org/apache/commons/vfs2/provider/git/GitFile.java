@@ -5,165 +5,426 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelectInfo;
+import org.apache.commons.vfs2.FileSelector;
 import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemManager;
+import org.apache.commons.vfs2.FileSystemOptions;
 import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
 import org.apache.commons.vfs2.RandomAccessContent;
-import org.apache.commons.vfs2.VFS;
 import org.apache.commons.vfs2.provider.AbstractFileName;
 import org.apache.commons.vfs2.provider.AbstractFileObject;
 import org.apache.commons.vfs2.provider.UriParser;
 import org.apache.commons.vfs2.provider.local.GitFileRandomAccessContent;
+import org.apache.commons.vfs2.util.FileObjectUtils;
 import org.apache.commons.vfs2.util.RandomAccessMode;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 public class GitFile extends AbstractFileObject implements FileObject
 {
 
 	private final FileName rootName;
+	private GitEntry entry;
 
 	public GitFile(GitFileSystem gitFileSystem, FileName rootName, AbstractFileName name)
 	{
 		super(name, gitFileSystem);
-		this.rootName = getGitRootDir(name);
+		this.rootName = rootName;
 	}
 
-	private FileName getGitRootDir(AbstractFileName name)
+	@Override
+	protected FileType doGetType() throws Exception
 	{
-		try
+		GitEntry entry = getEntry();
+		if (entry == null)
 		{
-			Repository repository = getGitFileSystem().getRepository(name);
-			return getRootName(name, repository);
-		} catch (IOException e)
-		{
-			// TODO throw new FileSystemException(e);
-			return null;
+			// The file isn't in the local repository
+			return FileType.IMAGINARY;
 		}
+		return entry.getFileType();
 	}
 
-	private FileName getRootName(AbstractFileName name, Repository repository) throws FileSystemException
+	@Override
+	protected String[] doListChildren() throws Exception
 	{
-		File rootDirectory = repository.getDirectory().getParentFile();
-		FileName rootDirName = VFS.getManager().resolveFile(rootDirectory, "").getName();
-		FileName rootName = name;
+		GitEntryIterator entries = getGitFileSystem().iterateEntries(getEntryPath());
+		if (entries == null)
+		{
+			return null;
+		}
 
-		while (rootName.getParent() != name)
+		// only the names are kept, not the entries
+		List<String> names = new ArrayList<String>();
+		try
 		{
-			if (rootName.getPath().endsWith(rootDirName.getPath()))
+			while (entries.hasNext())
 			{
-				return rootName;
+				names.add(UriParser.encode(entries.next().getName()));
 			}
-			rootName = rootName.getParent();
+		} catch (GitEntryIterator.GitIterationException e)
+		{
+			throw e.getCause();
+		} finally
+		{
+			entries.close();
 		}
+		return names.toArray(new String[names.size()]);
+	}
 
-		// TODO throw an assertion
-		return null;
+	/**
+	 * Iterate the entries of the children of this folder as they are read from its tree, without resolving the
+	 * children : the listing of a huge folder is never held in memory. The iterator must be closed if it isn't
+	 * iterated to its end ; it throws a {@link GitEntryIterator.GitIterationException} if a tree can't be read.
+	 * @throws FileSystemException if this file isn't a folder
+	 */
+	public GitEntryIterator iterateChildren() throws IOException
+	{
+		GitEntryIterator entries = getGitFileSystem().iterateEntries(getEntryPath());
+		if (entries == null)
+		{
+			throw new FileSystemException("vfs.provider/list-children-not-folder.error", getName());
+		}
+		return entries;
 	}
 
 	@Override
-	protected FileType doGetType() throws Exception
+	protected FileObject[] doListChildrenResolved() throws Exception
 	{
-		if (isRootDir())
+		List<GitEntry> entries = getGitFileSystem().listEntries(getEntryPath());
+		if (entries == null)
+		{
+			return null;
+		}
+
+		if (GitFileSystemConfigBuilder.getInstance().isPrefetchContentSizes(getFileSystem().getFileSystemOptions()))
 		{
-			return FileType.FOLDER;
+			getGitFileSystem().prefetchContentSizes(entries);
 		}
 
-		Repository repository = getGitFileSystem().getRepository(getName());
-		RevTree tree = getGitFileSystem().getTree(getName());
+		FileObject[] children = new FileObject[entries.size()];
+		for (int i = 0; i < children.length; i++)
+		{
+			children[i] = resolveDescendant(entries.get(i).getName(), entries.get(i));
+		}
+		return children;
+	}
 
-		TreeWalk treeWalk = buildTreeWalk(repository, tree);
-		if (treeWalk == null)
+	/**
+	 * Search the files of a folder with a single walk of its tree instead of listing each folder. A
+	 * {@link GitFileSelector} is pushed down into the walk, any other selector is asked about every file and folder as
+	 * VFS does.
+	 */
+	@Override
+	public void findFiles(FileSelector selector, boolean depthwise, List<FileObject> selected) throws FileSystemException
+	{
+		if (!exists() || getType() != FileType.FOLDER || getGitFileSystem().getTransaction() != null)
 		{
-			// The file isn't in the local repository
-			return FileType.IMAGINARY;
-		} else
+			// the staged changes of a transaction are only seen through the listings
+			super.findFiles(selector, depthwise, selected);
+			return;
+		}
+
+		try
 		{
-			FileMode fileMode = treeWalk.getFileMode(0);
-			if (fileMode == FileMode.TREE)
+			if (getEntry().getObjectId().equals(GitFileSystem.EMPTY_TREE_ID))
 			{
-				return FileType.FOLDER;
-			} else if (fileMode == FileMode.EXECUTABLE_FILE || fileMode == FileMode.REGULAR_FILE)
+				// the empty tree may not be stored
+				super.findFiles(selector, depthwise, selected);
+			} else if (selector instanceof GitFileSelector)
 			{
-				return FileType.FILE;
+				findMatchingFiles((GitFileSelector) selector, selected);
 			} else
 			{
-				return FileType.IMAGINARY;
+				walkFiles(selector, depthwise, selected);
+			}
+		} catch (FileSystemException e)
+		{
+			throw e;
+		} catch (Exception e)
+		{
+			throw new FileSystemException("vfs.provider/find-files.error", getName(), e);
+		}
+	}
+
+	private void findMatchingFiles(GitFileSelector selector, List<FileObject> selected) throws Exception
+	{
+		List<TreeFilter> filters = new ArrayList<TreeFilter>();
+		if (selector.getLiteralPrefix().length() > 0)
+		{
+			filters.add(PathFilter.create(selector.getLiteralPrefix()));
+		}
+		if (selector.getLiteralSuffix().length() > 0)
+		{
+			filters.add(PathSuffixFilter.create(selector.getLiteralSuffix()));
+		}
+
+		getGitFileSystem().getMetricsRecorder().treeWalked();
+		TreeWalk treeWalk = new TreeWalk(getGitFileSystem().getRepository());
+		try
+		{
+			treeWalk.addTree(getEntry().getObjectId());
+			treeWalk.setRecursive(false);
+			if (filters.size() == 1)
+			{
+				treeWalk.setFilter(filters.get(0));
+			} else if (filters.size() > 1)
+			{
+				treeWalk.setFilter(AndTreeFilter.create(filters));
 			}
 
+			while (treeWalk.next())
+			{
+				int depth = treeWalk.getDepth() + 1;
+				if (treeWalk.isSubtree())
+				{
+					if (depth < selector.getMaxDepth())
+					{
+						treeWalk.enterSubtree();
+					}
+				} else if (depth >= selector.getMinDepth() && selector.matches(treeWalk.getPathString()))
+				{
+					GitEntry entry = newDescendantEntry(treeWalk);
+					if (entry.getFileType() == FileType.FILE)
+					{
+						selected.add(resolveDescendant(treeWalk.getPathString(), entry));
+					}
+				}
+			}
+		} finally
+		{
+			treeWalk.release();
 		}
+	}
 
+	private void walkFiles(FileSelector selector, boolean depthwise, List<FileObject> selected) throws Exception
+	{
+		SelectInfo info = new SelectInfo(this);
+		int index = selected.size();
+		if (selector.traverseDescendents(info.set(this, 0)))
+		{
+			// the folders being walked and the position of their selection when not depthwise
+			LinkedList<FileObject> folders = new LinkedList<FileObject>();
+			LinkedList<Integer> indexes = new LinkedList<Integer>();
+
+			getGitFileSystem().getMetricsRecorder().treeWalked();
+			TreeWalk treeWalk = new TreeWalk(getGitFileSystem().getRepository());
+			try
+			{
+				treeWalk.addTree(getEntry().getObjectId());
+				treeWalk.setRecursive(false);
+				treeWalk.setPostOrderTraversal(true);
+				while (treeWalk.next())
+				{
+					int depth = treeWalk.getDepth() + 1;
+					if (treeWalk.isPostChildren())
+					{
+						select(selector, info.set(folders.pop(), depth), depthwise, indexes.pop(), selected);
+						continue;
+					}
+
+					FileObject file = resolveDescendant(treeWalk.getPathString(), newDescendantEntry(treeWalk));
+					if (treeWalk.isSubtree() && selector.traverseDescendents(info.set(file, depth)))
+					{
+						folders.push(file);
+						indexes.push(selected.size());
+						treeWalk.enterSubtree();
+					} else
+					{
+						select(selector, info.set(file, depth), depthwise, selected.size(), selected);
+					}
+				}
+			} finally
+			{
+				treeWalk.release();
+			}
+		}
+		select(selector, info.set(this, 0), depthwise, index, selected);
 	}
 
-	@Override
-	protected String[] doListChildren() throws Exception
+	/**
+	 * Add a file to the selection after its descendants when depthwise, at the given index (before its descendants)
+	 * otherwise.
+	 */
+	private static void select(FileSelector selector, SelectInfo info, boolean depthwise, int index, List<FileObject> selected) throws Exception
+	{
+		if (selector.includeFile(info))
+		{
+			selected.add(depthwise ? selected.size() : index, info.getFile());
+		}
+	}
+
+	private GitEntry newDescendantEntry(TreeWalk treeWalk) throws FileSystemException
 	{
-		Repository repository = getGitFileSystem().getRepository(getName());
-		RevTree tree = getGitFileSystem().getTree(getName());
-		TreeWalk treeWalk = buildTreeWalk(repository, tree);
+		String path = isRootDir() ? treeWalk.getPathString() : getRelativePath() + "/" + treeWalk.getPathString();
+		return new GitEntry(path, treeWalk.getFileMode(0), treeWalk.getObjectId(0));
+	}
 
-		treeWalk.enterSubtree();
-		List<String> results = new ArrayList<String>();
+	/**
+	 * Resolve a file under this folder and attach its entry so that its type doesn't need another lookup.
+	 */
+	private FileObject resolveDescendant(String relativePath, GitEntry gitEntry) throws FileSystemException
+	{
+		FileSystemManager manager = getFileSystem().getFileSystemManager();
+		FileName name = manager.resolveName(getName(), UriParser.encode(relativePath), NameScope.DESCENDENT);
+		FileObject file = getFileSystem().resolveFile(name);
 
-		while (treeWalk.next())
+		AbstractFileObject descendant = FileObjectUtils.getAbstractFileObject(file);
+		if (descendant instanceof GitFile)
 		{
-			String strName = treeWalk.getNameString();
-			results.add(strName);
+			((GitFile) descendant).injectEntry(gitEntry);
 		}
+		return file;
+	}
 
-		return UriParser.encode(results.toArray(new String[results.size()]));
+	@Override
+	protected void doDetach() throws Exception
+	{
+		entry = null;
 	}
 
 	@Override
 	protected void doDelete() throws Exception
 	{
-		Repository repository = getGitFileSystem().getRepository(getName());
+		if (!getGitFileSystem().isWorkTreeWrite())
+		{
+			getGitFileSystem().writeChange(GitChange.delete(getRelativePath()));
+			return;
+		}
+
+		Repository repository = getGitFileSystem().getRepository();
 		Git git = new Git(repository);
 		git.rm().addFilepattern(getRelativePath()).call();
-		git.commit().setMessage(String.format("Delete %s", getRelativePath()));
+		commitWorkTree(git, String.format("Delete %s", getRelativePath()), getRelativePath());
 	}
 
 	@Override
 	protected void doRename(FileObject newfile) throws Exception
 	{
-		Repository repository = getGitFileSystem().getRepository(getName());
-		Git git = new Git(repository);
+		String newPath = rootName.getRelativeName(newfile.getName());
+		if (!getGitFileSystem().isWorkTreeWrite())
+		{
+			getGitFileSystem().writeChange(GitChange.rename(getRelativePath(), newPath));
+			return;
+		}
 
-		// remove old file
-		git.rm().addFilepattern(getRelativePath()).call();
+		Repository repository = getGitFileSystem().getRepository();
+		Git git = new Git(repository);
 
 		// rename on file system
-		new File(getName().getPathDecoded()).renameTo(new File(newfile.getName().getPathDecoded()));
+		getWorkTreeFile(getName()).renameTo(getWorkTreeFile(newfile.getName()));
 
-		// add new file
-		git.add().addFilepattern(rootName.getRelativeName(newfile.getName()));
+		// move the entries of the index with their object id and file stats, nothing is hashed again
+		final String oldPath = getRelativePath();
+		DirCache dirCache = repository.lockDirCache();
+		try
+		{
+			DirCacheEntry fileEntry = dirCache.getEntry(oldPath);
+			DirCacheEntry[] entries = fileEntry != null ? new DirCacheEntry[] { fileEntry } : dirCache.getEntriesWithin(oldPath);
+			DirCacheEditor editor = dirCache.editor();
+			for (final DirCacheEntry entry : entries)
+			{
+				editor.add(new DirCacheEditor.DeletePath(entry));
+				editor.add(new DirCacheEditor.PathEdit(newPath + entry.getPathString().substring(oldPath.length()))
+				{
+					@Override
+					public void apply(DirCacheEntry movedEntry)
+					{
+						movedEntry.copyMetaData(entry);
+					}
+				});
+			}
+			editor.commit();
+		} finally
+		{
+			dirCache.unlock();
+		}
+
+		commitWorkTree(git, String.format("Rename %s to %s", getRelativePath(), newPath), getRelativePath(), newPath);
+	}
 
-		git.commit().setMessage(String.format("Rename %s to %s", getRelativePath(), rootName.getRelativeName(newfile.getName())));
+	/**
+	 * Copy the files of a git file system reading the same repository without reading their content : the copies
+	 * point to the blobs of the source files and are committed at once. The other files are copied as VFS does.
+	 */
+	@Override
+	public void copyFrom(FileObject file, FileSelector selector) throws FileSystemException
+	{
+		AbstractFileObject source = FileObjectUtils.getAbstractFileObject(file);
+		try
+		{
+			if (!(source instanceof GitFile) || isRootDir() || getGitFileSystem().isWorkTreeWrite()
+					|| ((GitFile) source).getGitFileSystem().getRepository() != getGitFileSystem().getRepository())
+			{
+				super.copyFrom(file, selector);
+				return;
+			}
+			if (!file.exists())
+			{
+				throw new FileSystemException("vfs.provider/copy-missing-file.error", file);
+			}
 
+			List<FileObject> selected = new ArrayList<FileObject>();
+			file.findFiles(selector, false, selected);
+			List<GitEntry> copies = new ArrayList<GitEntry>();
+			for (FileObject selectedFile : selected)
+			{
+				AbstractFileObject copied = FileObjectUtils.getAbstractFileObject(selectedFile);
+				if (copied.getType() == FileType.FILE)
+				{
+					String relativeName = file.getName().getRelativeName(selectedFile.getName());
+					String path = ".".equals(relativeName) ? getRelativePath() : getRelativePath() + "/" + relativeName;
+					GitEntry copiedEntry = ((GitFile) copied).getEntry();
+					copies.add(new GitEntry(path, copiedEntry.getFileMode(), copiedEntry.getObjectId()));
+				}
+			}
+			getGitFileSystem().writeChange(GitChange.copy(((GitFile) source).getRelativePath(), getRelativePath(), copies));
+		} catch (FileSystemException e)
+		{
+			throw e;
+		} catch (IOException e)
+		{
+			throw new FileSystemException("vfs.provider/copy-file.error", new Object[] { file, this }, e);
+		}
 	}
 
 	@Override
 	protected void doCreateFolder() throws Exception
 	{
-		new File(getName().getPathDecoded()).mkdir();
+		// git doesn't record empty folders, a folder of the object database exists once a file is written in it
+		if (getGitFileSystem().isWorkTreeWrite())
+		{
+			getWorkTreeFile(getName()).mkdir();
+		}
 	}
 
 	@Override
 	protected long doGetLastModifiedTime() throws Exception
 	{
-		// TODO modified to return the date of last commit which contains this
-		// file
-		return new File(getName().getPathDecoded()).lastModified();
+		return getGitFileSystem().getLastModified(getEntryPath());
 	}
 
 	@Override
@@ -176,31 +437,106 @@ public class GitFile extends AbstractFileObject implements FileObject
 	@Override
 	protected RandomAccessContent doGetRandomAccessContent(RandomAccessMode mode) throws Exception
 	{
+		GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+		FileSystemOptions options = getFileSystem().getFileSystemOptions();
+
+		if (!mode.requestWrite())
+		{
+			Repository repository = getGitFileSystem().getRepository();
+			long size = doGetContentSize();
+			if (size <= config.getRandomAccessBufferThreshold(options) && size <= Integer.MAX_VALUE)
+			{
+				GitBlobCache blobCache = getGitFileSystem().getBlobCache();
+				ByteBuffer content = blobCache == null ? null : blobCache.getContent(repository, getEntry().getObjectId(), getGitFileSystem().getMetricsRecorder());
+				if (content != null)
+				{
+					return new GitBufferRandomAccessContent(content, mode);
+				}
+				ObjectLoader objectLoader = getGitFileSystem().openObject(getEntry().getObjectId(), Constants.OBJ_BLOB);
+				getGitFileSystem().getMetricsRecorder().opened(objectLoader.getSize());
+				return new GitBufferRandomAccessContent(loadBuffer(objectLoader, config.isRandomAccessDirectBuffer(options)), mode);
+			}
 
-		// TODO find a way to not copy the content fully for random access
+			GitRandomAccessStrategy strategy = config.getRandomAccessStrategy(options);
+			if (strategy == GitRandomAccessStrategy.INFLATE_CHECKPOINTS)
+			{
+				RandomAccessContent content = getGitFileSystem().openCheckpointContent(getEntry().getObjectId(), size, mode);
+				if (content != null)
+				{
+					return content;
+				}
+				strategy = GitRandomAccessStrategy.STREAM;
+			}
+			if (strategy == GitRandomAccessStrategy.STREAM)
+			{
+				return new GitStreamRandomAccessContent(getGitFileSystem(), getEntry().getObjectId(), size, mode);
+			}
+		}
 
-		File tempFile = File.createTempFile("plpo", "plpo");
-		tempFile.deleteOnExit();
+		// deleted when the content is closed, or right away if the copy fails
+		File tempFile = File.createTempFile("vfs-git", ".tmp");
+		boolean copied = false;
+		try
+		{
+			InputStream inputStream = doGetInputStream();
+			OutputStream outPutStream = null;
+			try
+			{
+				outPutStream = new FileOutputStream(tempFile);
+				getGitFileSystem().getMetricsRecorder().tempWritten(IOUtils.copyLarge(inputStream, outPutStream));
+			} finally
+			{
+				IOUtils.closeQuietly(outPutStream);
+				IOUtils.closeQuietly(inputStream);
+			}
 
-		InputStream inputStream = doGetInputStream();
-		OutputStream outPutStream = new FileOutputStream(tempFile);
+			RandomAccessContent content = new GitFileRandomAccessContent(tempFile, mode);
+			copied = true;
+			return content;
+		} finally
+		{
+			if (!copied)
+			{
+				tempFile.delete();
+			}
+		}
+	}
 
+	private ByteBuffer loadBuffer(ObjectLoader objectLoader, boolean direct) throws IOException
+	{
+		if (!direct && !objectLoader.isLarge())
+		{
+			return ByteBuffer.wrap(objectLoader.getCachedBytes()).asReadOnlyBuffer();
+		}
+
+		int size = (int) objectLoader.getSize();
+		ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		InputStream inputStream = objectLoader.openStream();
 		try
 		{
-			IOUtils.copyLarge(inputStream, outPutStream);
+			byte[] chunk = new byte[8192];
+			int read;
+			while (buffer.hasRemaining() && (read = inputStream.read(chunk, 0, Math.min(chunk.length, buffer.remaining()))) != -1)
+			{
+				buffer.put(chunk, 0, read);
+			}
 		} finally
 		{
-			IOUtils.closeQuietly(outPutStream);
 			IOUtils.closeQuietly(inputStream);
 		}
-
-		return new GitFileRandomAccessContent(tempFile, mode);
+		buffer.flip();
+		return buffer;
 	}
 
 	@Override
 	protected OutputStream doGetOutputStream(boolean bAppend) throws Exception
 	{
-		return new FileOutputStream(getName().getPathDecoded(), bAppend)
+		if (!getGitFileSystem().isWorkTreeWrite())
+		{
+			return getGitFileSystem().openOutputStream(getRelativePath(), bAppend);
+		}
+
+		return new FileOutputStream(getWorkTreeFile(getName()), bAppend)
 		{
 			@Override
 			public void close() throws IOException
@@ -220,39 +556,57 @@ public class GitFile extends AbstractFileObject implements FileObject
 	@Override
 	protected long doGetContentSize() throws Exception
 	{
-		Repository repository = getGitFileSystem().getRepository(getName());
-		RevTree tree = getGitFileSystem().getTree(getName());
-
-		TreeWalk treeWalk = buildTreeWalk(repository, tree);
-		ObjectLoader objectLoader = repository.open(treeWalk.getObjectId(0));
-		return objectLoader.getSize();
+		return getGitFileSystem().getContentSize(getEntry());
 	}
 
 	@Override
 	protected InputStream doGetInputStream() throws Exception
 	{
-		Repository repository = getGitFileSystem().getRepository(getName());
-		RevTree tree = getGitFileSystem().getTree(getName());
-
-		TreeWalk treeWalk = buildTreeWalk(repository, tree);
-		ObjectLoader objectLoader = repository.open(treeWalk.getObjectId(0));
-		return objectLoader.openStream();
+		Repository repository = getGitFileSystem().getRepository();
+		GitBlobCache blobCache = getGitFileSystem().getBlobCache();
+		if (blobCache != null && getType() == FileType.FILE)
+		{
+			return blobCache.openStream(repository, getEntry().getObjectId(), getGitFileSystem().getMetricsRecorder());
+		}
+		// the blobs read from the cache are counted by its hits and misses
+		ObjectLoader objectLoader = getGitFileSystem().openObject(getEntry().getObjectId(), ObjectReader.OBJ_ANY);
+		return getGitFileSystem().getMetricsRecorder().opened(objectLoader.openStream());
 	}
 
-	private TreeWalk buildTreeWalk(Repository repository, RevTree tree) throws IOException
+	GitEntry getEntry() throws IOException
 	{
-		// The treeWalker doesn't work with "." path so consider it as
-		// particular path
-		TreeWalk treeWalk = null;
-		if (isRootDir())
+		if (entry == null)
 		{
-			treeWalk = new TreeWalk(repository);
-			treeWalk.addTree(tree);
-		} else
+			entry = getGitFileSystem().getEntry(getEntryPath());
+		}
+		return entry;
+	}
+
+	/**
+	 * Attach the entry found by a listing of the parent folder so that the type of this file doesn't need another
+	 * lookup.
+	 */
+	void injectEntry(GitEntry gitEntry)
+	{
+		this.entry = gitEntry;
+		injectType(gitEntry.getFileType());
+	}
+
+	@Override
+	public void refresh() throws FileSystemException
+	{
+		super.refresh();
+		// VFS only detaches an attached file, an entry injected by a listing of the parent must be dropped too
+		if (entry != null)
 		{
-			treeWalk = TreeWalk.forPath(repository, getRelativePath(), tree);
+			entry = null;
+			injectType(null);
 		}
-		return treeWalk;
+	}
+
+	private String getEntryPath() throws FileSystemException
+	{
+		return isRootDir() ? "" : getRelativePath();
 	}
 
 	private String getRelativePath() throws FileSystemException
@@ -265,6 +619,43 @@ public class GitFile extends AbstractFileObject implements FileObject
 		return getName().compareTo(rootName) == 0;
 	}
 
+	private static final class SelectInfo implements FileSelectInfo
+	{
+		private final FileObject baseFolder;
+		private FileObject file;
+		private int depth;
+
+		SelectInfo(FileObject baseFolder)
+		{
+			this.baseFolder = baseFolder;
+		}
+
+		SelectInfo set(FileObject selectFile, int selectDepth)
+		{
+			this.file = selectFile;
+			this.depth = selectDepth;
+			return this;
+		}
+
+		@Override
+		public FileObject getBaseFolder()
+		{
+			return baseFolder;
+		}
+
+		@Override
+		public FileObject getFile()
+		{
+			return file;
+		}
+
+		@Override
+		public int getDepth()
+		{
+			return depth;
+		}
+	}
+
 	public GitFileSystem getGitFileSystem()
 	{
 		return (GitFileSystem) getFileSystem();
@@ -272,10 +663,29 @@ public class GitFile extends AbstractFileObject implements FileObject
 
 	public void commit() throws IOException, GitAPIException
 	{
-		Repository repository = getGitFileSystem().getRepository(getName());
+		Repository repository = getGitFileSystem().getRepository();
 		Git git = new Git(repository);
 		git.add().addFilepattern(getRelativePath()).call();
-		git.commit().setMessage(String.format("Modify  %s", getRelativePath()));
+		commitWorkTree(git, String.format("Modify  %s", getRelativePath()), getRelativePath());
+	}
 
+	/**
+	 * Commit the index of the repository and move the file system to the new commit if it reads the current branch.
+	 */
+	private void commitWorkTree(Git git, String message, String... paths) throws IOException, GitAPIException
+	{
+		GitMetrics metrics = getGitFileSystem().getMetricsRecorder();
+		long start = metrics.start();
+		RevCommit commit = git.commit().setMessage(message).call();
+		metrics.committed(start);
+		if (git.getRepository().getFullBranch().equals(getGitFileSystem().getBranch()))
+		{
+			getGitFileSystem().committed(commit, commit.getParentCount() == 0 ? null : commit.getParent(0), Arrays.asList(paths));
+		}
+	}
+
+	private File getWorkTreeFile(FileName name) throws IOException
+	{
+		return new File(getGitFileSystem().getRepository().getWorkTree(), rootName.getRelativeName(name));
 	}
 }
@@ -0,0 +1,162 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.util.regex.Pattern;
+
+import org.apache.commons.vfs2.FileSelectInfo;
+import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+
+/**
+ * Selects the files whose path relative to the base folder matches a glob pattern, within a range of depths.
+ * <p>
+ * In a pattern, <code>*</code> matches any part of a name, <code>?</code> any character of a name and
+ * <code>**&#47;</code> any number of folders : <code>**&#47;*.xml</code> selects the xml files of every folder,
+ * <code>src/*&#47;pom.xml</code> the pom.xml files of the direct subfolders of src. Only files are selected.
+ * <p>
+ * The selector works with any file system. A folder of a git file system searched with this selector is walked once :
+ * the folders outside of the literal prefix of the pattern or deeper than the maximum depth are skipped without being
+ * read, the entries are filtered on their suffix and only the matching files are resolved. The class is final : the
+ * walk uses the pattern and the depths instead of {@link #includeFile(FileSelectInfo)} and
+ * {@link #traverseDescendents(FileSelectInfo)}, an override of them would be ignored.
+ */
+public final class GitFileSelector implements FileSelector
+{
+
+	private final String pattern;
+	private final Pattern regex;
+	private final int minDepth;
+	private final int maxDepth;
+
+	/**
+	 * Select the matching files at any depth.
+	 */
+	public GitFileSelector(String pattern)
+	{
+		this(pattern, 1, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param minDepth the minimum depth of the files, 1 for the children of the base folder
+	 * @param maxDepth the maximum depth of the files
+	 */
+	public GitFileSelector(String pattern, int minDepth, int maxDepth)
+	{
+		this.pattern = pattern;
+		this.regex = Pattern.compile(toRegex(pattern));
+		this.minDepth = minDepth;
+		// without **, a pattern only matches files at the depth of its number of names
+		this.maxDepth = pattern.contains("**") ? maxDepth : Math.min(maxDepth, pattern.split("/", -1).length);
+	}
+
+	/**
+	 * Select the files whose name ends with the given suffix, in every folder.
+	 */
+	public static GitFileSelector suffix(String suffix)
+	{
+		return new GitFileSelector("**/*" + suffix);
+	}
+
+	@Override
+	public boolean includeFile(FileSelectInfo fileInfo) throws FileSystemException
+	{
+		if ( fileInfo.getDepth() < minDepth || fileInfo.getDepth() > maxDepth || fileInfo.getFile().getType() != FileType.FILE )
+		{
+			return false;
+		}
+		return matches(fileInfo.getBaseFolder().getName().getRelativeName(fileInfo.getFile().getName()));
+	}
+
+	@Override
+	public boolean traverseDescendents(FileSelectInfo fileInfo)
+	{
+		return fileInfo.getDepth() < maxDepth;
+	}
+
+	/**
+	 * @param relativePath the decoded path of a file relative to the base folder
+	 */
+	boolean matches(String relativePath)
+	{
+		return regex.matcher(relativePath).matches();
+	}
+
+	int getMinDepth()
+	{
+		return minDepth;
+	}
+
+	int getMaxDepth()
+	{
+		return maxDepth;
+	}
+
+	/**
+	 * @return the leading folders of the pattern without wildcard, the empty string if there are none
+	 */
+	String getLiteralPrefix()
+	{
+		String prefix = "";
+		int start = 0;
+		int slash;
+		while ((slash = pattern.indexOf('/', start)) >= 0)
+		{
+			String name = pattern.substring(start, slash);
+			if ( isWildcard(name) )
+			{
+				break;
+			}
+			prefix = pattern.substring(0, slash);
+			start = slash + 1;
+		}
+		return prefix;
+	}
+
+	/**
+	 * @return the end of the last name of the pattern after its last wildcard, the empty string if there is none
+	 */
+	String getLiteralSuffix()
+	{
+		int start = Math.max(pattern.lastIndexOf('/'), Math.max(pattern.lastIndexOf('*'), pattern.lastIndexOf('?')));
+		return pattern.substring(start + 1);
+	}
+
+	@Override
+	public String toString()
+	{
+		return pattern;
+	}
+
+	private static boolean isWildcard(String name)
+	{
+		return name.indexOf('*') >= 0 || name.indexOf('?') >= 0;
+	}
+
+	private static String toRegex(String pattern)
+	{
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < pattern.length(); i++)
+		{
+			char c = pattern.charAt(i);
+			if ( c == '*' && pattern.startsWith("**/", i) )
+			{
+				regex.append("(?:[^/]*/)*");
+				i += 2;
+			} else if ( c == '*' && pattern.startsWith("**", i) )
+			{
+				regex.append(".*");
+				i++;
+			} else if ( c == '*' )
+			{
+				regex.append("[^/]*");
+			} else if ( c == '?' )
+			{
+				regex.append("[^/]");
+			} else
+			{
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return regex.toString();
+	}
+}
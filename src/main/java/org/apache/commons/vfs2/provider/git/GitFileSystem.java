@@ -2,33 +2,133 @@ package org.apache.commons.vfs2.provider.git;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.vfs2.Capability;
+import org.apache.commons.vfs2.FileListener;
 import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.RandomAccessContent;
 import org.apache.commons.vfs2.provider.AbstractFileName;
 import org.apache.commons.vfs2.provider.AbstractFileSystem;
+import org.apache.commons.vfs2.provider.UriParser;
 import org.apache.commons.vfs2.provider.local.LocalFileName;
+import org.apache.commons.vfs2.util.FileObjectUtils;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.eclipse.jgit.lib.AsyncObjectSizeQueue;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.lib.RepositoryBuilder;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
+/**
+ * A file system reading a reference of a git repository.
+ * <p>
+ * A file system can be shared by any number of threads reading files : the tree of the reference is published as an
+ * immutable snapshot, replaced as a whole when the reference moves, so each lookup, listing or read sees a single
+ * consistent tree without taking the lock of the file system ; the repository, the tree and its index are initialised
+ * once, and the objects are read with readers borrowed from a pool instead of a reader per read. Writes are committed
+ * one at a time or in a transaction bound to the writing thread.
+ */
 public class GitFileSystem extends AbstractFileSystem implements FileSystem
 {
 
-	private RevTree tree;
-	private Repository repository;
+	/**
+	 * The id of the tree without entries, the root of a branch without commit yet. It isn't necessarily stored in the
+	 * repository : the trees with this id are never read.
+	 */
+	static final ObjectId EMPTY_TREE_ID = ObjectId.fromString("4b825dc642cb6eb9a060e54bf8d69288fbee4904");
+
+	// the readers kept idle between reads, enough for a few reads in parallel per processor
+	private static final int MAX_IDLE_READERS = 2 * Runtime.getRuntime().availableProcessors();
+
+	private final File gitDirectory;
+	private final GitRepositoryPool repositoryPool;
+	private volatile TreeSnapshot snapshot;
+	private volatile GitLastModifiedIndex lastModifiedIndex;
+	private final Object lastModifiedLock = new Object();
+	private final Object refreshLock = new Object();
+	private volatile Repository repository;
+	private GitRepositoryCaches repositoryCaches;
+	private GitReaderPool readerPool;
+	private final Cache<ObjectId, Long> blobSizes;
+	private final Cache<ObjectId, GitInflateIndex> inflateIndexes = CacheBuilder.newBuilder().softValues().build();
+	private final ThreadLocal<GitTransaction> transactions = new ThreadLocal<GitTransaction>();
+	private GitGroupCommitter groupCommitter;
+	private boolean fanOutCreated;
+	private ScheduledExecutorService refresher;
+	private volatile ForkJoinPool traversalPool;
+	// the names of the files with a listener, a refresh only resolves the changed files cached or listened to
+	private final Multiset<FileName> listenedNames = ConcurrentHashMultiset.create();
+	private final GitMetrics metrics;
+	private ObjectName metricsName;
 
-	public GitFileSystem(LocalFileName rootName, FileSystemOptions fileSystemOptions)
+	public GitFileSystem(LocalFileName rootName, File gitDirectory, GitRepositoryPool repositoryPool, FileSystemOptions fileSystemOptions)
 	{
 		super(rootName, null, fileSystemOptions);
+		this.gitDirectory = gitDirectory;
+		this.repositoryPool = repositoryPool;
+		int blobSizeCacheSize = GitFileSystemConfigBuilder.getInstance().getBlobSizeCacheSize(fileSystemOptions);
+		blobSizes = CacheBuilder.newBuilder().maximumSize(blobSizeCacheSize).build();
+		metrics = new GitMetrics(GitFileSystemConfigBuilder.getInstance().isMetricsEnabled(fileSystemOptions));
 	}
 
 	@Override
@@ -43,27 +143,1452 @@ public class GitFileSystem extends AbstractFileSystem implements FileSystem
 		caps.addAll(GitProvider.capabilities);
 	}
 
-	Repository getRepository(FileName name) throws IOException
+	/**
+	 * @return the repository shared with the other file systems of the same git directory
+	 */
+	Repository getRepository() throws IOException
+	{
+		Repository repo = repository;
+		if ( repo == null )
+		{
+			synchronized (this)
+			{
+				if ( repository == null )
+				{
+					WindowCacheConfig cacheConfig = GitFileSystemConfigBuilder.getInstance().getWindowCacheConfig(getFileSystemOptions());
+					Repository acquired = repositoryPool.acquire(gitDirectory, cacheConfig);
+					repositoryCaches = repositoryPool.getCaches(acquired);
+					readerPool = new GitReaderPool(acquired, MAX_IDLE_READERS);
+					// published last, the fields set before are visible to the threads reading it
+					repository = acquired;
+				}
+				repo = repository;
+			}
+		}
+		return repo;
+	}
+
+	/**
+	 * @return the caches shared with the other file systems of the same git directory
+	 */
+	GitRepositoryCaches getRepositoryCaches() throws IOException
+	{
+		getRepository();
+		return repositoryCaches;
+	}
+
+	/**
+	 * @return the pool of the readers of the repository, a borrowed reader is given back to the same pool
+	 */
+	GitReaderPool getReaderPool() throws IOException
+	{
+		getRepository();
+		return readerPool;
+	}
+
+	/**
+	 * Open an object with a pooled reader. The content of a large object is streamed with its own reader.
+	 * @param typeHint the expected type of the object, {@link ObjectReader#OBJ_ANY} for any
+	 */
+	ObjectLoader openObject(ObjectId objectId, int typeHint) throws IOException
+	{
+		GitReaderPool readers = getReaderPool();
+		ObjectReader reader = readers.acquire();
+		try
+		{
+			return reader.open(objectId, typeHint);
+		} finally
+		{
+			readers.release(reader);
+		}
+	}
+
+	@Override
+	public void init() throws FileSystemException
+	{
+		super.init();
+		long interval = GitFileSystemConfigBuilder.getInstance().getRefreshInterval(getFileSystemOptions());
+		if ( interval > 0 )
+		{
+			ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("vfs-git refresh " + getRootName()).build();
+			refresher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+			refresher.scheduleWithFixedDelay(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						refreshTree();
+					} catch (IOException e)
+					{
+						getLogger().warn(String.format("Could not refresh %s", getRootName()), e);
+					}
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}
+		if ( metrics.isEnabled() )
+		{
+			registerMetrics();
+		}
+	}
+
+	@Override
+	public void close()
 	{
-		if ( repository == null )
+		if ( refresher != null )
+		{
+			refresher.shutdownNow();
+		}
+		if ( traversalPool != null )
 		{
-			repository = buildRepository(name);
+			traversalPool.shutdownNow();
 		}
-		return repository;
+		if ( metricsName != null )
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+			} catch (JMException e)
+			{
+				getLogger().warn(String.format("Could not unregister %s", metricsName), e);
+			}
+			metricsName = null;
+		}
+
+		// the committer thread needs this file system, it can't be waited for while holding its lock
+		GitGroupCommitter committer;
+		synchronized (this)
+		{
+			committer = groupCommitter;
+			groupCommitter = null;
+		}
+		if ( committer != null )
+		{
+			try
+			{
+				committer.close();
+			} catch (InterruptedIOException e)
+			{
+				// the changes still queued are committed by the committer thread
+			}
+		}
+		super.close();
 	}
 
-	RevTree getTree(FileName name) throws IOException
+	/**
+	 * Register the metrics of this file system in the platform MBean server, under a name unique to this instance since
+	 * several file systems can read the same root with different options.
+	 */
+	private void registerMetrics()
 	{
-		if ( tree == null )
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			ObjectName name = new ObjectName(String.format("%s:type=GitFileSystem,root=%s,id=%x", getClass().getPackage().getName(),
+					ObjectName.quote(getRootName().getURI()), System.identityHashCode(this)));
+			server.registerMBean(new GitMetricsBean(this), name);
+			metricsName = name;
+		} catch (JMException e)
 		{
-			tree = buildTree(name);
+			getLogger().warn(String.format("Could not register the metrics of %s", getRootName()), e);
 		}
-		return tree;
 	}
 
-	private RevTree buildTree(FileName name) throws IOException
+	/**
+	 * @return the counters of this file system since it was created, or null unless enabled by
+	 *         {@link GitFileSystemConfigBuilder#setMetricsEnabled(FileSystemOptions, boolean)}
+	 */
+	public GitMetricsSnapshot getMetrics() throws IOException
+	{
+		return metrics.isEnabled() ? metrics.snapshot() : null;
+	}
+
+	GitMetrics getMetricsRecorder()
+	{
+		return metrics;
+	}
+
+	@Override
+	protected synchronized void doCloseCommunicationLink()
 	{
-		Repository repo = getRepository(name);
+		if ( repository != null )
+		{
+			readerPool.close();
+			repositoryPool.release(repository);
+			repository = null;
+			repositoryCaches = null;
+			readerPool = null;
+		}
+	}
+
+	/**
+	 * @return the tree read by the file system, null if it is empty
+	 */
+	RevTree getTree() throws IOException
+	{
+		return getSnapshot().tree;
+	}
+
+	/**
+	 * @return the current tree snapshot, read from the reference on the first call
+	 */
+	private TreeSnapshot getSnapshot() throws IOException
+	{
+		TreeSnapshot current = snapshot;
+		if ( current == null )
+		{
+			synchronized (this)
+			{
+				if ( snapshot == null )
+				{
+					snapshot = buildSnapshot();
+				}
+				current = snapshot;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return the path index of the tree or null if the tree is too large to be indexed
+	 */
+	GitTreeIndex getTreeIndex() throws IOException
+	{
+		return getTreeIndex(getSnapshot());
+	}
+
+	private GitTreeIndex getTreeIndex(TreeSnapshot current) throws IOException
+	{
+		if ( !current.indexed )
+		{
+			synchronized (current)
+			{
+				int maxEntries = GitFileSystemConfigBuilder.getInstance().getTreeIndexMaxEntries(getFileSystemOptions());
+				// the paths are looked up in the shared listings when they are cached, no tree is read for a disabled index
+				if ( !current.indexed && current.tree != null && !isTreeListingCached() && maxEntries > 0 )
+				{
+					GitReaderPool readers = getReaderPool();
+					ObjectReader reader = readers.acquire();
+					try
+					{
+						metrics.treeWalked();
+						current.index = GitTreeIndex.build(reader, current.tree, maxEntries);
+					} finally
+					{
+						readers.release(reader);
+					}
+				}
+				current.indexed = true;
+			}
+		}
+		return current.index;
+	}
+
+	/**
+	 * Lookup an entry of the tree, as staged by the transaction of the current thread if there is one.
+	 * @param path the path relative to the repository root, the empty string for the root
+	 * @return the entry or null if the path isn't in the tree
+	 */
+	GitEntry getEntry(String path) throws IOException
+	{
+		long start = metrics.start();
+		GitTransaction transaction = getTransaction();
+		GitEntry entry = getTreeEntry(getSnapshot(), path);
+		entry = transaction == null ? entry : transaction.getEntry(path, entry);
+		metrics.lookedUp(start);
+		return entry;
+	}
+
+	private GitEntry getTreeEntry(TreeSnapshot current, String path) throws IOException
+	{
+		RevTree revTree = current.tree;
+		if ( path.length() == 0 )
+		{
+			return new GitEntry(path, FileMode.TREE, revTree == null ? EMPTY_TREE_ID : revTree);
+		}
+		if ( revTree == null )
+		{
+			return null;
+		}
+
+		GitTreeIndex index = getTreeIndex(current);
+		if ( index != null )
+		{
+			int slot = index.find(path);
+			return slot == GitTreeIndex.NOT_FOUND ? null : index.getEntry(slot);
+		}
+		if ( isTreeListingCached() )
+		{
+			return findListedEntry(path, revTree);
+		}
+
+		metrics.treeWalked();
+		GitReaderPool readers = getReaderPool();
+		ObjectReader reader = readers.acquire();
+		try
+		{
+			// the walk isn't released, it would release the pooled reader
+			TreeWalk treeWalk = TreeWalk.forPath(reader, path, revTree);
+			return treeWalk == null ? null : new GitEntry(path, treeWalk.getFileMode(0), treeWalk.getObjectId(0));
+		} finally
+		{
+			readers.release(reader);
+		}
+	}
+
+	/**
+	 * List the entries of a folder with a single lookup in the index or a single walk of the folder, as staged by the
+	 * transaction of the current thread if there is one.
+	 * @param path the path of the folder relative to the repository root, the empty string for the root
+	 * @return the entries of the folder or null if the path isn't a folder of the tree
+	 */
+	List<GitEntry> listEntries(String path) throws IOException
+	{
+		long start = metrics.start();
+		GitTransaction transaction = getTransaction();
+		List<GitEntry> entries = listTreeEntries(getSnapshot(), path);
+		entries = transaction == null ? entries : transaction.listEntries(path, entries);
+		metrics.lookedUp(start);
+		return entries;
+	}
+
+	/**
+	 * Iterate the entries of a folder as they are read from its tree, as staged by the transaction of the current
+	 * thread if there is one : the staged entries of a folder are listed at once.
+	 * @param path the path of the folder relative to the repository root, the empty string for the root
+	 * @return the entries of the folder or null if the path isn't a folder of the tree
+	 */
+	GitEntryIterator iterateEntries(String path) throws IOException
+	{
+		if ( getTransaction() != null )
+		{
+			List<GitEntry> entries = listEntries(path);
+			return entries == null ? null : GitEntryIterator.of(entries.iterator());
+		}
+
+		TreeSnapshot current = getSnapshot();
+		GitTreeIndex index = getTreeIndex(current);
+		if ( index != null )
+		{
+			int slot = index.find(path);
+			return slot == GitTreeIndex.NOT_FOUND || !index.isTree(slot) ? null : GitEntryIterator.ofIndex(index, slot);
+		}
+
+		GitEntry folder = getTreeEntry(current, path);
+		if ( folder == null || folder.getFileType() != FileType.FOLDER )
+		{
+			return null;
+		}
+		if ( folder.getObjectId().equals(EMPTY_TREE_ID) )
+		{
+			return GitEntryIterator.of(Collections.<GitEntry> emptyList().iterator());
+		}
+		if ( isTreeListingCached() )
+		{
+			return GitEntryIterator.ofListing(getTreeListing(folder.getObjectId()), path);
+		}
+		metrics.treeWalked();
+		return GitEntryIterator.ofTree(getRepository(), path, folder.getObjectId());
+	}
+
+	/**
+	 * @return true if the listings of the trees are cached for all the file systems of the repository
+	 */
+	private boolean isTreeListingCached()
+	{
+		GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+		return config.getTreeListingCacheMaxEntries(getFileSystemOptions()) > 0 || config.getTreeListingCacheMaxBytes(getFileSystemOptions()) > 0;
+	}
+
+	private GitTreeListing getTreeListing(ObjectId treeId) throws IOException
+	{
+		GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+		long maxEntries = config.getTreeListingCacheMaxEntries(getFileSystemOptions());
+		long maxBytes = config.getTreeListingCacheMaxBytes(getFileSystemOptions());
+		return getRepositoryCaches().getTreeListing(treeId, maxEntries, maxBytes);
+	}
+
+	/**
+	 * Lookup a path folder by folder in the cached listings of the trees.
+	 */
+	private GitEntry findListedEntry(String path, RevTree revTree) throws IOException
+	{
+		GitEntry entry = new GitEntry("", FileMode.TREE, revTree);
+		int start = 0;
+		while (start < path.length())
+		{
+			if ( entry.getFileType() != FileType.FOLDER )
+			{
+				return null;
+			}
+			int end = path.indexOf('/', start);
+			end = end < 0 ? path.length() : end;
+
+			GitTreeListing listing = getTreeListing(entry.getObjectId());
+			int slot = listing.find(path.substring(start, end));
+			if ( slot == GitTreeListing.NOT_FOUND )
+			{
+				return null;
+			}
+			entry = listing.getEntry(slot, entry.getPath());
+			start = end + 1;
+		}
+		return entry;
+	}
+
+	private List<GitEntry> listTreeEntries(TreeSnapshot current, String path) throws IOException
+	{
+		if ( current.tree == null )
+		{
+			return path.length() == 0 ? new ArrayList<GitEntry>() : null;
+		}
+		GitTreeIndex index = getTreeIndex(current);
+		if ( index != null )
+		{
+			int slot = index.find(path);
+			if ( slot == GitTreeIndex.NOT_FOUND || !index.isTree(slot) )
+			{
+				return null;
+			}
+
+			List<GitEntry> entries = new ArrayList<GitEntry>();
+			int end = index.getEnd(slot);
+			for (int child = slot + 1; child < end; child = index.getEnd(child))
+			{
+				entries.add(index.getEntry(child));
+			}
+			return entries;
+		}
+		if ( isTreeListingCached() )
+		{
+			GitEntry folder = getTreeEntry(current, path);
+			if ( folder == null || folder.getFileType() != FileType.FOLDER )
+			{
+				return null;
+			}
+			return getTreeListing(folder.getObjectId()).getEntries(path);
+		}
+
+		metrics.treeWalked();
+		GitReaderPool readers = getReaderPool();
+		ObjectReader reader = readers.acquire();
+		try
+		{
+			TreeWalk treeWalk;
+			if ( path.length() == 0 )
+			{
+				treeWalk = new TreeWalk(reader);
+				treeWalk.addTree(current.tree);
+			} else
+			{
+				treeWalk = TreeWalk.forPath(reader, path, current.tree);
+				if ( treeWalk == null || !treeWalk.isSubtree() )
+				{
+					return null;
+				}
+				treeWalk.enterSubtree();
+			}
+
+			List<GitEntry> entries = new ArrayList<GitEntry>();
+			while (treeWalk.next())
+			{
+				entries.add(new GitEntry(treeWalk.getPathString(), treeWalk.getFileMode(0), treeWalk.getObjectId(0)));
+			}
+			return entries;
+		} finally
+		{
+			readers.release(reader);
+		}
+	}
+
+	/**
+	 * Lookup many paths at once, as staged by the transaction of the current thread if there is one : with the index
+	 * each lookup is a single search, without index the tree is walked once, entering only the folders leading to the
+	 * paths.
+	 * @param paths the paths relative to the repository root, the empty string for the root
+	 * @return the entry of each path in the tree, by path
+	 */
+	Map<String, GitEntry> findEntries(Collection<String> paths) throws IOException
+	{
+		TreeSnapshot current = getSnapshot();
+		Map<String, GitEntry> entries = getTreeIndex(current) != null ? searchTreeEntries(current, paths) : walkTreeEntries(current, paths);
+		GitTransaction transaction = getTransaction();
+		if ( transaction != null )
+		{
+			for (String path : new HashSet<String>(paths))
+			{
+				GitEntry entry = transaction.getEntry(path, entries.get(path));
+				if ( entry == null )
+				{
+					entries.remove(path);
+				} else
+				{
+					entries.put(path, entry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	private Map<String, GitEntry> searchTreeEntries(TreeSnapshot current, Collection<String> paths) throws IOException
+	{
+		Map<String, GitEntry> entries = new HashMap<String, GitEntry>();
+		for (String path : paths)
+		{
+			GitEntry entry = getTreeEntry(current, path);
+			if ( entry != null )
+			{
+				entries.put(path, entry);
+			}
+		}
+		return entries;
+	}
+
+	private Map<String, GitEntry> walkTreeEntries(TreeSnapshot current, Collection<String> paths) throws IOException
+	{
+		Map<String, GitEntry> entries = new HashMap<String, GitEntry>();
+		Set<String> wanted = new HashSet<String>();
+		// the folders to enter to reach the paths
+		Set<String> folders = new HashSet<String>();
+		for (String path : paths)
+		{
+			if ( path.length() == 0 )
+			{
+				entries.put(path, getTreeEntry(current, path));
+			} else if ( wanted.add(path) )
+			{
+				for (int slash = path.lastIndexOf('/'); slash > 0 && folders.add(path.substring(0, slash)); slash = path.lastIndexOf('/', slash - 1))
+				{
+					// the parents of this folder are already added
+				}
+			}
+		}
+		if ( wanted.isEmpty() || current.tree == null )
+		{
+			return entries;
+		}
+
+		metrics.treeWalked();
+		GitReaderPool readers = getReaderPool();
+		ObjectReader reader = readers.acquire();
+		try
+		{
+			TreeWalk treeWalk = new TreeWalk(reader);
+			treeWalk.addTree(current.tree);
+			treeWalk.setRecursive(false);
+			treeWalk.setFilter(PathFilterGroup.createFromStrings(wanted));
+			int remaining = wanted.size();
+			while (remaining > 0 && treeWalk.next())
+			{
+				String path = treeWalk.getPathString();
+				if ( wanted.contains(path) )
+				{
+					entries.put(path, new GitEntry(path, treeWalk.getFileMode(0), treeWalk.getObjectId(0)));
+					remaining--;
+				}
+				if ( treeWalk.isSubtree() && folders.contains(path) )
+				{
+					treeWalk.enterSubtree();
+				}
+			}
+			return entries;
+		} finally
+		{
+			readers.release(reader);
+		}
+	}
+
+	/**
+	 * Lookup the type, mode and object id of many paths at once, for instance to validate thousands of paths : the
+	 * cost follows the size of the tree rather than the number of paths, see {@link #getFileTypes(Collection)}.
+	 * @param paths the paths relative to the repository root, the empty string for the root
+	 * @return the entry of each path in the tree, in the order of the given paths ; the missing paths are absent
+	 */
+	public Map<String, GitEntry> getEntries(Collection<String> paths) throws IOException
+	{
+		Map<String, GitEntry> entries = findEntries(paths);
+		Map<String, GitEntry> ordered = new LinkedHashMap<String, GitEntry>();
+		for (String path : paths)
+		{
+			GitEntry entry = entries.get(path);
+			if ( entry != null )
+			{
+				ordered.put(path, entry);
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * Lookup the type of many paths at once. Without tree index the tree is walked once, filtered on the paths : only
+	 * the folders leading to a path are read. With the index, built by a single walk, each path is a single search.
+	 * @param paths the paths relative to the repository root, the empty string for the root
+	 * @return the type of each path in the order of the given paths, {@link FileType#IMAGINARY} for the missing paths
+	 */
+	public Map<String, FileType> getFileTypes(Collection<String> paths) throws IOException
+	{
+		Map<String, GitEntry> entries = findEntries(paths);
+		Map<String, FileType> types = new LinkedHashMap<String, FileType>();
+		for (String path : paths)
+		{
+			GitEntry entry = entries.get(path);
+			types.put(path, entry == null ? FileType.IMAGINARY : entry.getFileType());
+		}
+		return types;
+	}
+
+	/**
+	 * Read the content of many files at once, for instance the templates of a page : the paths are looked up with a
+	 * single walk of the tree, then the blobs are read in the order they are stored in the packs, through the blob cache
+	 * when it is enabled.
+	 * @param paths the paths of the files relative to the repository root
+	 * @return the read only content of each path which is a file, in the order of the given paths ; the paths which
+	 *         aren't files are missing
+	 * @throws IOException if a file is larger than the random access buffer threshold, see
+	 *             {@link GitFileSystemConfigBuilder#setRandomAccessBufferThreshold(FileSystemOptions, long)} : such a
+	 *             file isn't loaded in memory and must be read with its input stream
+	 */
+	public Map<String, ByteBuffer> readFiles(Collection<String> paths) throws IOException
+	{
+		return readFiles(paths, null);
+	}
+
+	/**
+	 * Read the content of many files at once, see {@link #readFiles(Collection)}.
+	 * @param executor reads batches of consecutive blobs in parallel, its number of threads bounds the threads reading
+	 *            at a time ; null to read them in the calling thread
+	 */
+	public Map<String, ByteBuffer> readFiles(Collection<String> paths, ExecutorService executor) throws IOException
+	{
+		Map<String, GitEntry> entries = findEntries(paths);
+		Set<ObjectId> blobIds = new HashSet<ObjectId>();
+		for (GitEntry entry : entries.values())
+		{
+			if ( entry.getFileType() == FileType.FILE )
+			{
+				blobIds.add(entry.getObjectId());
+			}
+		}
+
+		long threshold = GitFileSystemConfigBuilder.getInstance().getRandomAccessBufferThreshold(getFileSystemOptions());
+		int maxSize = (int) Math.min(threshold, Integer.MAX_VALUE);
+		Map<ObjectId, ByteBuffer> blobs = new GitBulkReader(this, getRepository(), maxSize).read(blobIds, executor);
+		Map<String, ByteBuffer> contents = new LinkedHashMap<String, ByteBuffer>();
+		for (String path : paths)
+		{
+			GitEntry entry = entries.get(path);
+			if ( entry != null && entry.getFileType() == FileType.FILE && !contents.containsKey(path) )
+			{
+				// a blob read once for several paths is shared, each path gets its own position
+				contents.put(path, blobs.get(entry.getObjectId()).duplicate());
+			}
+		}
+		return contents;
+	}
+
+	/**
+	 * Walk the files and folders under a folder with several threads, for scans of a whole repository : each subtree is
+	 * read by its own task, {@link GitFileSystemConfigBuilder#setTraversalParallelism(FileSystemOptions, int)} tasks at
+	 * a time. The tree of the file system is walked, the changes staged by a transaction aren't seen.
+	 * @param path the path of the folder relative to the repository root, the empty string for the root
+	 * @param visitor called for each file and folder under the folder, from several threads at the same time unless
+	 *            ordered
+	 * @param ordered visit the files from the calling thread in the order of the tree, a folder before its files ; the
+	 *            subtrees are still read in parallel
+	 * @throws FileSystemException if the path isn't a folder
+	 */
+	public void traverse(String path, GitFileVisitor visitor, boolean ordered) throws IOException
+	{
+		GitEntry folder = getTreeEntry(getSnapshot(), path);
+		if ( folder == null || folder.getFileType() != FileType.FOLDER )
+		{
+			FileName name = getFileSystemManager().resolveName(getRootName(), UriParser.encode(path), NameScope.DESCENDENT_OR_SELF);
+			throw new FileSystemException("vfs.provider/list-children-not-folder.error", name);
+		}
+
+		if ( folder.getObjectId().equals(EMPTY_TREE_ID) )
+		{
+			return;
+		}
+		new GitTreeTraversal(this, getRepository(), visitor, ordered).traverse(folder, getTraversalPool());
+	}
+
+	/**
+	 * @return the threads of the traversals, created on the first traversal and shared by the next ones
+	 */
+	private ForkJoinPool getTraversalPool()
+	{
+		ForkJoinPool pool = traversalPool;
+		if ( pool == null )
+		{
+			synchronized (this)
+			{
+				if ( traversalPool == null )
+				{
+					traversalPool = new ForkJoinPool(GitFileSystemConfigBuilder.getInstance().getTraversalParallelism(getFileSystemOptions()));
+				}
+				pool = traversalPool;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Resolve the file of an entry read from the tree and attach the entry to it. A file already resolved is taken from
+	 * the cache of the file system without the lock held by {@link #resolveFile(FileName)}, which is only taken to
+	 * create the file.
+	 */
+	GitFile resolveEntry(GitEntry entry) throws FileSystemException
+	{
+		FileName name = getFileSystemManager().resolveName(getRootName(), UriParser.encode(entry.getPath()), NameScope.DESCENDENT);
+		FileObject file = getFileFromCache(name);
+		if ( file == null )
+		{
+			file = resolveFile(name);
+		}
+		GitFile gitFile = (GitFile) FileObjectUtils.getAbstractFileObject(file);
+		gitFile.injectEntry(entry);
+		return gitFile;
+	}
+
+	/**
+	 * List the paths changed between two revisions with a single walk of both trees : the subtrees with the same id on
+	 * both sides are skipped without being read, so the cost follows the size of the change rather than of the trees.
+	 * A file deleted and added elsewhere with the same blob is reported as renamed ; renames with modified content are
+	 * reported as a deletion and an addition.
+	 * @param oldRevision the old revision, see {@link GitFileSystemConfigBuilder#setReference(FileSystemOptions, String)}
+	 *            for the syntax, or null for an empty tree
+	 * @param newRevision the new revision, or null for an empty tree
+	 * @param paths restrict the diff to these files or folders, relative to the repository root ; all the paths when
+	 *            none is given
+	 * @throws FileSystemException if a revision can't be resolved
+	 */
+	public List<GitDiffEntry> diff(String oldRevision, String newRevision, String... paths) throws IOException
+	{
+		metrics.treeWalked();
+		GitReaderPool readers = getReaderPool();
+		ObjectReader reader = readers.acquire();
+		TreeWalk treeWalk = new TreeWalk(reader);
+		try
+		{
+			treeWalk.addTree(newTreeIterator(reader, oldRevision));
+			treeWalk.addTree(newTreeIterator(reader, newRevision));
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(paths.length == 0 ? TreeFilter.ANY_DIFF : AndTreeFilter.create(PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+
+			List<GitDiffEntry> entries = new ArrayList<GitDiffEntry>();
+			// the position of the deleted files by blob id, to pair them with the added files
+			Map<ObjectId, Integer> deleted = new HashMap<ObjectId, Integer>();
+			List<GitDiffEntry> added = new ArrayList<GitDiffEntry>();
+			while (treeWalk.next())
+			{
+				String path = treeWalk.getPathString();
+				FileMode oldMode = treeWalk.getFileMode(0);
+				FileMode newMode = treeWalk.getFileMode(1);
+				ObjectId oldId = treeWalk.getObjectId(0);
+				ObjectId newId = treeWalk.getObjectId(1);
+				if ( oldMode == FileMode.MISSING )
+				{
+					added.add(new GitDiffEntry(GitDiffEntry.ChangeType.ADDED, null, path, oldMode, newMode, oldId, newId));
+				} else if ( newMode == FileMode.MISSING )
+				{
+					if ( !deleted.containsKey(oldId) )
+					{
+						deleted.put(oldId, entries.size());
+					}
+					entries.add(new GitDiffEntry(GitDiffEntry.ChangeType.DELETED, path, null, oldMode, newMode, oldId, newId));
+				} else
+				{
+					entries.add(new GitDiffEntry(GitDiffEntry.ChangeType.MODIFIED, path, path, oldMode, newMode, oldId, newId));
+				}
+			}
+
+			for (GitDiffEntry entry : added)
+			{
+				Integer position = deleted.remove(entry.getNewId());
+				if ( position == null )
+				{
+					entries.add(entry);
+				} else
+				{
+					GitDiffEntry source = entries.get(position);
+					entries.set(position, new GitDiffEntry(GitDiffEntry.ChangeType.RENAMED, source.getOldPath(), entry.getNewPath(), source.getOldMode(),
+							entry.getNewMode(), source.getOldId(), entry.getNewId()));
+				}
+			}
+			return entries;
+		} finally
+		{
+			readers.release(reader);
+		}
+	}
+
+	private AbstractTreeIterator newTreeIterator(ObjectReader reader, String revision) throws IOException
+	{
+		if ( revision == null )
+		{
+			return new EmptyTreeIterator();
+		}
+		ObjectId treeId = getRepository().resolve(revision + "^{tree}");
+		if ( treeId == null )
+		{
+			throw new FileSystemException("vfs.provider/resolve-file.error", revision);
+		}
+		return new CanonicalTreeParser(null, reader, treeId);
+	}
+
+	/**
+	 * @param tree a tree or null for the empty tree
+	 */
+	private static AbstractTreeIterator newTreeIterator(ObjectReader reader, RevTree tree) throws IOException
+	{
+		return tree == null ? new EmptyTreeIterator() : new CanonicalTreeParser(null, reader, tree);
+	}
+
+	/**
+	 * @param path the path relative to the repository root, the empty string for the root
+	 * @return the time in milliseconds of the last commit of the branch touching the path, 0 if it isn't in the tree
+	 */
+	long getLastModified(String path) throws IOException
+	{
+		GitLastModifiedIndex index = getLastModifiedIndex();
+		return index == null ? 0 : index.getLastModified(path);
+	}
+
+	/**
+	 * @return the last modified index of the commit of the tree, updated from the previous one when the branch moved,
+	 *         or null if the branch has no commit yet
+	 */
+	private GitLastModifiedIndex getLastModifiedIndex() throws IOException
+	{
+		RevCommit commit = getSnapshot().commit;
+		if ( commit == null )
+		{
+			return null;
+		}
+		GitLastModifiedIndex index = lastModifiedIndex;
+		if ( index != null && index.getTip().equals(commit) )
+		{
+			return index;
+		}
+
+		// a build can walk the whole history, resolving files mustn't wait for it
+		synchronized (lastModifiedLock)
+		{
+			index = lastModifiedIndex;
+			if ( index == null || !index.getTip().equals(commit) )
+			{
+				GitReaderPool readers = getReaderPool();
+				ObjectReader reader = readers.acquire();
+				try
+				{
+					index = index == null ? GitLastModifiedIndex.build(reader, commit) : index.update(reader, commit);
+				} finally
+				{
+					readers.release(reader);
+				}
+				lastModifiedIndex = index;
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return the blob cache shared by the file systems of the repository or null if this file system doesn't use it
+	 */
+	GitBlobCache getBlobCache() throws IOException
+	{
+		GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+		long size = config.getBlobCacheSize(getFileSystemOptions());
+		if ( size <= 0 )
+		{
+			return null;
+		}
+		return getRepositoryCaches().getBlobCache(size, config.getBlobCacheMaxBlobSize(getFileSystemOptions()), config.isBlobCacheOffHeap(getFileSystemOptions()));
+	}
+
+	/**
+	 * @return the hits and misses of the blob cache shared by the file systems of the repository, or null if this file
+	 *         system doesn't use it
+	 */
+	public CacheStats getBlobCacheStats() throws IOException
+	{
+		GitBlobCache blobCache = getBlobCache();
+		return blobCache == null ? null : blobCache.getStats();
+	}
+
+	/**
+	 * Lookup the size of a blob without loading it. Sizes are remembered by object id since a blob never changes.
+	 * @return the size of the blob of the given entry
+	 */
+	long getContentSize(GitEntry entry) throws IOException
+	{
+		GitTreeIndex index = getTreeIndex();
+		int slot = index == null ? GitTreeIndex.NOT_FOUND : index.find(entry.getPath());
+		if ( slot != GitTreeIndex.NOT_FOUND && !index.getObjectId(slot).equals(entry.getObjectId()) )
+		{
+			// staged by a transaction
+			slot = GitTreeIndex.NOT_FOUND;
+		}
+		if ( slot != GitTreeIndex.NOT_FOUND && index.getSize(slot) != GitTreeIndex.UNKNOWN_SIZE )
+		{
+			return index.getSize(slot);
+		}
+
+		Long size = blobSizes.getIfPresent(entry.getObjectId());
+		if ( size == null )
+		{
+			GitReaderPool readers = getReaderPool();
+			ObjectReader reader = readers.acquire();
+			try
+			{
+				size = reader.getObjectSize(entry.getObjectId(), Constants.OBJ_BLOB);
+			} finally
+			{
+				readers.release(reader);
+			}
+			blobSizes.put(entry.getObjectId(), size);
+		}
+
+		if ( slot != GitTreeIndex.NOT_FOUND )
+		{
+			index.setSize(slot, size);
+		}
+		return size;
+	}
+
+	/**
+	 * Lookup in one batch the sizes of the blobs of the given entries which aren't known yet.
+	 */
+	void prefetchContentSizes(Collection<GitEntry> entries) throws IOException
+	{
+		List<ObjectId> objectIds = new ArrayList<ObjectId>();
+		for (GitEntry entry : entries)
+		{
+			if ( entry.getFileType() == FileType.FILE && blobSizes.getIfPresent(entry.getObjectId()) == null )
+			{
+				objectIds.add(entry.getObjectId());
+			}
+		}
+		if ( objectIds.isEmpty() )
+		{
+			return;
+		}
+
+		GitReaderPool readers = getReaderPool();
+		ObjectReader reader = readers.acquire();
+		AsyncObjectSizeQueue<ObjectId> queue = reader.getObjectSize(objectIds, false);
+		try
+		{
+			while (queue.next())
+			{
+				blobSizes.put(queue.getCurrent(), queue.getSize());
+			}
+		} finally
+		{
+			queue.release();
+			readers.release(reader);
+		}
+	}
+
+	/**
+	 * Open a random access content resuming inflation at checkpoints, the checkpoints are built on the first access of
+	 * the blob.
+	 * @return the content or null if the blob isn't stored as a whole deflated stream
+	 */
+	RandomAccessContent openCheckpointContent(ObjectId objectId, long size, RandomAccessMode mode) throws IOException
+	{
+		Repository repo = getRepository();
+		GitCompressedBlob blob = GitCompressedBlob.locate(repo, objectId);
+		if ( blob == null )
+		{
+			return null;
+		}
+
+		GitInflateIndex index = getInflateIndex(repo, objectId, blob);
+		return new GitCheckpointRandomAccessContent(this, objectId, size, blob, index, mode);
+	}
+
+	/**
+	 * Get the checkpoints of a blob, built once by the first caller : the callers waiting for the same blob block until
+	 * they are built, the other threads using the file system don't.
+	 */
+	private GitInflateIndex getInflateIndex(final Repository repo, final ObjectId objectId, final GitCompressedBlob blob) throws IOException
+	{
+		Callable<GitInflateIndex> loader = new Callable<GitInflateIndex>()
+		{
+			@Override
+			public GitInflateIndex call() throws IOException
+			{
+				GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+				int span = config.getInflateCheckpointSpan(getFileSystemOptions());
+				File file = new File(repo.getDirectory(), "vfs-git/checkpoints/" + objectId.name());
+				boolean persist = config.isPersistInflateCheckpoints(getFileSystemOptions());
+
+				GitInflateIndex index = persist ? GitInflateIndex.read(file, blob.getSource(), span) : null;
+				if ( index == null )
+				{
+					index = blob.buildIndex(span);
+					if ( persist )
+					{
+						index.write(file);
+					}
+				}
+				return index;
+			}
+		};
+
+		try
+		{
+			GitInflateIndex index = inflateIndexes.get(objectId.copy(), loader);
+			if ( !index.getSource().equals(blob.getSource()) )
+			{
+				// the blob moved since, to another pack for instance
+				inflateIndexes.asMap().remove(objectId, index);
+				index = inflateIndexes.get(objectId.copy(), loader);
+			}
+			return index;
+		} catch (ExecutionException e)
+		{
+			throw (IOException) e.getCause();
+		} catch (UncheckedExecutionException e)
+		{
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	/**
+	 * Begin a transaction on the branch of this file system. Until it is closed, the files of this file system
+	 * modified by the current thread are staged in the transaction.
+	 * @throws FileSystemException if the reference of this file system isn't a branch
+	 */
+	public GitTransaction beginTransaction() throws IOException
+	{
+		if ( transactions.get() != null )
+		{
+			throw new IllegalStateException("A transaction is already open in this thread");
+		}
+
+		GitTransaction transaction = openTransaction();
+		transactions.set(transaction);
+		return transaction;
+	}
+
+	/**
+	 * @return true if the changes of the current thread are made in the working tree and committed through the index
+	 *         of the repository
+	 */
+	boolean isWorkTreeWrite() throws IOException
+	{
+		if ( transactions.get() != null )
+		{
+			return false;
+		}
+		GitWriteMode writeMode = GitFileSystemConfigBuilder.getInstance().getWriteMode(getFileSystemOptions());
+		if ( writeMode == null )
+		{
+			writeMode = getRepository().isBare() ? GitWriteMode.OBJECT_DATABASE : GitWriteMode.WORK_TREE;
+		}
+		return writeMode == GitWriteMode.WORK_TREE;
+	}
+
+	/**
+	 * Stage a change in the transaction of the current thread if there is one, otherwise commit it on its own or with
+	 * the changes of the other threads when group commit is enabled. Returns once the change is staged or committed.
+	 */
+	void writeChange(GitChange change) throws IOException
+	{
+		GitTransaction transaction = transactions.get();
+		if ( transaction != null )
+		{
+			change.apply(transaction);
+			return;
+		}
+
+		// the committer thread refreshes the files under the lock of this file system, which VFS holds to delete or
+		// rename a file : such a change is committed on its own
+		GitGroupCommitter committer = Thread.holdsLock(this) ? null : getGroupCommitter();
+		if ( committer != null )
+		{
+			committer.commit(change);
+			return;
+		}
+
+		for (int attempt = 1;; attempt++)
+		{
+			transaction = openTransaction();
+			try
+			{
+				change.apply(transaction);
+				transaction.commit(change.getMessage());
+				return;
+			} catch (GitBranchMovedException e)
+			{
+				if ( attempt == GitGroupCommitter.MAX_ATTEMPTS )
+				{
+					throw e;
+				}
+			} finally
+			{
+				transaction.close();
+			}
+		}
+	}
+
+	/**
+	 * Open a stream whose content is written to the object database and recorded as a change of the file when it is
+	 * closed.
+	 * @param append start with the current content of the file
+	 */
+	OutputStream openOutputStream(final String path, boolean append) throws IOException
+	{
+		GitTransaction transaction = transactions.get();
+		if ( transaction != null )
+		{
+			return transaction.openOutputStream(path, append);
+		}
+
+		final Repository repo = getRepository();
+		createFanOutDirectories(repo);
+		OutputStream outputStream = new GitBlobOutputStream(repo)
+		{
+			@Override
+			protected void insert(InputStream content, long contentLength) throws IOException
+			{
+				ObjectId blobId;
+				ObjectInserter inserter = repo.newObjectInserter();
+				try
+				{
+					blobId = inserter.insert(Constants.OBJ_BLOB, contentLength, content);
+					inserter.flush();
+				} finally
+				{
+					inserter.release();
+				}
+				writeChange(GitChange.write(path, blobId));
+			}
+		};
+
+		GitEntry entry = append ? getEntry(path) : null;
+		if ( entry != null && entry.getFileType() == FileType.FILE )
+		{
+			repo.open(entry.getObjectId(), Constants.OBJ_BLOB).copyTo(outputStream);
+		}
+		return outputStream;
+	}
+
+	/**
+	 * Create the directories of the loose objects before writing from several threads : JGit fails to insert a loose
+	 * object when another thread creates its directory at the same time.
+	 */
+	private synchronized void createFanOutDirectories(Repository repo)
+	{
+		if ( !fanOutCreated && repo instanceof FileRepository )
+		{
+			File objects = ((FileRepository) repo).getObjectsDirectory();
+			for (int i = 0; i < 256; i++)
+			{
+				new File(objects, String.format("%02x", i)).mkdir();
+			}
+			fanOutCreated = true;
+		}
+	}
+
+	/**
+	 * @return the group committer or null if group commit isn't enabled
+	 */
+	private synchronized GitGroupCommitter getGroupCommitter()
+	{
+		if ( groupCommitter == null )
+		{
+			GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+			long window = config.getGroupCommitWindow(getFileSystemOptions());
+			if ( window <= 0 )
+			{
+				return null;
+			}
+			groupCommitter = new GitGroupCommitter(this, window, config.getGroupCommitBatchSize(getFileSystemOptions()));
+		}
+		return groupCommitter;
+	}
+
+	/**
+	 * Open a transaction on the current head of the branch of this file system, not bound to any thread.
+	 * @throws FileSystemException if the reference of this file system isn't a branch
+	 */
+	GitTransaction openTransaction() throws IOException
+	{
+		String branch = getBranch();
+		if ( branch == null )
+		{
+			throw new FileSystemException("vfs.provider/write-read-only.error", getRootName());
+		}
+
+		Repository repo = getRepository();
+		createFanOutDirectories(repo);
+		ObjectId baseId = repo.resolve(branch);
+		RevCommit base = null;
+		if ( baseId != null )
+		{
+			RevWalk walk = new RevWalk(repo);
+			try
+			{
+				base = walk.parseCommit(baseId);
+			} finally
+			{
+				walk.release();
+			}
+		}
+		return new GitTransaction(this, repo, branch, base);
+	}
+
+	/**
+	 * @return the transaction of the current thread or null if there is none
+	 */
+	GitTransaction getTransaction()
+	{
+		return transactions.get();
+	}
+
+	void endTransaction(GitTransaction transaction)
+	{
+		if ( transactions.get() == transaction )
+		{
+			transactions.remove();
+		}
+	}
+
+	/**
+	 * Move this file system to a commit made on its branch and refresh the cached files of the changed paths and of
+	 * their folders. If the file system doesn't read the parent of the commit, because the branch moved before the
+	 * commit or because a later commit has already been seen, the file system is refreshed from its branch instead.
+	 * @param baseId the parent of the commit on the branch, null for the first commit of the branch
+	 * @param paths the changed paths relative to the repository root
+	 */
+	void committed(ObjectId commitId, ObjectId baseId, Collection<String> paths) throws IOException
+	{
+		boolean advanced = false;
+		RevWalk walk = new RevWalk(getRepository());
+		try
+		{
+			RevCommit newCommit = walk.parseCommit(commitId);
+			synchronized (this)
+			{
+				TreeSnapshot current = snapshot;
+				if ( current == null )
+				{
+					// not read yet, the first read sees the commit
+					return;
+				}
+				if ( Objects.equal(current.commit, baseId) )
+				{
+					snapshot = new TreeSnapshot(newCommit, newCommit.getTree());
+					advanced = true;
+				}
+			}
+		} finally
+		{
+			walk.release();
+		}
+		if ( !advanced )
+		{
+			// the files changed by the other commits are refreshed too
+			refreshTree();
+			return;
+		}
+
+		Set<FileName> names = new HashSet<FileName>();
+		for (String path : paths)
+		{
+			FileName name = getFileSystemManager().resolveName(getRootName(), UriParser.encode(path), NameScope.DESCENDENT);
+			while (names.add(name) && !name.equals(getRootName()))
+			{
+				name = name.getParent();
+			}
+		}
+		for (FileName name : names)
+		{
+			FileObject file = getFileFromCache(name);
+			if ( file != null )
+			{
+				file.refresh();
+			}
+		}
+	}
+
+	@Override
+	public void addListener(FileObject file, FileListener listener)
+	{
+		super.addListener(file, listener);
+		listenedNames.add(file.getName());
+	}
+
+	@Override
+	public void removeListener(FileObject file, FileListener listener)
+	{
+		super.removeListener(file, listener);
+		listenedNames.remove(file.getName());
+	}
+
+	/**
+	 * Move this file system to the current commit of its reference if the reference moved. The cached files whose path
+	 * changed, and their folders, are refreshed and an event is fired for each file created, deleted or changed that is
+	 * cached or listened to ; the other files stay attached and no file is created for the others. A folder created or
+	 * deleted as a whole is a single change, the diff doesn't enter it. Only the switch to the new snapshot holds the
+	 * file system lock : the diff, the refresh of the files and the events run outside of it, one refresh at a time.
+	 * @return true if the tree of the file system changed
+	 */
+	public boolean refreshTree() throws IOException
+	{
+		synchronized (refreshLock)
+		{
+			return doRefreshTree();
+		}
+	}
+
+	private boolean doRefreshTree() throws IOException
+	{
+		TreeSnapshot oldSnapshot;
+		TreeSnapshot newSnapshot;
+		boolean switched = false;
+		do
+		{
+			oldSnapshot = snapshot;
+			if ( oldSnapshot == null )
+			{
+				// not read yet
+				return false;
+			}
+			newSnapshot = buildSnapshot();
+			if ( Objects.equal(newSnapshot.tree, oldSnapshot.tree) && Objects.equal(newSnapshot.commit, oldSnapshot.commit) )
+			{
+				return false;
+			}
+			synchronized (this)
+			{
+				// a commit seen while the reference was read isn't replaced by an older one
+				if ( snapshot == oldSnapshot )
+				{
+					snapshot = newSnapshot;
+					switched = true;
+				}
+			}
+		} while (!switched);
+		if ( Objects.equal(newSnapshot.tree, oldSnapshot.tree) )
+		{
+			// a commit without change, the last modified times move to it
+			return false;
+		}
+		RevTree oldTree = oldSnapshot.tree;
+		RevTree newTree = newSnapshot.tree;
+
+		List<FileObject> created = new ArrayList<FileObject>();
+		List<FileObject> deleted = new ArrayList<FileObject>();
+		List<FileObject> changed = new ArrayList<FileObject>();
+		Set<FileName> folders = new HashSet<FileName>();
+		folders.add(getRootName());
+
+		metrics.treeWalked();
+		TreeWalk treeWalk = new TreeWalk(getRepository());
+		try
+		{
+			treeWalk.addTree(newTreeIterator(treeWalk.getObjectReader(), oldTree));
+			treeWalk.addTree(newTreeIterator(treeWalk.getObjectReader(), newTree));
+			treeWalk.setRecursive(false);
+			// identical subtrees are skipped
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			while (treeWalk.next())
+			{
+				boolean oldFolder = FileMode.TREE.equals(treeWalk.getRawMode(0));
+				boolean newFolder = FileMode.TREE.equals(treeWalk.getRawMode(1));
+				FileName name = getFileSystemManager().resolveName(getRootName(), UriParser.encode(treeWalk.getPathString()), NameScope.DESCENDENT);
+				if ( oldFolder && newFolder )
+				{
+					folders.add(name);
+				} else
+				{
+					folders.add(name.getParent());
+					FileObject file = getFileFromCache(name);
+					if ( file == null && listenedNames.contains(name) )
+					{
+						file = resolveFile(name);
+					}
+					// a file neither read nor listened to has nothing to refresh
+					if ( file != null )
+					{
+						if ( treeWalk.getRawMode(0) == 0 )
+						{
+							created.add(file);
+						} else if ( treeWalk.getRawMode(1) == 0 )
+						{
+							deleted.add(file);
+						} else
+						{
+							changed.add(file);
+						}
+					}
+				}
+				if ( oldFolder && newFolder )
+				{
+					treeWalk.enterSubtree();
+				}
+			}
+		} finally
+		{
+			treeWalk.release();
+		}
+
+		for (FileName folder : folders)
+		{
+			FileObject file = getFileFromCache(folder);
+			if ( file != null )
+			{
+				file.refresh();
+			}
+		}
+		for (FileObject file : Iterables.concat(created, deleted, changed))
+		{
+			file.refresh();
+		}
+		for (FileObject file : created)
+		{
+			fireFileCreated(file);
+		}
+		for (FileObject file : deleted)
+		{
+			fireFileDeleted(file);
+		}
+		for (FileObject file : changed)
+		{
+			fireFileChanged(file);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the full name of the branch read by this file system or null if its reference isn't a branch or if it
+	 *         reads the branch at a date
+	 */
+	String getBranch() throws IOException
+	{
+		if ( GitFileSystemConfigBuilder.getInstance().getCommitDate(getFileSystemOptions()) != null )
+		{
+			return null;
+		}
+		String strReference = GitFileSystemConfigBuilder.getInstance().getReference(getFileSystemOptions());
+		Ref ref = getRepository().getRef(StringUtils.isBlank(strReference) ? Constants.HEAD : strReference);
+		if ( ref == null )
+		{
+			return null;
+		}
+		String name = ref.getLeaf().getName();
+		return name.startsWith(Constants.R_HEADS) ? name : null;
+	}
+
+	private TreeSnapshot buildSnapshot() throws IOException
+	{
+		Repository repo = getRepository();
 
 		String strReference = GitFileSystemConfigBuilder.getInstance().getReference(getFileSystemOptions());
 		if ( StringUtils.isBlank(strReference) )
@@ -73,15 +1598,51 @@ public class GitFileSystem extends AbstractFileSystem implements FileSystem
 
 		ObjectId objectId = repo.resolve(strReference);
 		RevWalk walk = new RevWalk(repo);
-		RevCommit revCommit = walk.parseCommit(objectId);
-		return revCommit.getTree();
+		try
+		{
+			if ( objectId == null && strReference.startsWith(Constants.R_HEADS) )
+			{
+				// a branch without commit yet
+				return new TreeSnapshot(null, null);
+			}
+			RevCommit commit = walk.parseCommit(objectId);
 
+			Date commitDate = GitFileSystemConfigBuilder.getInstance().getCommitDate(getFileSystemOptions());
+			if ( commitDate != null )
+			{
+				ObjectId datedId = getRepositoryCaches().getCommitTimeIndex(commit).find(commitDate.getTime());
+				if ( datedId == null )
+				{
+					// the reference had no commit yet at this date
+					return new TreeSnapshot(null, null);
+				}
+				commit = walk.parseCommit(datedId);
+			}
+			return new TreeSnapshot(commit, commit.getTree());
+		} finally
+		{
+			walk.release();
+		}
 	}
 
-	private Repository buildRepository(FileName name) throws IOException
+	/**
+	 * The tree read by the file system and its commit, replaced as a whole when the reference moves. The index of the
+	 * tree is built once, by the first lookup.
+	 */
+	private static final class TreeSnapshot
 	{
-		File gitDir = new File(name.getPathDecoded());
-		Repository build = new RepositoryBuilder().setWorkTree(gitDir).findGitDir().readEnvironment().build();
-		return new RepositoryBuilder().setWorkTree(build.getDirectory().getParentFile()).findGitDir().readEnvironment().build();
+		// null for a branch without commit yet
+		private final RevCommit commit;
+		// null for an empty tree, which may not be stored in the repository
+		private final RevTree tree;
+		private volatile boolean indexed;
+		// null if the tree is too large to be indexed or if the tree listings are cached
+		private GitTreeIndex index;
+
+		TreeSnapshot(RevCommit commit, RevTree tree)
+		{
+			this.commit = commit;
+			this.tree = tree;
+		}
 	}
 }
@@ -6,6 +6,7 @@ import java.util.Date;
 import org.apache.commons.vfs2.FileSystem;
 import org.apache.commons.vfs2.FileSystemConfigBuilder;
 import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 
 public class GitFileSystemConfigBuilder extends FileSystemConfigBuilder
 {
@@ -16,6 +17,52 @@ public class GitFileSystemConfigBuilder extends FileSystemConfigBuilder
 	private static final String TREE_DIR = GitFileSystemConfigBuilder.class.getName() + ".TREE_DIR";
 	private static final String COMMIT_DATE = GitFileSystemConfigBuilder.class.getName() + ".COMMIT_DATE";
 	private static final String REF = GitFileSystemConfigBuilder.class.getName() + ".REF";
+	private static final String TREE_INDEX_MAX_ENTRIES = GitFileSystemConfigBuilder.class.getName() + ".TREE_INDEX_MAX_ENTRIES";
+	private static final String BLOB_SIZE_CACHE_SIZE = GitFileSystemConfigBuilder.class.getName() + ".BLOB_SIZE_CACHE_SIZE";
+	private static final String PREFETCH_CONTENT_SIZES = GitFileSystemConfigBuilder.class.getName() + ".PREFETCH_CONTENT_SIZES";
+	private static final String RANDOM_ACCESS_BUFFER_THRESHOLD = GitFileSystemConfigBuilder.class.getName() + ".RANDOM_ACCESS_BUFFER_THRESHOLD";
+	private static final String RANDOM_ACCESS_DIRECT_BUFFER = GitFileSystemConfigBuilder.class.getName() + ".RANDOM_ACCESS_DIRECT_BUFFER";
+	private static final String RANDOM_ACCESS_STRATEGY = GitFileSystemConfigBuilder.class.getName() + ".RANDOM_ACCESS_STRATEGY";
+	private static final String INFLATE_CHECKPOINT_SPAN = GitFileSystemConfigBuilder.class.getName() + ".INFLATE_CHECKPOINT_SPAN";
+	private static final String PERSIST_INFLATE_CHECKPOINTS = GitFileSystemConfigBuilder.class.getName() + ".PERSIST_INFLATE_CHECKPOINTS";
+	private static final String PACKED_GIT_WINDOW_SIZE = GitFileSystemConfigBuilder.class.getName() + ".PACKED_GIT_WINDOW_SIZE";
+	private static final String PACKED_GIT_LIMIT = GitFileSystemConfigBuilder.class.getName() + ".PACKED_GIT_LIMIT";
+	private static final String PACKED_GIT_MMAP = GitFileSystemConfigBuilder.class.getName() + ".PACKED_GIT_MMAP";
+	private static final String PACKED_GIT_OPEN_FILES = GitFileSystemConfigBuilder.class.getName() + ".PACKED_GIT_OPEN_FILES";
+	private static final String DELTA_BASE_CACHE_LIMIT = GitFileSystemConfigBuilder.class.getName() + ".DELTA_BASE_CACHE_LIMIT";
+	private static final String STREAM_FILE_THRESHOLD = GitFileSystemConfigBuilder.class.getName() + ".STREAM_FILE_THRESHOLD";
+	private static final String WRITE_MODE = GitFileSystemConfigBuilder.class.getName() + ".WRITE_MODE";
+	private static final String GROUP_COMMIT_WINDOW = GitFileSystemConfigBuilder.class.getName() + ".GROUP_COMMIT_WINDOW";
+	private static final String GROUP_COMMIT_BATCH_SIZE = GitFileSystemConfigBuilder.class.getName() + ".GROUP_COMMIT_BATCH_SIZE";
+	private static final String REFRESH_INTERVAL = GitFileSystemConfigBuilder.class.getName() + ".REFRESH_INTERVAL";
+	private static final String BLOB_CACHE_SIZE = GitFileSystemConfigBuilder.class.getName() + ".BLOB_CACHE_SIZE";
+	private static final String BLOB_CACHE_MAX_BLOB_SIZE = GitFileSystemConfigBuilder.class.getName() + ".BLOB_CACHE_MAX_BLOB_SIZE";
+	private static final String BLOB_CACHE_OFF_HEAP = GitFileSystemConfigBuilder.class.getName() + ".BLOB_CACHE_OFF_HEAP";
+	private static final String TREE_LISTING_CACHE_MAX_ENTRIES = GitFileSystemConfigBuilder.class.getName() + ".TREE_LISTING_CACHE_MAX_ENTRIES";
+	private static final String TREE_LISTING_CACHE_MAX_BYTES = GitFileSystemConfigBuilder.class.getName() + ".TREE_LISTING_CACHE_MAX_BYTES";
+	private static final String TRAVERSAL_PARALLELISM = GitFileSystemConfigBuilder.class.getName() + ".TRAVERSAL_PARALLELISM";
+	private static final String METRICS_ENABLED = GitFileSystemConfigBuilder.class.getName() + ".METRICS_ENABLED";
+	private static final String[] WINDOW_CACHE_PARAMS = { PACKED_GIT_WINDOW_SIZE, PACKED_GIT_LIMIT, PACKED_GIT_MMAP, PACKED_GIT_OPEN_FILES, DELTA_BASE_CACHE_LIMIT, STREAM_FILE_THRESHOLD };
+
+	private static final int DEFAULT_TREE_INDEX_MAX_ENTRIES = 500000;
+	private static final int DEFAULT_BLOB_SIZE_CACHE_SIZE = 100000;
+	private static final long DEFAULT_RANDOM_ACCESS_BUFFER_THRESHOLD = 1024 * 1024;
+	private static final int DEFAULT_INFLATE_CHECKPOINT_SPAN = 1024 * 1024;
+	private static final int DEFAULT_GROUP_COMMIT_BATCH_SIZE = 1000;
+	private static final int DEFAULT_BLOB_CACHE_MAX_BLOB_SIZE = 64 * 1024;
+
+	// the defaults of JGit
+	private static final int DEFAULT_PACKED_GIT_WINDOW_SIZE = 8 * 1024;
+	private static final long DEFAULT_PACKED_GIT_LIMIT = 10 * 1024 * 1024;
+	private static final int DEFAULT_PACKED_GIT_OPEN_FILES = 128;
+	private static final int DEFAULT_DELTA_BASE_CACHE_LIMIT = 10 * 1024 * 1024;
+	private static final int DEFAULT_STREAM_FILE_THRESHOLD = 50 * 1024 * 1024;
+
+	private static final int LARGE_REPOSITORY_PACKED_GIT_WINDOW_SIZE = 64 * 1024;
+	private static final long LARGE_REPOSITORY_PACKED_GIT_LIMIT = 256 * 1024 * 1024;
+	private static final int LARGE_REPOSITORY_PACKED_GIT_OPEN_FILES = 512;
+	private static final int LARGE_REPOSITORY_DELTA_BASE_CACHE_LIMIT = 64 * 1024 * 1024;
+	private static final int LARGE_REPOSITORY_STREAM_FILE_THRESHOLD = 64 * 1024 * 1024;
 
 	private GitFileSystemConfigBuilder()
 	{
@@ -58,6 +105,11 @@ public class GitFileSystemConfigBuilder extends FileSystemConfigBuilder
 		return (Date) getParam(opts, COMMIT_DATE);
 	}
 
+	/**
+	 * Read the reference as it was at a date : the file system reads the newest commit of the first-parent history of
+	 * the reference made at or before the date, or an empty tree if there was none yet. Such a file system is read
+	 * only. The commits of a reference are indexed by time once and shared by all its file systems.
+	 */
 	public void setCommitDate(FileSystemOptions opts, Date commitDate)
 	{
 		setParam(opts, COMMIT_DATE, commitDate);
@@ -101,4 +153,412 @@ public class GitFileSystemConfigBuilder extends FileSystemConfigBuilder
 		setParam(opts, REF, revstr);
 	}
 
+	public int getTreeIndexMaxEntries(FileSystemOptions opts)
+	{
+		return getInteger(opts, TREE_INDEX_MAX_ENTRIES, DEFAULT_TREE_INDEX_MAX_ENTRIES);
+	}
+
+	/**
+	 * Bound the memory used by the path index of the tree. Trees holding more paths aren't indexed and each lookup
+	 * walks the tree from its root. Use 0 to disable the index.
+	 * @param maxEntries the maximum number of paths to index, {@value #DEFAULT_TREE_INDEX_MAX_ENTRIES} by default
+	 */
+	public void setTreeIndexMaxEntries(FileSystemOptions opts, int maxEntries)
+	{
+		setParam(opts, TREE_INDEX_MAX_ENTRIES, maxEntries);
+	}
+
+	public int getBlobSizeCacheSize(FileSystemOptions opts)
+	{
+		return getInteger(opts, BLOB_SIZE_CACHE_SIZE, DEFAULT_BLOB_SIZE_CACHE_SIZE);
+	}
+
+	/**
+	 * @param cacheSize the maximum number of blob sizes remembered, {@value #DEFAULT_BLOB_SIZE_CACHE_SIZE} by default
+	 */
+	public void setBlobSizeCacheSize(FileSystemOptions opts, int cacheSize)
+	{
+		setParam(opts, BLOB_SIZE_CACHE_SIZE, cacheSize);
+	}
+
+	public boolean isPrefetchContentSizes(FileSystemOptions opts)
+	{
+		return getBoolean(opts, PREFETCH_CONTENT_SIZES, false);
+	}
+
+	/**
+	 * Lookup the sizes of all the files of a folder in one batch when the folder is listed.
+	 */
+	public void setPrefetchContentSizes(FileSystemOptions opts, boolean prefetch)
+	{
+		setParam(opts, PREFETCH_CONTENT_SIZES, prefetch);
+	}
+
+	public long getRandomAccessBufferThreshold(FileSystemOptions opts)
+	{
+		return getLong(opts, RANDOM_ACCESS_BUFFER_THRESHOLD, DEFAULT_RANDOM_ACCESS_BUFFER_THRESHOLD);
+	}
+
+	/**
+	 * Blobs up to this size are loaded in memory for a read only random access, larger ones are served according to
+	 * the random access strategy. It is also the size of the largest file read by
+	 * {@link GitFileSystem#readFiles(java.util.Collection)}.
+	 * @param threshold a size in bytes, {@value #DEFAULT_RANDOM_ACCESS_BUFFER_THRESHOLD} by default
+	 */
+	public void setRandomAccessBufferThreshold(FileSystemOptions opts, long threshold)
+	{
+		setParam(opts, RANDOM_ACCESS_BUFFER_THRESHOLD, threshold);
+	}
+
+	public boolean isRandomAccessDirectBuffer(FileSystemOptions opts)
+	{
+		return getBoolean(opts, RANDOM_ACCESS_DIRECT_BUFFER, false);
+	}
+
+	/**
+	 * Load the blobs below the random access buffer threshold in direct (off-heap) buffers instead of heap arrays.
+	 */
+	public void setRandomAccessDirectBuffer(FileSystemOptions opts, boolean direct)
+	{
+		setParam(opts, RANDOM_ACCESS_DIRECT_BUFFER, direct);
+	}
+
+	public GitRandomAccessStrategy getRandomAccessStrategy(FileSystemOptions opts)
+	{
+		GitRandomAccessStrategy strategy = (GitRandomAccessStrategy) getParam(opts, RANDOM_ACCESS_STRATEGY);
+		return strategy == null ? GitRandomAccessStrategy.STREAM : strategy;
+	}
+
+	/**
+	 * Choose how blobs larger than the random access buffer threshold are served, {@link GitRandomAccessStrategy#STREAM}
+	 * by default. A random access requesting write always works on a temporary copy.
+	 */
+	public void setRandomAccessStrategy(FileSystemOptions opts, GitRandomAccessStrategy strategy)
+	{
+		setParam(opts, RANDOM_ACCESS_STRATEGY, strategy);
+	}
+
+	public int getInflateCheckpointSpan(FileSystemOptions opts)
+	{
+		return getInteger(opts, INFLATE_CHECKPOINT_SPAN, DEFAULT_INFLATE_CHECKPOINT_SPAN);
+	}
+
+	/**
+	 * Set the distance between two checkpoints of the {@link GitRandomAccessStrategy#INFLATE_CHECKPOINTS} strategy : a
+	 * seek inflates at most this number of bytes, each checkpoint keeps a 32 KiB window (deflated) in memory.
+	 * @param span a number of inflated bytes, {@value #DEFAULT_INFLATE_CHECKPOINT_SPAN} by default
+	 */
+	public void setInflateCheckpointSpan(FileSystemOptions opts, int span)
+	{
+		setParam(opts, INFLATE_CHECKPOINT_SPAN, span);
+	}
+
+	public boolean isPersistInflateCheckpoints(FileSystemOptions opts)
+	{
+		return getBoolean(opts, PERSIST_INFLATE_CHECKPOINTS, false);
+	}
+
+	/**
+	 * Store the checkpoints of the {@link GitRandomAccessStrategy#INFLATE_CHECKPOINTS} strategy in the
+	 * <code>vfs-git/checkpoints</code> directory of the git directory so they are built only once per blob.
+	 */
+	public void setPersistInflateCheckpoints(FileSystemOptions opts, boolean persist)
+	{
+		setParam(opts, PERSIST_INFLATE_CHECKPOINTS, persist);
+	}
+
+	public int getPackedGitWindowSize(FileSystemOptions opts)
+	{
+		return getInteger(opts, PACKED_GIT_WINDOW_SIZE, DEFAULT_PACKED_GIT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Set the size of the windows read from the pack files and kept in the pack cache.
+	 * @param windowSize a power of 2 in bytes, {@value #DEFAULT_PACKED_GIT_WINDOW_SIZE} by default
+	 */
+	public void setPackedGitWindowSize(FileSystemOptions opts, int windowSize)
+	{
+		setParam(opts, PACKED_GIT_WINDOW_SIZE, windowSize);
+	}
+
+	public long getPackedGitLimit(FileSystemOptions opts)
+	{
+		return getLong(opts, PACKED_GIT_LIMIT, DEFAULT_PACKED_GIT_LIMIT);
+	}
+
+	/**
+	 * @param limit the maximum number of bytes of the pack cache, {@value #DEFAULT_PACKED_GIT_LIMIT} by default
+	 */
+	public void setPackedGitLimit(FileSystemOptions opts, long limit)
+	{
+		setParam(opts, PACKED_GIT_LIMIT, limit);
+	}
+
+	public boolean isPackedGitMMAP(FileSystemOptions opts)
+	{
+		return getBoolean(opts, PACKED_GIT_MMAP, false);
+	}
+
+	/**
+	 * Memory map the windows of the pack files instead of reading them in heap arrays.
+	 */
+	public void setPackedGitMMAP(FileSystemOptions opts, boolean mmap)
+	{
+		setParam(opts, PACKED_GIT_MMAP, mmap);
+	}
+
+	public int getPackedGitOpenFiles(FileSystemOptions opts)
+	{
+		return getInteger(opts, PACKED_GIT_OPEN_FILES, DEFAULT_PACKED_GIT_OPEN_FILES);
+	}
+
+	/**
+	 * @param openFiles the maximum number of pack files kept open, {@value #DEFAULT_PACKED_GIT_OPEN_FILES} by default
+	 */
+	public void setPackedGitOpenFiles(FileSystemOptions opts, int openFiles)
+	{
+		setParam(opts, PACKED_GIT_OPEN_FILES, openFiles);
+	}
+
+	public int getDeltaBaseCacheLimit(FileSystemOptions opts)
+	{
+		return getInteger(opts, DELTA_BASE_CACHE_LIMIT, DEFAULT_DELTA_BASE_CACHE_LIMIT);
+	}
+
+	/**
+	 * Set the memory used to keep the inflated bases of deltas, so that objects deltified against the same base don't
+	 * inflate it again.
+	 * @param limit a number of bytes, {@value #DEFAULT_DELTA_BASE_CACHE_LIMIT} by default
+	 */
+	public void setDeltaBaseCacheLimit(FileSystemOptions opts, int limit)
+	{
+		setParam(opts, DELTA_BASE_CACHE_LIMIT, limit);
+	}
+
+	public int getStreamFileThreshold(FileSystemOptions opts)
+	{
+		return getInteger(opts, STREAM_FILE_THRESHOLD, DEFAULT_STREAM_FILE_THRESHOLD);
+	}
+
+	/**
+	 * Objects larger than this size are streamed instead of being loaded in memory.
+	 * @param threshold a size in bytes, {@value #DEFAULT_STREAM_FILE_THRESHOLD} by default
+	 */
+	public void setStreamFileThreshold(FileSystemOptions opts, int threshold)
+	{
+		setParam(opts, STREAM_FILE_THRESHOLD, threshold);
+	}
+
+	/**
+	 * Tune the object database caches for repositories with large packs and deep delta chains :
+	 * <ul>
+	 * <li>{@value #LARGE_REPOSITORY_PACKED_GIT_WINDOW_SIZE} bytes pack windows,</li>
+	 * <li>a {@value #LARGE_REPOSITORY_PACKED_GIT_LIMIT} bytes pack cache,</li>
+	 * <li>{@value #LARGE_REPOSITORY_PACKED_GIT_OPEN_FILES} open pack files,</li>
+	 * <li>a {@value #LARGE_REPOSITORY_DELTA_BASE_CACHE_LIMIT} bytes delta base cache,</li>
+	 * <li>objects up to {@value #LARGE_REPOSITORY_STREAM_FILE_THRESHOLD} bytes loaded in memory.</li>
+	 * </ul>
+	 * The heap must be large enough for both caches. Each value can still be overridden by its own setter.
+	 * <p>
+	 * The pack cache is shared by the whole JVM : the settings of the first file system opened with pack cache settings
+	 * apply, the different settings of the next file systems are ignored with a warning.
+	 */
+	public void setLargeRepositoryPreset(FileSystemOptions opts)
+	{
+		setPackedGitWindowSize(opts, LARGE_REPOSITORY_PACKED_GIT_WINDOW_SIZE);
+		setPackedGitLimit(opts, LARGE_REPOSITORY_PACKED_GIT_LIMIT);
+		setPackedGitOpenFiles(opts, LARGE_REPOSITORY_PACKED_GIT_OPEN_FILES);
+		setDeltaBaseCacheLimit(opts, LARGE_REPOSITORY_DELTA_BASE_CACHE_LIMIT);
+		setStreamFileThreshold(opts, LARGE_REPOSITORY_STREAM_FILE_THRESHOLD);
+	}
+
+	/**
+	 * @return the write mode or null to choose it from the repository
+	 */
+	public GitWriteMode getWriteMode(FileSystemOptions opts)
+	{
+		return (GitWriteMode) getParam(opts, WRITE_MODE);
+	}
+
+	/**
+	 * Choose how the files written outside of a transaction are committed. By default, bare repositories are written
+	 * through the {@link GitWriteMode#OBJECT_DATABASE} and the others through the {@link GitWriteMode#WORK_TREE}.
+	 */
+	public void setWriteMode(FileSystemOptions opts, GitWriteMode writeMode)
+	{
+		setParam(opts, WRITE_MODE, writeMode);
+	}
+
+	public long getGroupCommitWindow(FileSystemOptions opts)
+	{
+		return getLong(opts, GROUP_COMMIT_WINDOW, 0L);
+	}
+
+	/**
+	 * Record the changes made outside of a transaction by concurrent threads in shared commits when writing to the
+	 * {@link GitWriteMode#OBJECT_DATABASE} : the changes queued during the window, or until the batch is full, are
+	 * committed together and each writer returns once its change is committed.
+	 * @param window a delay in milliseconds, 0 by default to commit each change on its own
+	 */
+	public void setGroupCommitWindow(FileSystemOptions opts, long window)
+	{
+		setParam(opts, GROUP_COMMIT_WINDOW, window);
+	}
+
+	public int getGroupCommitBatchSize(FileSystemOptions opts)
+	{
+		return getInteger(opts, GROUP_COMMIT_BATCH_SIZE, DEFAULT_GROUP_COMMIT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param batchSize the maximum number of changes of a group commit, {@value #DEFAULT_GROUP_COMMIT_BATCH_SIZE} by
+	 *            default
+	 */
+	public void setGroupCommitBatchSize(FileSystemOptions opts, int batchSize)
+	{
+		setParam(opts, GROUP_COMMIT_BATCH_SIZE, batchSize);
+	}
+
+	public long getRefreshInterval(FileSystemOptions opts)
+	{
+		return getLong(opts, REFRESH_INTERVAL, 0L);
+	}
+
+	/**
+	 * Poll the reference of the file system : when it moved, the file system reads the new tree, refreshes the files
+	 * whose path changed and fires their events. Without polling, the file system reads the tree of the reference as
+	 * it was when first read until {@link GitFileSystem#refreshTree()} is called.
+	 * @param interval a delay in milliseconds, 0 by default to disable polling
+	 */
+	public void setRefreshInterval(FileSystemOptions opts, long interval)
+	{
+		setParam(opts, REFRESH_INTERVAL, interval);
+	}
+
+	public long getBlobCacheSize(FileSystemOptions opts)
+	{
+		return getLong(opts, BLOB_CACHE_SIZE, 0L);
+	}
+
+	/**
+	 * Cache the inflated content of the small blobs, shared by all the file systems of the repository whatever their
+	 * reference. The settings of the first file system reading a blob with the cache enabled are used.
+	 * @param size the maximum total size in bytes of the cached blobs, 0 by default to disable the cache
+	 */
+	public void setBlobCacheSize(FileSystemOptions opts, long size)
+	{
+		setParam(opts, BLOB_CACHE_SIZE, size);
+	}
+
+	public int getBlobCacheMaxBlobSize(FileSystemOptions opts)
+	{
+		return getInteger(opts, BLOB_CACHE_MAX_BLOB_SIZE, DEFAULT_BLOB_CACHE_MAX_BLOB_SIZE);
+	}
+
+	/**
+	 * @param size the size in bytes of the largest blob to cache, {@value #DEFAULT_BLOB_CACHE_MAX_BLOB_SIZE} by default
+	 */
+	public void setBlobCacheMaxBlobSize(FileSystemOptions opts, int size)
+	{
+		setParam(opts, BLOB_CACHE_MAX_BLOB_SIZE, size);
+	}
+
+	public boolean isBlobCacheOffHeap(FileSystemOptions opts)
+	{
+		return getBoolean(opts, BLOB_CACHE_OFF_HEAP, false);
+	}
+
+	/**
+	 * Keep the cached blobs in direct (off-heap) buffers instead of heap arrays.
+	 */
+	public void setBlobCacheOffHeap(FileSystemOptions opts, boolean offHeap)
+	{
+		setParam(opts, BLOB_CACHE_OFF_HEAP, offHeap);
+	}
+
+	public long getTreeListingCacheMaxEntries(FileSystemOptions opts)
+	{
+		return getLong(opts, TREE_LISTING_CACHE_MAX_ENTRIES, 0L);
+	}
+
+	/**
+	 * Cache the parsed listings of the trees by tree id, shared by all the file systems of the repository whatever
+	 * their reference : a file system opened at another reference reuses the listings of its unchanged folders. The
+	 * file system looks up its paths in the cached listings instead of building its own tree index. The settings of the
+	 * first file system reading a tree with the cache enabled are used.
+	 * @param maxEntries the maximum total number of entries of the cached listings, 0 by default to disable the cache
+	 */
+	public void setTreeListingCacheMaxEntries(FileSystemOptions opts, long maxEntries)
+	{
+		setParam(opts, TREE_LISTING_CACHE_MAX_ENTRIES, maxEntries);
+	}
+
+	public long getTreeListingCacheMaxBytes(FileSystemOptions opts)
+	{
+		return getLong(opts, TREE_LISTING_CACHE_MAX_BYTES, 0L);
+	}
+
+	/**
+	 * Bound the tree listing cache by memory instead of number of entries, see
+	 * {@link #setTreeListingCacheMaxEntries(FileSystemOptions, long)}.
+	 * @param maxBytes the approximate maximum size in bytes of the cached listings, 0 by default to disable the cache
+	 */
+	public void setTreeListingCacheMaxBytes(FileSystemOptions opts, long maxBytes)
+	{
+		setParam(opts, TREE_LISTING_CACHE_MAX_BYTES, maxBytes);
+	}
+
+	public int getTraversalParallelism(FileSystemOptions opts)
+	{
+		return getInteger(opts, TRAVERSAL_PARALLELISM, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism the number of threads of {@link GitFileSystem#traverse(String, GitFileVisitor, boolean)}, the
+	 *            number of processors by default
+	 */
+	public void setTraversalParallelism(FileSystemOptions opts, int parallelism)
+	{
+		setParam(opts, TRAVERSAL_PARALLELISM, parallelism);
+	}
+
+	public boolean isMetricsEnabled(FileSystemOptions opts)
+	{
+		return getBoolean(opts, METRICS_ENABLED, false);
+	}
+
+	/**
+	 * Count the tree walks, blob reads and commits of the file system and register them as a {@link GitMetricsMXBean},
+	 * see {@link GitFileSystem#getMetrics()}. Disabled by default.
+	 */
+	public void setMetricsEnabled(FileSystemOptions opts, boolean enabled)
+	{
+		setParam(opts, METRICS_ENABLED, enabled);
+	}
+
+	/**
+	 * @return the pack cache settings or null if none of them is set
+	 */
+	WindowCacheConfig getWindowCacheConfig(FileSystemOptions opts)
+	{
+		boolean configured = false;
+		for (String param : WINDOW_CACHE_PARAMS)
+		{
+			configured |= hasParam(opts, param);
+		}
+		if ( !configured )
+		{
+			return null;
+		}
+
+		WindowCacheConfig config = new WindowCacheConfig();
+		config.setPackedGitWindowSize(getPackedGitWindowSize(opts));
+		config.setPackedGitLimit(getPackedGitLimit(opts));
+		config.setPackedGitMMAP(isPackedGitMMAP(opts));
+		config.setPackedGitOpenFiles(getPackedGitOpenFiles(opts));
+		config.setDeltaBaseCacheLimit(getDeltaBaseCacheLimit(opts));
+		config.setStreamFileThreshold(getStreamFileThreshold(opts));
+		return config;
+	}
+
 }
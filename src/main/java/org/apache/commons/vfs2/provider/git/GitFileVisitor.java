@@ -0,0 +1,16 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+
+/**
+ * Receives the files of a {@link GitFileSystem#traverse(String, GitFileVisitor, boolean) traversal}.
+ */
+public interface GitFileVisitor
+{
+
+	/**
+	 * Called for each file and folder under the traversed folder. Unless the traversal is ordered, this method is
+	 * called from several threads at the same time.
+	 */
+	void visit(GitFile file) throws IOException;
+}
@@ -0,0 +1,244 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Records the changes of concurrent threads in shared commits of the branch of a file system.
+ * <p>
+ * A change is queued and the first one starts a committer thread, which waits for the window to elapse or for the
+ * batch to be full, stages the batch in a single transaction and moves the branch with a compare and swap. When
+ * somebody else moved the branch meanwhile, the batch is staged again on top of the new head. The thread stops once
+ * the queue is empty. Each change completes with the id of the commit which recorded it, or with the error which
+ * prevented its commit.
+ */
+final class GitGroupCommitter implements Runnable
+{
+
+	// the number of times a change is staged again when the branch moved before its commit
+	static final int MAX_ATTEMPTS = 10;
+
+	private final GitFileSystem fileSystem;
+	private final long window;
+	private final int batchSize;
+
+	private final LinkedList<PendingChange> pending = new LinkedList<PendingChange>();
+	private Thread thread;
+	private boolean closed;
+
+	GitGroupCommitter(GitFileSystem fileSystem, long window, int batchSize)
+	{
+		this.fileSystem = fileSystem;
+		this.window = window;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Queue a change for the next commit.
+	 * @return the id of the commit which recorded the change, once committed
+	 */
+	synchronized ListenableFuture<ObjectId> submit(GitChange change)
+	{
+		if ( closed )
+		{
+			throw new IllegalStateException("The group committer is closed");
+		}
+
+		PendingChange pendingChange = new PendingChange(change);
+		pending.add(pendingChange);
+		if ( thread == null )
+		{
+			thread = new Thread(this, "vfs-git group commit " + fileSystem.getRootName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+		notifyAll();
+		return pendingChange.result;
+	}
+
+	/**
+	 * Queue a change for the next commit and wait until it is committed.
+	 * @return the id of the commit which recorded the change
+	 */
+	ObjectId commit(GitChange change) throws IOException
+	{
+		ListenableFuture<ObjectId> result = submit(change);
+		try
+		{
+			return result.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the commit of the change");
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+			{
+				throw (IOException) cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Commit the queued changes without waiting for the window and refuse the new ones.
+	 */
+	void close() throws InterruptedIOException
+	{
+		Thread running;
+		synchronized (this)
+		{
+			closed = true;
+			notifyAll();
+			running = thread;
+		}
+		if ( running != null )
+		{
+			try
+			{
+				running.join();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the last group commit");
+			}
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		List<PendingChange> batch;
+		while ((batch = nextBatch()) != null)
+		{
+			commit(batch);
+		}
+	}
+
+	/**
+	 * @return the changes queued until the window elapsed or the batch is full, null to stop the thread
+	 */
+	private synchronized List<PendingChange> nextBatch()
+	{
+		if ( pending.isEmpty() )
+		{
+			thread = null;
+			return null;
+		}
+
+		long deadline = System.currentTimeMillis() + window;
+		long remaining = window;
+		while (!closed && pending.size() < batchSize && remaining > 0)
+		{
+			try
+			{
+				wait(remaining);
+			} catch (InterruptedException e)
+			{
+				break;
+			}
+			remaining = deadline - System.currentTimeMillis();
+		}
+
+		List<PendingChange> batch = new ArrayList<PendingChange>();
+		while (!pending.isEmpty() && batch.size() < batchSize)
+		{
+			batch.add(pending.removeFirst());
+		}
+		return batch;
+	}
+
+	private void commit(List<PendingChange> batch)
+	{
+		try
+		{
+			for (int attempt = 1;; attempt++)
+			{
+				GitTransaction transaction = fileSystem.openTransaction();
+				try
+				{
+					List<PendingChange> staged = new ArrayList<PendingChange>();
+					for (PendingChange pendingChange : batch)
+					{
+						if ( pendingChange.result.isDone() )
+						{
+							// failed in a previous attempt
+							continue;
+						}
+						try
+						{
+							pendingChange.change.apply(transaction);
+							staged.add(pendingChange);
+						} catch (IOException e)
+						{
+							pendingChange.result.setException(e);
+						}
+					}
+
+					ObjectId commitId = transaction.commit(getMessage(staged));
+					for (PendingChange pendingChange : staged)
+					{
+						pendingChange.result.set(commitId);
+					}
+					return;
+				} catch (GitBranchMovedException e)
+				{
+					if ( attempt == MAX_ATTEMPTS )
+					{
+						throw e;
+					}
+				} finally
+				{
+					transaction.close();
+				}
+			}
+		} catch (Throwable e)
+		{
+			// the changes not committed yet
+			for (PendingChange pendingChange : batch)
+			{
+				pendingChange.result.setException(e);
+			}
+		}
+	}
+
+	private static String getMessage(List<PendingChange> batch)
+	{
+		if ( batch.size() == 1 )
+		{
+			return batch.get(0).change.getMessage();
+		}
+
+		StringBuilder message = new StringBuilder(String.format("Commit %d changes\n", batch.size()));
+		for (PendingChange pendingChange : batch)
+		{
+			message.append('\n').append(pendingChange.change.getMessage());
+		}
+		return message.toString();
+	}
+
+	private static final class PendingChange
+	{
+		private final GitChange change;
+		private final SettableFuture<ObjectId> result = SettableFuture.create();
+
+		PendingChange(GitChange change)
+		{
+			this.change = change;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Checkpoints of a deflate stream : where to resume inflating to reach an offset of the inflated content without
+ * inflating everything before it.
+ * <p>
+ * Each checkpoint is the start of a deflate block, given by its position in bits in the compressed stream, with the
+ * number of bytes inflated before it and the 32 KiB window inflated just before it, kept deflated in memory.
+ */
+final class GitInflateIndex
+{
+
+	private static final int MAGIC = 0x56474349; // VGCI
+	private static final int VERSION = 1;
+
+	private final int span;
+	private final String source;
+	private final long inflatedSize;
+	private final long[] offsets;
+	private final long[] bitPositions;
+	private final int[] windowLengths;
+	private final byte[][] windows;
+
+	private GitInflateIndex(int span, String source, long inflatedSize, long[] offsets, long[] bitPositions, int[] windowLengths, byte[][] windows)
+	{
+		this.span = span;
+		this.source = source;
+		this.inflatedSize = inflatedSize;
+		this.offsets = offsets;
+		this.bitPositions = bitPositions;
+		this.windowLengths = windowLengths;
+		this.windows = windows;
+	}
+
+	int getSpan()
+	{
+		return span;
+	}
+
+	String getSource()
+	{
+		return source;
+	}
+
+	long getInflatedSize()
+	{
+		return inflatedSize;
+	}
+
+	int size()
+	{
+		return offsets.length;
+	}
+
+	/**
+	 * @return the last checkpoint at or before the given inflated offset
+	 */
+	int floor(long offset)
+	{
+		int position = Arrays.binarySearch(offsets, offset);
+		return position >= 0 ? position : Math.max(0, -position - 2);
+	}
+
+	long getOffset(int checkpoint)
+	{
+		return offsets[checkpoint];
+	}
+
+	long getBitPosition(int checkpoint)
+	{
+		return bitPositions[checkpoint];
+	}
+
+	byte[] getWindow(int checkpoint) throws IOException
+	{
+		byte[] window = new byte[windowLengths[checkpoint]];
+		Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(windows[checkpoint]);
+			int length = 0;
+			while (length < window.length && !inflater.finished())
+			{
+				int inflated = inflater.inflate(window, length, window.length - length);
+				if (inflated == 0 && inflater.needsInput())
+				{
+					throw new IOException("Truncated checkpoint window");
+				}
+				length += inflated;
+			}
+			return window;
+		} catch (DataFormatException e)
+		{
+			throw new IOException(e);
+		} finally
+		{
+			inflater.end();
+		}
+	}
+
+	void write(File file) throws IOException
+	{
+		file.getParentFile().mkdirs();
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(source);
+			out.writeInt(span);
+			out.writeLong(inflatedSize);
+			out.writeInt(offsets.length);
+			for (int i = 0; i < offsets.length; i++)
+			{
+				out.writeLong(offsets[i]);
+				out.writeLong(bitPositions[i]);
+				out.writeInt(windowLengths[i]);
+				out.writeInt(windows[i].length);
+				out.write(windows[i]);
+			}
+		} finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+		if (!tempFile.renameTo(file))
+		{
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * @return the index stored in the file or null if there is none or if it was built for another stream or span
+	 */
+	static GitInflateIndex read(File file, String expectedSource, int expectedSpan) throws IOException
+	{
+		if (!file.isFile())
+		{
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			{
+				return null;
+			}
+			String source = in.readUTF();
+			int span = in.readInt();
+			if (!source.equals(expectedSource) || span != expectedSpan)
+			{
+				return null;
+			}
+
+			long inflatedSize = in.readLong();
+			int count = in.readInt();
+			long[] offsets = new long[count];
+			long[] bitPositions = new long[count];
+			int[] windowLengths = new int[count];
+			byte[][] windows = new byte[count][];
+			for (int i = 0; i < count; i++)
+			{
+				offsets[i] = in.readLong();
+				bitPositions[i] = in.readLong();
+				windowLengths[i] = in.readInt();
+				windows[i] = new byte[in.readInt()];
+				in.readFully(windows[i]);
+			}
+			return new GitInflateIndex(span, source, inflatedSize, offsets, bitPositions, windowLengths, windows);
+		} finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	static final class Builder
+	{
+		private final int span;
+		private final String source;
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		private final byte[] buffer = new byte[GitInflateScanner.WINDOW_SIZE + 1024];
+
+		private int count;
+		private long[] offsets = new long[16];
+		private long[] bitPositions = new long[16];
+		private int[] windowLengths = new int[16];
+		private byte[][] windows = new byte[16][];
+
+		Builder(int span, String source)
+		{
+			this.span = span;
+			this.source = source;
+		}
+
+		void add(long offset, long bitPosition, byte[] window)
+		{
+			if (count == offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, count * 2);
+				bitPositions = Arrays.copyOf(bitPositions, count * 2);
+				windowLengths = Arrays.copyOf(windowLengths, count * 2);
+				windows = Arrays.copyOf(windows, count * 2);
+			}
+			offsets[count] = offset;
+			bitPositions[count] = bitPosition;
+			windowLengths[count] = window.length;
+			windows[count] = deflate(window);
+			count++;
+		}
+
+		GitInflateIndex build(long inflatedSize)
+		{
+			deflater.end();
+			return new GitInflateIndex(span, source, inflatedSize, Arrays.copyOf(offsets, count), Arrays.copyOf(bitPositions, count), Arrays.copyOf(windowLengths, count), Arrays.copyOf(windows, count));
+		}
+
+		private byte[] deflate(byte[] window)
+		{
+			deflater.reset();
+			deflater.setInput(window);
+			deflater.finish();
+			int length = 0;
+			byte[] result = buffer;
+			while (!deflater.finished())
+			{
+				if (length == result.length)
+				{
+					result = Arrays.copyOf(result, result.length * 2);
+				}
+				length += deflater.deflate(result, length, result.length - length);
+			}
+			return Arrays.copyOf(result, length);
+		}
+	}
+}
@@ -0,0 +1,406 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * Decode a raw deflate stream (RFC 1951) only to find where its blocks start.
+ * <p>
+ * java.util.zip.Inflater doesn't tell where a block starts nor where it stands in the compressed stream, so the
+ * stream is decoded here : for each block starting at least span bytes after the previous checkpoint the position in
+ * bits of the block in the compressed stream, the number of bytes inflated so far and the last 32 KiB inflated (the
+ * window the next blocks may refer to) are recorded in a {@link GitInflateIndex}. The inflated bytes are not kept.
+ */
+final class GitInflateScanner
+{
+
+	static final int WINDOW_SIZE = 32 * 1024;
+
+	private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+	private static final int[] LENGTH_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258 };
+	private static final int[] LENGTH_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0 };
+	private static final int[] DISTANCE_BASE = { 1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577 };
+	private static final int[] DISTANCE_EXTRA = { 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13 };
+	private static final int[] CODE_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[64 * 1024];
+	private int bufferPosition;
+	private int bufferLimit;
+	private long bytesRead;
+	private long paddingBytes;
+
+	private long bitBuffer;
+	private int bitCount;
+
+	private final byte[] window = new byte[WINDOW_SIZE];
+	private long out;
+
+	private final Huffman literals = new Huffman(15);
+	private final Huffman distances = new Huffman(15);
+	private final Huffman codeLengths = new Huffman(7);
+	private final int[] lengths = new int[288 + 32];
+
+	GitInflateScanner(InputStream in)
+	{
+		this.in = in;
+	}
+
+	/**
+	 * Decode the whole stream.
+	 * @param span the minimal number of inflated bytes between two checkpoints
+	 * @param source identifies the compressed stream the index is built for
+	 */
+	GitInflateIndex scan(int span, String source) throws IOException
+	{
+		GitInflateIndex.Builder builder = new GitInflateIndex.Builder(span, source);
+		long nextCheckpoint = 0;
+		boolean last;
+		try
+		{
+			do
+			{
+				if (out >= nextCheckpoint)
+				{
+					builder.add(out, getBitPosition(), getWindow());
+					nextCheckpoint = out + span;
+				}
+
+				last = bits(1) == 1;
+				int type = (int) bits(2);
+				switch (type)
+				{
+				case 0:
+					stored();
+					break;
+				case 1:
+					literals.build(FixedCodes.LITERAL_LENGTHS, 0, FixedCodes.LITERAL_LENGTHS.length);
+					distances.build(FixedCodes.DISTANCE_LENGTHS, 0, FixedCodes.DISTANCE_LENGTHS.length);
+					codes();
+					break;
+				case 2:
+					dynamic();
+					codes();
+					break;
+				default:
+					throw new DataFormatException("invalid block type");
+				}
+			} while (!last);
+		} catch (DataFormatException e)
+		{
+			throw new IOException(String.format("Corrupt deflate stream at bit %d of %s", getBitPosition(), source), e);
+		}
+		return builder.build(out);
+	}
+
+	private long getBitPosition()
+	{
+		return bytesRead * 8 - bitCount;
+	}
+
+	private byte[] getWindow()
+	{
+		int length = (int) Math.min(out, WINDOW_SIZE);
+		byte[] result = new byte[length];
+		int start = (int) ((out - length) & WINDOW_MASK);
+		int firstPart = Math.min(length, WINDOW_SIZE - start);
+		System.arraycopy(window, start, result, 0, firstPart);
+		System.arraycopy(window, 0, result, firstPart, length - firstPart);
+		return result;
+	}
+
+	private void stored() throws IOException, DataFormatException
+	{
+		bits(bitCount & 7);
+		int length = (int) bits(16);
+		int complement = (int) bits(16);
+		if (length != (~complement & 0xffff))
+		{
+			throw new DataFormatException("invalid stored block length");
+		}
+
+		while (length > 0 && bitCount >= 8)
+		{
+			put((int) bits(8));
+			length--;
+		}
+		while (length > 0)
+		{
+			if (bufferPosition == bufferLimit && !fill())
+			{
+				throw new EOFException();
+			}
+			int count = Math.min(length, bufferLimit - bufferPosition);
+			for (int i = 0; i < count; i++)
+			{
+				put(buffer[bufferPosition + i]);
+			}
+			bufferPosition += count;
+			bytesRead += count;
+			length -= count;
+		}
+	}
+
+	private void dynamic() throws IOException, DataFormatException
+	{
+		int literalCount = (int) bits(5) + 257;
+		int distanceCount = (int) bits(5) + 1;
+		int codeLengthCount = (int) bits(4) + 4;
+		if (literalCount > 286 || distanceCount > 30)
+		{
+			throw new DataFormatException("too many length or distance codes");
+		}
+
+		Arrays.fill(lengths, 0, 19, 0);
+		for (int i = 0; i < codeLengthCount; i++)
+		{
+			lengths[CODE_LENGTH_ORDER[i]] = (int) bits(3);
+		}
+		codeLengths.build(lengths, 0, 19);
+
+		int index = 0;
+		int total = literalCount + distanceCount;
+		while (index < total)
+		{
+			int symbol = decode(codeLengths);
+			if (symbol < 16)
+			{
+				lengths[index++] = symbol;
+				continue;
+			}
+
+			int value = 0;
+			int repeat;
+			if (symbol == 16)
+			{
+				if (index == 0)
+				{
+					throw new DataFormatException("repeat with no previous length");
+				}
+				value = lengths[index - 1];
+				repeat = 3 + (int) bits(2);
+			} else if (symbol == 17)
+			{
+				repeat = 3 + (int) bits(3);
+			} else
+			{
+				repeat = 11 + (int) bits(7);
+			}
+			if (index + repeat > total)
+			{
+				throw new DataFormatException("too many lengths");
+			}
+			Arrays.fill(lengths, index, index + repeat, value);
+			index += repeat;
+		}
+
+		literals.build(lengths, 0, literalCount);
+		distances.build(lengths, literalCount, distanceCount);
+	}
+
+	private void codes() throws IOException, DataFormatException
+	{
+		while (true)
+		{
+			int symbol = decode(literals);
+			if (symbol < 256)
+			{
+				put(symbol);
+			} else if (symbol == 256)
+			{
+				return;
+			} else
+			{
+				symbol -= 257;
+				if (symbol >= LENGTH_BASE.length)
+				{
+					throw new DataFormatException("invalid length code");
+				}
+				int length = LENGTH_BASE[symbol] + (int) bits(LENGTH_EXTRA[symbol]);
+
+				int distanceSymbol = decode(distances);
+				if (distanceSymbol >= DISTANCE_BASE.length)
+				{
+					throw new DataFormatException("invalid distance code");
+				}
+				int distance = DISTANCE_BASE[distanceSymbol] + (int) bits(DISTANCE_EXTRA[distanceSymbol]);
+				if (distance > out)
+				{
+					throw new DataFormatException("distance too far back");
+				}
+
+				for (int i = 0; i < length; i++)
+				{
+					put(window[(int) ((out - distance) & WINDOW_MASK)]);
+				}
+			}
+		}
+	}
+
+	private void put(int value)
+	{
+		window[(int) (out & WINDOW_MASK)] = (byte) value;
+		out++;
+	}
+
+	private int decode(Huffman huffman) throws IOException, DataFormatException
+	{
+		if (huffman.maxLength == 0)
+		{
+			throw new DataFormatException("no code");
+		}
+		need(huffman.maxLength, true);
+		int entry = huffman.table[(int) (bitBuffer & ((1 << huffman.maxLength) - 1))];
+		if (entry == 0)
+		{
+			throw new DataFormatException("invalid code");
+		}
+		drop(entry & 0xf);
+		return entry >>> 4;
+	}
+
+	private long bits(int count) throws IOException
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+		need(count, false);
+		long value = bitBuffer & ((1L << count) - 1);
+		drop(count);
+		return value;
+	}
+
+	private void drop(int count) throws EOFException
+	{
+		bitBuffer >>>= count;
+		bitCount -= count;
+		if (paddingBytes > 0 && getBitPosition() > (bytesRead - paddingBytes) * 8)
+		{
+			throw new EOFException();
+		}
+	}
+
+	/**
+	 * Ensure count bits are buffered. When peeking a Huffman code the end of the stream may be padded with zeros, the
+	 * padding is an error only if it gets consumed.
+	 */
+	private void need(int count, boolean pad) throws IOException
+	{
+		while (bitCount < count)
+		{
+			int value;
+			if (bufferPosition < bufferLimit || fill())
+			{
+				value = buffer[bufferPosition++] & 0xff;
+			} else if (pad)
+			{
+				value = 0;
+				paddingBytes++;
+			} else
+			{
+				throw new EOFException();
+			}
+			bitBuffer |= (long) value << bitCount;
+			bitCount += 8;
+			bytesRead++;
+		}
+	}
+
+	private boolean fill() throws IOException
+	{
+		if (paddingBytes > 0)
+		{
+			return false;
+		}
+		int read = in.read(buffer, 0, buffer.length);
+		if (read <= 0)
+		{
+			return false;
+		}
+		bufferPosition = 0;
+		bufferLimit = read;
+		return true;
+	}
+
+	/**
+	 * Canonical Huffman code decoded with a single lookup of maxLength bits, indexed by the bit reversed codes since
+	 * deflate packs codes starting from their most significant bit.
+	 */
+	private static final class Huffman
+	{
+		private final int[] table;
+		private final int[] count = new int[16];
+		private final int[] nextCode = new int[16];
+		private int maxLength;
+
+		Huffman(int maxBits)
+		{
+			table = new int[1 << maxBits];
+		}
+
+		void build(int[] codeLengths, int offset, int symbols) throws DataFormatException
+		{
+			Arrays.fill(count, 0);
+			maxLength = 0;
+			for (int i = 0; i < symbols; i++)
+			{
+				int length = codeLengths[offset + i];
+				count[length]++;
+				maxLength = Math.max(maxLength, length);
+			}
+			if (maxLength == 0)
+			{
+				return;
+			}
+			count[0] = 0;
+
+			int code = 0;
+			for (int bits = 1; bits <= maxLength; bits++)
+			{
+				code = (code + count[bits - 1]) << 1;
+				nextCode[bits] = code;
+			}
+
+			int size = 1 << maxLength;
+			Arrays.fill(table, 0, size, 0);
+			for (int symbol = 0; symbol < symbols; symbol++)
+			{
+				int length = codeLengths[offset + symbol];
+				if (length == 0)
+				{
+					continue;
+				}
+				int symbolCode = nextCode[length]++;
+				if (symbolCode >= 1 << length)
+				{
+					throw new DataFormatException("over subscribed code");
+				}
+				int reversed = Integer.reverse(symbolCode) >>> (32 - length);
+				for (int i = reversed; i < size; i += 1 << length)
+				{
+					table[i] = symbol << 4 | length;
+				}
+			}
+		}
+	}
+
+	private static final class FixedCodes
+	{
+		static final int[] LITERAL_LENGTHS = new int[288];
+		static final int[] DISTANCE_LENGTHS = new int[30];
+
+		static
+		{
+			Arrays.fill(LITERAL_LENGTHS, 0, 144, 8);
+			Arrays.fill(LITERAL_LENGTHS, 144, 256, 9);
+			Arrays.fill(LITERAL_LENGTHS, 256, 280, 7);
+			Arrays.fill(LITERAL_LENGTHS, 280, 288, 8);
+			Arrays.fill(DISTANCE_LENGTHS, 5);
+		}
+	}
+}
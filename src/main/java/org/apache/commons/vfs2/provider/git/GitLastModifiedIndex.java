@@ -0,0 +1,198 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * The time of the last commit touching each path of the tree of a commit, built with a single walk of the history.
+ * <p>
+ * The walk follows the first parents from the tip and diffs each commit with its parent : the first commit changing a
+ * path, or a file under a folder, gives its time. It stops as soon as every path of the tip has a time, so recent
+ * trees are indexed without reading the whole history. The changes brought by a merge are dated by the merge. When
+ * the branch advances, only the new commits are walked.
+ */
+final class GitLastModifiedIndex
+{
+
+	private final RevCommit tip;
+	// commit times in seconds by path, the root is the empty path
+	private final Map<String, Integer> times;
+
+	private GitLastModifiedIndex(RevCommit tip, Map<String, Integer> times)
+	{
+		this.tip = tip;
+		this.times = times;
+	}
+
+	/**
+	 * Walk the history of a commit until every path of its tree has a time.
+	 */
+	static GitLastModifiedIndex build(ObjectReader reader, RevCommit tip) throws IOException
+	{
+		RevWalk walk = new RevWalk(reader);
+		try
+		{
+			RevCommit commit = walk.parseCommit(tip);
+			Set<String> remaining = listPaths(reader, commit);
+			Map<String, Integer> times = new HashMap<String, Integer>(remaining.size() * 2);
+			times.put("", commit.getCommitTime());
+
+			while (commit != null && !remaining.isEmpty())
+			{
+				RevCommit parent = commit.getParentCount() == 0 ? null : walk.parseCommit(commit.getParent(0));
+				for (String path : diff(reader, commit, parent))
+				{
+					assign(path, commit.getCommitTime(), remaining, times);
+				}
+				commit = parent;
+			}
+			return new GitLastModifiedIndex(tip, times);
+		} finally
+		{
+			walk.release();
+		}
+	}
+
+	RevCommit getTip()
+	{
+		return tip;
+	}
+
+	/**
+	 * Index a newer commit, walking only the commits between the tip of this index and the new one. The whole history
+	 * is walked again when the new commit doesn't descend from the tip through its first parents.
+	 */
+	GitLastModifiedIndex update(ObjectReader reader, RevCommit newTip) throws IOException
+	{
+		RevWalk walk = new RevWalk(reader);
+		try
+		{
+			Map<String, Integer> changed = new HashMap<String, Integer>();
+			RevCommit commit = walk.parseCommit(newTip);
+			changed.put("", commit.getCommitTime());
+			while (!commit.equals(tip))
+			{
+				if ( commit.getParentCount() == 0 )
+				{
+					return build(reader, newTip);
+				}
+
+				RevCommit parent = walk.parseCommit(commit.getParent(0));
+				for (String path : diff(reader, commit, parent))
+				{
+					assign(path, commit.getCommitTime(), null, changed);
+				}
+				commit = parent;
+			}
+
+			Map<String, Integer> newTimes = new HashMap<String, Integer>(times);
+			newTimes.putAll(changed);
+			return new GitLastModifiedIndex(newTip, newTimes);
+		} finally
+		{
+			walk.release();
+		}
+	}
+
+	/**
+	 * @param path the path relative to the repository root, the empty string for the root
+	 * @return the time in milliseconds of the last commit touching the path, 0 if the path isn't in the tree
+	 */
+	long getLastModified(String path)
+	{
+		Integer time = times.get(path);
+		return time == null ? 0 : time * 1000L;
+	}
+
+	/**
+	 * Give a time to a path and to its folders, unless a newer commit already gave them one.
+	 * @param remaining the paths without a time yet, null to accept every path
+	 */
+	private static void assign(String path, int time, Set<String> remaining, Map<String, Integer> times)
+	{
+		for (String current = path; current.length() > 0; current = parentOf(current))
+		{
+			if ( times.containsKey(current) )
+			{
+				// the folders were reached by a newer commit too
+				return;
+			}
+			if ( remaining == null || remaining.remove(current) )
+			{
+				times.put(current, time);
+			}
+		}
+	}
+
+	private static String parentOf(String path)
+	{
+		int slash = path.lastIndexOf('/');
+		return slash < 0 ? "" : path.substring(0, slash);
+	}
+
+	/**
+	 * @return the files changed by a commit, added and deleted ones included
+	 */
+	private static Set<String> diff(ObjectReader reader, RevCommit commit, RevCommit parent) throws IOException
+	{
+		Set<String> paths = new HashSet<String>();
+		TreeWalk treeWalk = new TreeWalk(reader);
+		try
+		{
+			treeWalk.addTree(commit.getTree());
+			if ( parent == null )
+			{
+				treeWalk.addTree(new EmptyTreeIterator());
+			} else
+			{
+				treeWalk.addTree(parent.getTree());
+			}
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			while (treeWalk.next())
+			{
+				paths.add(treeWalk.getPathString());
+			}
+		} finally
+		{
+			treeWalk.release();
+		}
+		return paths;
+	}
+
+	/**
+	 * @return the paths of the files and folders of the tree of a commit
+	 */
+	private static Set<String> listPaths(ObjectReader reader, RevCommit commit) throws IOException
+	{
+		Set<String> paths = new HashSet<String>();
+		TreeWalk treeWalk = new TreeWalk(reader);
+		try
+		{
+			treeWalk.addTree(commit.getTree());
+			treeWalk.setRecursive(false);
+			while (treeWalk.next())
+			{
+				paths.add(treeWalk.getPathString());
+				if ( treeWalk.isSubtree() )
+				{
+					treeWalk.enterSubtree();
+				}
+			}
+		} finally
+		{
+			treeWalk.release();
+		}
+		return paths;
+	}
+}
@@ -0,0 +1,72 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations in power of two buckets of nanoseconds : recording a duration is a few atomic
+ * increments, percentiles are known within a factor of two.
+ */
+final class GitLatencyHistogram
+{
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long nanos)
+	{
+		long duration = Math.max(0, nanos);
+		// the bucket of a duration is the position of its highest bit
+		buckets.incrementAndGet(duration == 0 ? 0 : BUCKETS - 1 - Long.numberOfLeadingZeros(duration));
+		count.incrementAndGet();
+		total.addAndGet(duration);
+		long previous;
+		while (duration > (previous = max.get()) && !max.compareAndSet(previous, duration))
+		{
+			// another thread recorded a duration at the same time
+		}
+	}
+
+	long getCount()
+	{
+		return count.get();
+	}
+
+	long getTotal()
+	{
+		return total.get();
+	}
+
+	long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket of the percentile in nanoseconds, 0 if nothing has been recorded
+	 */
+	long getPercentile(double percentile)
+	{
+		long recorded = count.get();
+		if ( recorded == 0 )
+		{
+			return 0;
+		}
+		long rank = (long) Math.ceil(recorded * percentile / 100);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++)
+		{
+			seen += buckets.get(bucket);
+			if ( seen >= rank )
+			{
+				return Math.min(max.get(), bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1);
+			}
+		}
+		return max.get();
+	}
+}
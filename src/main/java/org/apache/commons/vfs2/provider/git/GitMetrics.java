@@ -0,0 +1,154 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters of a file system. When disabled, each method returns after testing a final field, so the calls can
+ * stay in the read and write paths.
+ */
+final class GitMetrics
+{
+
+	private final boolean enabled;
+	private final AtomicLong treeWalks = new AtomicLong();
+	private final AtomicLong objectsOpened = new AtomicLong();
+	private final AtomicLong bytesInflated = new AtomicLong();
+	private final AtomicLong tempBytesWritten = new AtomicLong();
+	private final AtomicLong blobCacheHits = new AtomicLong();
+	private final AtomicLong blobCacheMisses = new AtomicLong();
+	private final GitLatencyHistogram lookups = new GitLatencyHistogram();
+	private final GitLatencyHistogram commits = new GitLatencyHistogram();
+
+	GitMetrics(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * @return the start time of a measured operation, 0 when disabled
+	 */
+	long start()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Count a walk of a tree object to find or list entries.
+	 */
+	void treeWalked()
+	{
+		if ( enabled )
+		{
+			treeWalks.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Record the duration of the lookup of an entry or of the listing of a folder.
+	 */
+	void lookedUp(long start)
+	{
+		if ( enabled )
+		{
+			lookups.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Count the blob opened to read a file, and the bytes inflated from it as they are read from the stream.
+	 */
+	InputStream opened(InputStream inputStream)
+	{
+		if ( !enabled )
+		{
+			return inputStream;
+		}
+		objectsOpened.incrementAndGet();
+		return new FilterInputStream(inputStream)
+		{
+			@Override
+			public int read() throws IOException
+			{
+				int read = super.read();
+				if ( read != -1 )
+				{
+					bytesInflated.incrementAndGet();
+				}
+				return read;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				int read = super.read(b, off, len);
+				if ( read > 0 )
+				{
+					bytesInflated.addAndGet(read);
+				}
+				return read;
+			}
+		};
+	}
+
+	/**
+	 * Count a blob opened and inflated at once.
+	 */
+	void opened(long inflatedBytes)
+	{
+		if ( enabled )
+		{
+			objectsOpened.incrementAndGet();
+			bytesInflated.addAndGet(inflatedBytes);
+		}
+	}
+
+	void committed(long start)
+	{
+		if ( enabled )
+		{
+			commits.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Count the bytes copied to a temporary file for the random access of a blob.
+	 */
+	void tempWritten(long bytes)
+	{
+		if ( enabled )
+		{
+			tempBytesWritten.addAndGet(bytes);
+		}
+	}
+
+	/**
+	 * Count a blob read by this file system through the blob cache shared by the file systems of the repository.
+	 * @param hit true if the blob was in the cache
+	 */
+	void blobCacheRead(boolean hit)
+	{
+		if ( enabled )
+		{
+			(hit ? blobCacheHits : blobCacheMisses).incrementAndGet();
+		}
+	}
+
+	GitMetricsSnapshot snapshot()
+	{
+		return new GitMetricsSnapshot(treeWalks.get(), objectsOpened.get(), bytesInflated.get(), tempBytesWritten.get(), blobCacheHits.get(), blobCacheMisses.get(),
+				latency(lookups), latency(commits));
+	}
+
+	private static GitMetricsSnapshot.Latency latency(GitLatencyHistogram histogram)
+	{
+		return new GitMetricsSnapshot.Latency(histogram.getCount(), histogram.getTotal(), histogram.getMax(), histogram.getPercentile(50), histogram.getPercentile(99));
+	}
+}
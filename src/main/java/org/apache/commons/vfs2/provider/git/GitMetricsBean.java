@@ -0,0 +1,113 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read the counters of a file system for JMX, each attribute takes a new snapshot.
+ */
+final class GitMetricsBean implements GitMetricsMXBean
+{
+
+	private final GitFileSystem fileSystem;
+
+	GitMetricsBean(GitFileSystem fileSystem)
+	{
+		this.fileSystem = fileSystem;
+	}
+
+	@Override
+	public String getRoot()
+	{
+		return fileSystem.getRootName().getURI();
+	}
+
+	@Override
+	public long getTreeWalks()
+	{
+		return snapshot().getTreeWalks();
+	}
+
+	@Override
+	public long getObjectsOpened()
+	{
+		return snapshot().getObjectsOpened();
+	}
+
+	@Override
+	public long getBytesInflated()
+	{
+		return snapshot().getBytesInflated();
+	}
+
+	@Override
+	public long getTempBytesWritten()
+	{
+		return snapshot().getTempBytesWritten();
+	}
+
+	@Override
+	public long getBlobCacheHits()
+	{
+		return snapshot().getBlobCacheHits();
+	}
+
+	@Override
+	public long getBlobCacheMisses()
+	{
+		return snapshot().getBlobCacheMisses();
+	}
+
+	@Override
+	public long getLookupCount()
+	{
+		return snapshot().getLookups().getCount();
+	}
+
+	@Override
+	public long getLookupMeanMicros()
+	{
+		return snapshot().getLookups().getMean(TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getLookup99thPercentileMicros()
+	{
+		return snapshot().getLookups().get99thPercentile(TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public long getCommitCount()
+	{
+		return snapshot().getCommits().getCount();
+	}
+
+	@Override
+	public long getCommitMeanMillis()
+	{
+		return snapshot().getCommits().getMean(TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public long getCommit99thPercentileMillis()
+	{
+		return snapshot().getCommits().get99thPercentile(TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public long getCommitMaxMillis()
+	{
+		return snapshot().getCommits().getMax(TimeUnit.MILLISECONDS);
+	}
+
+	private GitMetricsSnapshot snapshot()
+	{
+		try
+		{
+			return fileSystem.getMetrics();
+		} catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
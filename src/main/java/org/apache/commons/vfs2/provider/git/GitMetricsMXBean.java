@@ -0,0 +1,38 @@
+package org.apache.commons.vfs2.provider.git;
+
+/**
+ * The counters of a file system exposed through JMX, under the name
+ * <code>org.apache.commons.vfs2.provider.git:type=GitFileSystem,root=...,id=...</code>.
+ * @see GitFileSystemConfigBuilder#setMetricsEnabled(org.apache.commons.vfs2.FileSystemOptions, boolean)
+ */
+public interface GitMetricsMXBean
+{
+
+	String getRoot();
+
+	long getTreeWalks();
+
+	long getObjectsOpened();
+
+	long getBytesInflated();
+
+	long getTempBytesWritten();
+
+	long getBlobCacheHits();
+
+	long getBlobCacheMisses();
+
+	long getLookupCount();
+
+	long getLookupMeanMicros();
+
+	long getLookup99thPercentileMicros();
+
+	long getCommitCount();
+
+	long getCommitMeanMillis();
+
+	long getCommit99thPercentileMillis();
+
+	long getCommitMaxMillis();
+}
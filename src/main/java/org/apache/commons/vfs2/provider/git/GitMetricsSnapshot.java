@@ -0,0 +1,162 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The counters of a file system at a point in time.
+ * @see GitFileSystem#getMetrics()
+ */
+public final class GitMetricsSnapshot
+{
+
+	private final long treeWalks;
+	private final long objectsOpened;
+	private final long bytesInflated;
+	private final long tempBytesWritten;
+	private final long blobCacheHits;
+	private final long blobCacheMisses;
+	private final Latency lookups;
+	private final Latency commits;
+
+	GitMetricsSnapshot(long treeWalks, long objectsOpened, long bytesInflated, long tempBytesWritten, long blobCacheHits, long blobCacheMisses, Latency lookups,
+			Latency commits)
+	{
+		this.treeWalks = treeWalks;
+		this.objectsOpened = objectsOpened;
+		this.bytesInflated = bytesInflated;
+		this.tempBytesWritten = tempBytesWritten;
+		this.blobCacheHits = blobCacheHits;
+		this.blobCacheMisses = blobCacheMisses;
+		this.lookups = lookups;
+		this.commits = commits;
+	}
+
+	/**
+	 * @return the number of tree objects walked to find or list entries
+	 */
+	public long getTreeWalks()
+	{
+		return treeWalks;
+	}
+
+	/**
+	 * @return the number of blobs opened to read the content of files
+	 */
+	public long getObjectsOpened()
+	{
+		return objectsOpened;
+	}
+
+	/**
+	 * @return the number of bytes read from the blobs
+	 */
+	public long getBytesInflated()
+	{
+		return bytesInflated;
+	}
+
+	/**
+	 * @return the number of bytes copied to temporary files for random access
+	 */
+	public long getTempBytesWritten()
+	{
+		return tempBytesWritten;
+	}
+
+	/**
+	 * @return the blobs read by this file system from the blob cache
+	 */
+	public long getBlobCacheHits()
+	{
+		return blobCacheHits;
+	}
+
+	/**
+	 * @return the blobs read by this file system which weren't in the blob cache
+	 */
+	public long getBlobCacheMisses()
+	{
+		return blobCacheMisses;
+	}
+
+	/**
+	 * @return the durations of the lookups of entries and of the listings of folders
+	 */
+	public Latency getLookups()
+	{
+		return lookups;
+	}
+
+	/**
+	 * @return the durations of the commits
+	 */
+	public Latency getCommits()
+	{
+		return commits;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("treeWalks=%d objectsOpened=%d bytesInflated=%d tempBytesWritten=%d blobCacheHits=%d blobCacheMisses=%d lookups={%s} commits={%s}", treeWalks,
+				objectsOpened, bytesInflated, tempBytesWritten, blobCacheHits, blobCacheMisses, lookups, commits);
+	}
+
+	/**
+	 * The durations of an operation. The percentiles are the upper bound of a power of two bucket of nanoseconds.
+	 */
+	public static final class Latency
+	{
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long medianNanos;
+		private final long percentile99Nanos;
+
+		Latency(long count, long totalNanos, long maxNanos, long medianNanos, long percentile99Nanos)
+		{
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.medianNanos = medianNanos;
+			this.percentile99Nanos = percentile99Nanos;
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getTotal(TimeUnit unit)
+		{
+			return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+		}
+
+		public long getMean(TimeUnit unit)
+		{
+			return count == 0 ? 0 : unit.convert(totalNanos / count, TimeUnit.NANOSECONDS);
+		}
+
+		public long getMax(TimeUnit unit)
+		{
+			return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+		}
+
+		public long getMedian(TimeUnit unit)
+		{
+			return unit.convert(medianNanos, TimeUnit.NANOSECONDS);
+		}
+
+		public long get99thPercentile(TimeUnit unit)
+		{
+			return unit.convert(percentile99Nanos, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("count=%d meanNanos=%d medianNanos=%d 99thPercentileNanos=%d maxNanos=%d", count, getMean(TimeUnit.NANOSECONDS), medianNanos,
+					percentile99Nanos, maxNanos);
+		}
+	}
+}
@@ -1,29 +1,97 @@
 package org.apache.commons.vfs2.provider.git;
 
+import java.io.File;
+
 import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystem;
 import org.apache.commons.vfs2.FileSystemConfigBuilder;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemOptions;
 import org.apache.commons.vfs2.provider.LocalFileProvider;
+import org.apache.commons.vfs2.provider.UriParser;
 import org.apache.commons.vfs2.provider.local.DefaultLocalFileProvider;
 import org.apache.commons.vfs2.provider.local.GenericFileNameParser;
 import org.apache.commons.vfs2.provider.local.LocalFileName;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.util.FS;
 
 public class GitProvider extends DefaultLocalFileProvider implements LocalFileProvider
 {
 
+	private static final long DEFAULT_REPOSITORY_IDLE_TIMEOUT = 5 * 60 * 1000;
+
+	private final GitRepositoryPool repositoryPool = new GitRepositoryPool(DEFAULT_REPOSITORY_IDLE_TIMEOUT);
+
 	public GitProvider()
 	{
 		super();
 		setFileNameParser(new GenericFileNameParser());
 	}
 
+	/**
+	 * Without an explicit git directory, the file system of a file is rooted at the work tree of the repository
+	 * containing it, so that each repository (and reference) gets its own file system.
+	 */
+	@Override
+	protected FileObject findFile(FileName name, FileSystemOptions fileSystemOptions) throws FileSystemException
+	{
+		if ( GitFileSystemConfigBuilder.getInstance().getGitDirectory(fileSystemOptions) != null )
+		{
+			return super.findFile(name, fileSystemOptions);
+		}
+
+		File rootDirectory = getRootDirectory(findGitDirectory(name));
+		FileName rootName = getContext().getFileSystemManager().resolveName(name, UriParser.encode(rootDirectory.getAbsolutePath()));
+		return getFileSystem(rootName, fileSystemOptions).resolveFile(name);
+	}
+
 	@Override
 	protected FileSystem doCreateFileSystem(FileName name, FileSystemOptions fileSystemOptions) throws FileSystemException
 	{
 		final LocalFileName rootName = (LocalFileName) name;
-		return new GitFileSystem(rootName, fileSystemOptions);
+		File gitDirectory = GitFileSystemConfigBuilder.getInstance().getGitDirectory(fileSystemOptions);
+		if ( gitDirectory == null )
+		{
+			gitDirectory = findGitDirectory(rootName);
+		}
+		return new GitFileSystem(rootName, gitDirectory, repositoryPool, fileSystemOptions);
+	}
+
+	/**
+	 * @return the git directory of the repository containing the file, its .git folder or itself for a bare repository
+	 */
+	private File findGitDirectory(FileName name) throws FileSystemException
+	{
+		File file = new File(name.getPathDecoded());
+		for (File directory = file; directory != null; directory = directory.getParentFile())
+		{
+			File dotGit = new File(directory, Constants.DOT_GIT);
+			if ( FileKey.isGitRepository(dotGit, FS.DETECTED) )
+			{
+				return dotGit;
+			}
+			if ( FileKey.isGitRepository(directory, FS.DETECTED) )
+			{
+				return directory;
+			}
+		}
+		throw new FileSystemException("vfs.impl/no-provider-for-file.error", name, new RepositoryNotFoundException(file));
+	}
+
+	private File getRootDirectory(File gitDirectory)
+	{
+		return Constants.DOT_GIT.equals(gitDirectory.getName()) ? gitDirectory.getParentFile() : gitDirectory;
+	}
+
+	/**
+	 * Set how long a repository which isn't used by any file system stays open, in milliseconds.
+	 */
+	public void setRepositoryIdleTimeout(long idleTimeout)
+	{
+		repositoryPool.setIdleTimeout(idleTimeout);
 	}
 
 	@Override
@@ -32,4 +100,11 @@ public class GitProvider extends DefaultLocalFileProvider implements LocalFilePr
 		return GitFileSystemConfigBuilder.getInstance();
 	}
 
+	@Override
+	public void close()
+	{
+		super.close();
+		repositoryPool.close();
+	}
+
 }
@@ -0,0 +1,28 @@
+package org.apache.commons.vfs2.provider.git;
+
+/**
+ * How the random access content of a blob larger than the buffer threshold is served.
+ * @see GitFileSystemConfigBuilder#setRandomAccessStrategy(org.apache.commons.vfs2.FileSystemOptions,
+ *      GitRandomAccessStrategy)
+ */
+public enum GitRandomAccessStrategy
+{
+	/**
+	 * Inflate the blob again from the object database : a forward seek skips the inflated bytes, a backward seek
+	 * restarts from the beginning of the blob. No temporary copy is made.
+	 */
+	STREAM,
+
+	/**
+	 * Index the deflated stream of the blob once, recording checkpoints where inflating can resume, so that a seek
+	 * only inflates from the nearest checkpoint before the position. Blobs stored as deltas fall back to
+	 * {@link #STREAM}.
+	 * @see GitFileSystemConfigBuilder#setInflateCheckpointSpan(org.apache.commons.vfs2.FileSystemOptions, int)
+	 */
+	INFLATE_CHECKPOINTS,
+
+	/**
+	 * Copy the whole blob in a temporary file, deleted when the content is closed.
+	 */
+	TEMP_FILE
+}
@@ -0,0 +1,80 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * The object readers of a file system, reused across reads : an object reader can only be used by one thread at a
+ * time, each read borrows one and gives it back, so the threads reading a shared file system never wait for each
+ * other and don't create a reader per read.
+ */
+final class GitReaderPool
+{
+
+	private final Repository repository;
+	private final int maxIdle;
+	private final Queue<ObjectReader> idle = new ConcurrentLinkedQueue<ObjectReader>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * @param maxIdle the number of readers kept between reads, the readers given back beyond it are released
+	 */
+	GitReaderPool(Repository repository, int maxIdle)
+	{
+		this.repository = repository;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Borrow a reader, to be given back by {@link #release(ObjectReader)} by the same thread.
+	 */
+	ObjectReader acquire()
+	{
+		ObjectReader reader = idle.poll();
+		if ( reader == null )
+		{
+			return repository.newObjectReader();
+		}
+		idleCount.decrementAndGet();
+		return reader;
+	}
+
+	void release(ObjectReader reader)
+	{
+		if ( !closed && idleCount.incrementAndGet() <= maxIdle )
+		{
+			idle.offer(reader);
+			if ( !closed )
+			{
+				return;
+			}
+			// closed meanwhile, the reader may have been missed by close
+			if ( !idle.remove(reader) )
+			{
+				return;
+			}
+		} else
+		{
+			idleCount.decrementAndGet();
+		}
+		reader.release();
+	}
+
+	/**
+	 * Release the idle readers, the borrowed readers are released when given back.
+	 */
+	void close()
+	{
+		closed = true;
+		ObjectReader reader;
+		while ((reader = idle.poll()) != null)
+		{
+			reader.release();
+		}
+	}
+}
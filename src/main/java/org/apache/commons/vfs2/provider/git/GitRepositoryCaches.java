@@ -0,0 +1,164 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The caches shared by the file systems of a repository, whatever their reference : they live as long as the
+ * repository stays in the {@link GitRepositoryPool}.
+ */
+final class GitRepositoryCaches
+{
+
+	private static final Log LOG = LogFactory.getLog(GitRepositoryCaches.class);
+
+	// a few branches are usually read at a date, each index holds all the commits of a branch
+	private static final int MAX_COMMIT_TIME_INDEXES = 16;
+
+	private final Repository repository;
+	private final Cache<ObjectId, GitCommitTimeIndex> commitTimeIndexes = CacheBuilder.newBuilder().maximumSize(MAX_COMMIT_TIME_INDEXES).build();
+	private GitBlobCache blobCache;
+	// the settings the caches were created with, guarded by this
+	private long blobCacheMaxBytes;
+	private int blobCacheMaxBlobSize;
+	private boolean blobCacheOffHeap;
+	// the caches are asked for on every read, a conflict is logged once
+	private boolean blobCacheConflictLogged;
+	private Cache<ObjectId, GitTreeListing> treeListings;
+	private long treeListingsMaxEntries;
+	private long treeListingsMaxBytes;
+	private boolean treeListingsConflictLogged;
+
+	GitRepositoryCaches(Repository repository)
+	{
+		this.repository = repository;
+	}
+
+	/**
+	 * Get the commit time index of a branch at the given tip, extending the index of an older tip when there is one.
+	 * The file systems asking for the same tip at the same time share a single walk.
+	 */
+	GitCommitTimeIndex getCommitTimeIndex(final AnyObjectId tip) throws IOException
+	{
+		try
+		{
+			return commitTimeIndexes.get(tip.copy(), new Callable<GitCommitTimeIndex>()
+			{
+				@Override
+				public GitCommitTimeIndex call() throws IOException
+				{
+					RevWalk walk = new RevWalk(repository);
+					try
+					{
+						return GitCommitTimeIndex.build(walk, tip, new GitCommitTimeIndex.Lookup()
+						{
+							@Override
+							public GitCommitTimeIndex get(AnyObjectId commit)
+							{
+								return commitTimeIndexes.getIfPresent(commit);
+							}
+						});
+					} finally
+					{
+						walk.release();
+					}
+				}
+			});
+		} catch (ExecutionException e)
+		{
+			throw (IOException) e.getCause();
+		} catch (UncheckedExecutionException e)
+		{
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	/**
+	 * Get the blob cache of the repository, created with the given settings on the first call. Later different
+	 * settings are ignored with a warning instead of emptying the cache used by the other file systems.
+	 */
+	synchronized GitBlobCache getBlobCache(long maxBytes, int maxBlobSize, boolean offHeap)
+	{
+		if ( blobCache == null )
+		{
+			blobCache = new GitBlobCache(maxBytes, maxBlobSize, offHeap);
+			blobCacheMaxBytes = maxBytes;
+			blobCacheMaxBlobSize = maxBlobSize;
+			blobCacheOffHeap = offHeap;
+		} else if ( !blobCacheConflictLogged && (maxBytes != blobCacheMaxBytes || maxBlobSize != blobCacheMaxBlobSize || offHeap != blobCacheOffHeap) )
+		{
+			blobCacheConflictLogged = true;
+			LOG.warn("The blob cache is shared by the file systems of " + repository.getDirectory() + " and was configured by another file system, the blob cache settings of this file system are ignored");
+		}
+		return blobCache;
+	}
+
+	/**
+	 * Get the listing of a tree, read on the first call and cached with the given bounds of the cache created by the
+	 * first call : later different bounds are ignored with a warning.
+	 * @param maxBytes the memory bound of the cache, if 0 the cache is bounded by maxEntries
+	 */
+	GitTreeListing getTreeListing(final AnyObjectId treeId, long maxEntries, long maxBytes) throws IOException
+	{
+		try
+		{
+			return getTreeListings(maxEntries, maxBytes).get(treeId.copy(), new Callable<GitTreeListing>()
+			{
+				@Override
+				public GitTreeListing call() throws IOException
+				{
+					ObjectReader reader = repository.newObjectReader();
+					try
+					{
+						return GitTreeListing.read(reader, treeId);
+					} finally
+					{
+						reader.release();
+					}
+				}
+			});
+		} catch (ExecutionException e)
+		{
+			throw (IOException) e.getCause();
+		} catch (UncheckedExecutionException e)
+		{
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	private synchronized Cache<ObjectId, GitTreeListing> getTreeListings(long maxEntries, final long maxBytes)
+	{
+		if ( treeListings == null )
+		{
+			treeListings = CacheBuilder.newBuilder().maximumWeight(maxBytes > 0 ? maxBytes : maxEntries).weigher(new Weigher<ObjectId, GitTreeListing>()
+			{
+				@Override
+				public int weigh(ObjectId key, GitTreeListing value)
+				{
+					return maxBytes > 0 ? value.getWeight() : value.size();
+				}
+			}).build();
+			treeListingsMaxEntries = maxEntries;
+			treeListingsMaxBytes = maxBytes;
+		} else if ( !treeListingsConflictLogged && (maxEntries != treeListingsMaxEntries || maxBytes != treeListingsMaxBytes) )
+		{
+			treeListingsConflictLogged = true;
+			LOG.warn("The tree listing cache is shared by the file systems of " + repository.getDirectory() + " and was configured by another file system, the tree listing cache settings of this file system are ignored");
+		}
+		return treeListings;
+	}
+}
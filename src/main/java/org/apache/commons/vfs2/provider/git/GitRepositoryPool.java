@@ -0,0 +1,242 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.storage.file.WindowCache;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Repositories shared by the file systems of a provider, one per git directory, so that every reference of a
+ * repository is read through the same object database, pack files and caches.
+ * <p>
+ * A repository is open while at least one file system uses it and is closed once it has been unused for the idle
+ * timeout, so file systems of the same repository opened in a row don't open it again. The idle repositories are closed
+ * by a daemon thread, started when the first repository becomes idle.
+ */
+final class GitRepositoryPool
+{
+
+	private static final Log LOG = LogFactory.getLog(GitRepositoryPool.class);
+
+	// the settings of the pack cache of the JVM, guarded by the class
+	private static WindowCacheConfig windowCacheConfig;
+
+	private final Map<File, PooledRepository> repositories = new HashMap<File, PooledRepository>();
+	private volatile long idleTimeout;
+	private ScheduledExecutorService sweeper;
+	// the next sweep of the idle repositories and when it runs
+	private ScheduledFuture<?> sweep;
+	private long sweepTime;
+
+	GitRepositoryPool(long idleTimeout)
+	{
+		this.idleTimeout = idleTimeout;
+	}
+
+	void setIdleTimeout(long idleTimeout)
+	{
+		this.idleTimeout = idleTimeout;
+		sweepIdle();
+	}
+
+	/**
+	 * Get the repository of a git directory, opening it if no file system uses it yet. Each call must be matched by a
+	 * call to {@link #release(Repository)}.
+	 * @param cacheConfig the settings of the pack cache, null to keep the current ones. The pack cache is shared by
+	 *            every repository of the JVM : the first settings are applied, later different settings are ignored
+	 *            with a warning instead of emptying the cache used by the other file systems.
+	 */
+	Repository acquire(File gitDirectory, WindowCacheConfig cacheConfig) throws IOException
+	{
+		File key = gitDirectory.getCanonicalFile();
+		synchronized (this)
+		{
+			closeIdle(System.currentTimeMillis());
+			if ( cacheConfig != null )
+			{
+				configureWindowCache(cacheConfig);
+			}
+
+			PooledRepository pooled = repositories.get(key);
+			if ( pooled == null )
+			{
+				Repository repository = new RepositoryBuilder().setGitDir(key).readEnvironment().setMustExist(true).build();
+				pooled = new PooledRepository(repository);
+				repositories.put(key, pooled);
+			}
+			pooled.references++;
+			return pooled.repository;
+		}
+	}
+
+	/**
+	 * @return the caches shared by the file systems of an acquired repository
+	 */
+	synchronized GitRepositoryCaches getCaches(Repository repository)
+	{
+		for (PooledRepository pooled : repositories.values())
+		{
+			if ( pooled.repository == repository )
+			{
+				return pooled.caches;
+			}
+		}
+		throw new IllegalArgumentException("The repository isn't acquired from this pool");
+	}
+
+	synchronized void release(Repository repository)
+	{
+		long now = System.currentTimeMillis();
+		for (PooledRepository pooled : repositories.values())
+		{
+			if ( pooled.repository == repository && pooled.references > 0 )
+			{
+				pooled.references--;
+				pooled.releaseTime = now;
+				break;
+			}
+		}
+		sweepIdle();
+	}
+
+	/**
+	 * @return the number of open repositories
+	 */
+	synchronized int size()
+	{
+		return repositories.size();
+	}
+
+	/**
+	 * Close every repository, whether it is still used or not.
+	 */
+	synchronized void close()
+	{
+		if ( sweeper != null )
+		{
+			sweeper.shutdownNow();
+			sweeper = null;
+			sweep = null;
+		}
+		for (PooledRepository pooled : repositories.values())
+		{
+			pooled.repository.close();
+		}
+		repositories.clear();
+	}
+
+	private static synchronized void configureWindowCache(WindowCacheConfig cacheConfig)
+	{
+		if ( windowCacheConfig == null )
+		{
+			WindowCache.reconfigure(cacheConfig);
+			windowCacheConfig = cacheConfig;
+		} else if ( !isSameConfig(cacheConfig, windowCacheConfig) )
+		{
+			LOG.warn("The pack cache is shared by the whole JVM and was configured by another file system, the pack cache settings of this file system are ignored");
+		}
+	}
+
+	/**
+	 * @return the settings applied to the pack cache of the JVM, null if none was applied
+	 */
+	static synchronized WindowCacheConfig getWindowCacheConfig()
+	{
+		return windowCacheConfig;
+	}
+
+	private static boolean isSameConfig(WindowCacheConfig config, WindowCacheConfig other)
+	{
+		return other != null && config.getPackedGitWindowSize() == other.getPackedGitWindowSize() && config.getPackedGitLimit() == other.getPackedGitLimit()
+				&& config.isPackedGitMMAP() == other.isPackedGitMMAP() && config.getPackedGitOpenFiles() == other.getPackedGitOpenFiles()
+				&& config.getDeltaBaseCacheLimit() == other.getDeltaBaseCacheLimit() && config.getStreamFileThreshold() == other.getStreamFileThreshold();
+	}
+
+	/**
+	 * Close the repositories idle for the timeout and schedule the next sweep for the other idle repositories.
+	 */
+	private synchronized void sweepIdle()
+	{
+		long now = System.currentTimeMillis();
+		long delay = closeIdle(now);
+		if ( delay < 0 || sweep != null && sweepTime <= now + delay )
+		{
+			// nothing idle, or a sweep comes soon enough
+			return;
+		}
+		if ( sweep != null )
+		{
+			sweep.cancel(false);
+		}
+		if ( sweeper == null )
+		{
+			sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("vfs-git repository sweep").build());
+		}
+		sweepTime = now + delay;
+		sweep = sweeper.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				synchronized (GitRepositoryPool.this)
+				{
+					sweep = null;
+					sweepIdle();
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the time until the next idle repository times out, -1 if no repository is idle
+	 */
+	private long closeIdle(long now)
+	{
+		long delay = -1;
+		for (Iterator<PooledRepository> iterator = repositories.values().iterator(); iterator.hasNext();)
+		{
+			PooledRepository pooled = iterator.next();
+			if ( pooled.references == 0 )
+			{
+				long idle = now - pooled.releaseTime;
+				if ( idle >= idleTimeout )
+				{
+					pooled.repository.close();
+					iterator.remove();
+				} else if ( delay < 0 || idleTimeout - idle < delay )
+				{
+					delay = idleTimeout - idle;
+				}
+			}
+		}
+		return delay;
+	}
+
+	private static final class PooledRepository
+	{
+		private final Repository repository;
+		private final GitRepositoryCaches caches;
+		private int references;
+		private long releaseTime;
+
+		PooledRepository(Repository repository)
+		{
+			this.repository = repository;
+			this.caches = new GitRepositoryCaches(repository);
+		}
+	}
+}
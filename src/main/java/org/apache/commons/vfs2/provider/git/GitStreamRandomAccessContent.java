@@ -0,0 +1,152 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.provider.AbstractRandomAccessStreamContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Read only random access which inflates the blob from the object database without any temporary copy.
+ * <p>
+ * A forward seek skips the bytes of the opened stream, a backward seek opens the blob again.
+ */
+class GitStreamRandomAccessContent extends AbstractRandomAccessStreamContent
+{
+
+	private final GitFileSystem fileSystem;
+	private final ObjectId objectId;
+	private final long length;
+
+	private long filePointer;
+	protected long streamPosition;
+	private InputStream stream;
+	private DataInputStream dis;
+
+	GitStreamRandomAccessContent(GitFileSystem fileSystem, ObjectId objectId, long length, RandomAccessMode mode)
+	{
+		super(mode);
+		this.fileSystem = fileSystem;
+		this.objectId = objectId;
+		this.length = length;
+	}
+
+	public long getFilePointer() throws IOException
+	{
+		return filePointer;
+	}
+
+	public void seek(long pos) throws IOException
+	{
+		if (pos < 0)
+		{
+			throw new FileSystemException("vfs.provider/random-access-invalid-position.error", new Object[] { Long.valueOf(pos) });
+		}
+		filePointer = pos;
+	}
+
+	public long length() throws IOException
+	{
+		return length;
+	}
+
+	@Override
+	protected DataInputStream getDataInputStream() throws IOException
+	{
+		if (stream != null && (streamPosition > filePointer || !isSkipCheaper(filePointer - streamPosition)))
+		{
+			close();
+		}
+		if (stream == null)
+		{
+			// every opening inflates the blob again, it is counted as such
+			stream = fileSystem.getMetricsRecorder().opened(openStream(filePointer));
+			dis = new DataInputStream(new FilterInputStream(stream)
+			{
+				@Override
+				public int read() throws IOException
+				{
+					int ret = super.read();
+					if (ret > -1)
+					{
+						moved(1);
+					}
+					return ret;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException
+				{
+					int ret = super.read(b, off, len);
+					if (ret > -1)
+					{
+						moved(ret);
+					}
+					return ret;
+				}
+
+				@Override
+				public long skip(long n) throws IOException
+				{
+					long ret = super.skip(n);
+					moved(ret);
+					return ret;
+				}
+			});
+		}
+		if (streamPosition < filePointer)
+		{
+			long toSkip = filePointer - streamPosition;
+			while (toSkip > 0)
+			{
+				long skipped = stream.skip(toSkip);
+				if (skipped <= 0)
+				{
+					throw new FileSystemException("vfs.provider/random-access-invalid-position.error", new Object[] { Long.valueOf(filePointer) });
+				}
+				toSkip -= skipped;
+			}
+			streamPosition = filePointer;
+		}
+		return dis;
+	}
+
+	/**
+	 * Open the content of the blob at or before the given position and set {@link #streamPosition} to the position of
+	 * the first byte of the returned stream. The whole blob is inflated from its beginning by default.
+	 */
+	protected InputStream openStream(long position) throws IOException
+	{
+		streamPosition = 0;
+		return fileSystem.openObject(objectId, Constants.OBJ_BLOB).openStream();
+	}
+
+	/**
+	 * @return true if skipping the given number of bytes of the opened stream is cheaper than opening it again
+	 */
+	protected boolean isSkipCheaper(long distance)
+	{
+		return true;
+	}
+
+	private void moved(long count)
+	{
+		streamPosition += count;
+		filePointer = streamPosition;
+	}
+
+	public void close() throws IOException
+	{
+		if (stream != null)
+		{
+			stream.close();
+			stream = null;
+			dis = null;
+		}
+	}
+}
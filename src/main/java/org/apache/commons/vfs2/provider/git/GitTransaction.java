@@ -0,0 +1,490 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.vfs2.FileType;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+
+/**
+ * Changes of a branch staged in memory and recorded by a single commit.
+ * <p>
+ * A transaction is bound to the thread which began it : while it is open, the files of its file system written,
+ * deleted or renamed by this thread are staged in the transaction instead of being committed one by one. The content
+ * of the written files goes straight to the object database, the tree of the commit is built in memory from the tree
+ * of the branch and the branch is updated only if nobody moved it since the transaction began. Neither the index nor
+ * the working tree of the repository are modified.
+ * <p>
+ * The thread of the transaction reads the files as staged, the other threads read the branch as it was until the
+ * transaction is committed.
+ *
+ * <pre>
+ * GitTransaction transaction = gitFileSystem.beginTransaction();
+ * try
+ * {
+ * 	// write, delete or rename files
+ * 	transaction.commit(&quot;Import&quot;);
+ * } finally
+ * {
+ * 	transaction.close();
+ * }
+ * </pre>
+ */
+public class GitTransaction implements Closeable
+{
+
+	private final GitFileSystem fileSystem;
+	private final Repository repository;
+	private final String branch;
+	private final RevCommit base;
+	private final ObjectInserter inserter;
+
+	// the staged entries by path, null for a deleted file
+	private final SortedMap<String, GitEntry> changes = new TreeMap<String, GitEntry>();
+	private boolean closed;
+
+	GitTransaction(GitFileSystem fileSystem, Repository repository, String branch, RevCommit base)
+	{
+		this.fileSystem = fileSystem;
+		this.repository = repository;
+		this.branch = branch;
+		this.base = base;
+		this.inserter = repository.newObjectInserter();
+	}
+
+	/**
+	 * @return the name of the branch updated by the commit
+	 */
+	public String getBranch()
+	{
+		return branch;
+	}
+
+	/**
+	 * @return the number of paths written or deleted so far
+	 */
+	public int getChangeCount()
+	{
+		return changes.size();
+	}
+
+	/**
+	 * Stage the content of a file.
+	 * @param path the path of the file relative to the repository root
+	 */
+	public void write(String path, byte[] content) throws IOException
+	{
+		checkOpen();
+		stage(path, FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, content));
+	}
+
+	/**
+	 * Stage the content of a file read from a stream, the stream isn't closed.
+	 * @param path the path of the file relative to the repository root
+	 * @param length the number of bytes to read from the stream
+	 */
+	public void write(String path, InputStream content, long length) throws IOException
+	{
+		checkOpen();
+		stage(path, FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, length, content));
+	}
+
+	/**
+	 * Open a stream whose content is staged for the file when it is closed.
+	 * @param path the path of the file relative to the repository root
+	 * @param append start with the current content of the file
+	 */
+	public OutputStream openOutputStream(final String path, boolean append) throws IOException
+	{
+		checkOpen();
+		OutputStream outputStream = new GitBlobOutputStream(repository)
+		{
+			@Override
+			protected void insert(InputStream content, long contentLength) throws IOException
+			{
+				GitTransaction.this.write(path, content, contentLength);
+			}
+		};
+
+		GitEntry entry = append ? lookup(path) : null;
+		if ( entry != null && entry.getFileType() == FileType.FILE )
+		{
+			repository.open(entry.getObjectId(), Constants.OBJ_BLOB).copyTo(outputStream);
+		}
+		return outputStream;
+	}
+
+	/**
+	 * Stage the deletion of a file or of every file of a folder.
+	 * @param path the path relative to the repository root
+	 */
+	public void delete(String path) throws IOException
+	{
+		checkOpen();
+		for (GitEntry entry : listFiles(path))
+		{
+			changes.put(entry.getPath(), null);
+		}
+	}
+
+	/**
+	 * Stage the move of a file or of every file of a folder.
+	 * @param source the current path relative to the repository root
+	 * @param destination the new path relative to the repository root
+	 */
+	public void rename(String source, String destination) throws IOException
+	{
+		checkOpen();
+		for (GitEntry entry : listFiles(source))
+		{
+			String path = destination + entry.getPath().substring(source.length());
+			changes.put(entry.getPath(), null);
+			stage(path, entry.getFileMode(), entry.getObjectId());
+		}
+	}
+
+	/**
+	 * Record the staged changes in a commit on top of the branch and move the branch to it. The transaction is closed
+	 * once committed.
+	 * @return the id of the new commit, or of the current one if nothing has been staged
+	 * @throws GitBranchMovedException if the branch has been updated since the transaction began
+	 */
+	public ObjectId commit(String message) throws IOException
+	{
+		checkOpen();
+		try
+		{
+			if ( changes.isEmpty() )
+			{
+				return base;
+			}
+
+			GitMetrics metrics = fileSystem.getMetricsRecorder();
+			long start = metrics.start();
+			ObjectId commitId = insertCommit(message);
+			RefUpdate refUpdate = repository.updateRef(branch);
+			refUpdate.setNewObjectId(commitId);
+			refUpdate.setExpectedOldObjectId(base == null ? ObjectId.zeroId() : base);
+			refUpdate.setRefLogMessage("commit: " + message, false);
+			RefUpdate.Result result = refUpdate.update();
+			if ( result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD )
+			{
+				String error = String.format("Could not update %s from %s : %s", branch, base == null ? null : base.name(), result);
+				if ( result == RefUpdate.Result.LOCK_FAILURE || result == RefUpdate.Result.REJECTED )
+				{
+					throw new GitBranchMovedException(branch, error);
+				}
+				throw new IOException(error);
+			}
+			metrics.committed(start);
+
+			fileSystem.committed(commitId, base, changes.keySet());
+			return commitId;
+		} finally
+		{
+			close();
+		}
+	}
+
+	/**
+	 * Close the transaction, the changes not committed are discarded.
+	 */
+	public void close()
+	{
+		if ( !closed )
+		{
+			closed = true;
+			inserter.release();
+			fileSystem.endTransaction(this);
+		}
+	}
+
+	/**
+	 * Stage a file whose content is already in the object database.
+	 */
+	void write(String path, FileMode fileMode, ObjectId blobId)
+	{
+		checkOpen();
+		stage(path, fileMode, blobId);
+	}
+
+	/**
+	 * @param committed the entry of the path in the tree of the file system, null if there is none
+	 * @return the entry of the path once the staged changes are applied, a folder whose files are all deleted is gone
+	 */
+	GitEntry getEntry(String path, GitEntry committed) throws IOException
+	{
+		if ( changes.containsKey(path) )
+		{
+			return changes.get(path);
+		}
+		if ( (committed == null || committed.getFileMode() != FileMode.TREE) && hasStagedFiles(path + "/") )
+		{
+			return new GitEntry(path, FileMode.TREE, ObjectId.zeroId());
+		}
+		if ( committed != null && isEmptied(committed) )
+		{
+			return null;
+		}
+		return committed;
+	}
+
+	/**
+	 * @param committed the entries of the folder in the tree of the file system, null if it isn't a folder
+	 * @return the entries of the folder once the staged changes are applied, null if it isn't a folder or if all its
+	 *         files are deleted
+	 */
+	List<GitEntry> listEntries(String path, List<GitEntry> committed) throws IOException
+	{
+		String prefix = path.length() == 0 ? "" : path + "/";
+		SortedMap<String, GitEntry> staged = changes.subMap(prefix, prefix + Character.MAX_VALUE);
+		if ( staged.isEmpty() )
+		{
+			return committed;
+		}
+
+		Map<String, GitEntry> entries = new TreeMap<String, GitEntry>();
+		if ( committed != null )
+		{
+			for (GitEntry entry : committed)
+			{
+				entries.put(entry.getName(), entry);
+			}
+		}
+		for (Map.Entry<String, GitEntry> change : staged.entrySet())
+		{
+			String relativePath = change.getKey().substring(prefix.length());
+			int slash = relativePath.indexOf('/');
+			if ( slash < 0 && change.getValue() == null )
+			{
+				entries.remove(relativePath);
+			} else if ( slash < 0 )
+			{
+				entries.put(relativePath, change.getValue());
+			} else if ( change.getValue() != null )
+			{
+				String name = relativePath.substring(0, slash);
+				GitEntry entry = entries.get(name);
+				if ( entry == null || entry.getFileMode() != FileMode.TREE )
+				{
+					entries.put(name, new GitEntry(prefix + name, FileMode.TREE, ObjectId.zeroId()));
+				}
+			} else
+			{
+				String name = relativePath.substring(0, slash);
+				GitEntry entry = entries.get(name);
+				if ( entry != null && isEmptied(entry) )
+				{
+					entries.remove(name);
+				}
+			}
+		}
+		// git keeps no empty folder but the root
+		return entries.isEmpty() && (committed == null || path.length() > 0) ? null : new ArrayList<GitEntry>(entries.values());
+	}
+
+	private boolean hasStagedFiles(String prefix)
+	{
+		for (GitEntry staged : changes.subMap(prefix, prefix + Character.MAX_VALUE).values())
+		{
+			if ( staged != null )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the entry is a committed folder whose files are all staged as deleted, and nothing staged
+	 *         instead
+	 */
+	private boolean isEmptied(GitEntry folder) throws IOException
+	{
+		String prefix = folder.getPath() + "/";
+		if ( folder.getFileMode() != FileMode.TREE || changes.subMap(prefix, prefix + Character.MAX_VALUE).isEmpty() || hasStagedFiles(prefix) )
+		{
+			return false;
+		}
+
+		fileSystem.getMetricsRecorder().treeWalked();
+		TreeWalk treeWalk = new TreeWalk(repository);
+		try
+		{
+			treeWalk.addTree(folder.getObjectId());
+			treeWalk.setRecursive(true);
+			while (treeWalk.next())
+			{
+				if ( !changes.containsKey(prefix + treeWalk.getPathString()) )
+				{
+					return false;
+				}
+			}
+			return true;
+		} finally
+		{
+			treeWalk.release();
+		}
+	}
+
+	private ObjectId insertCommit(String message) throws IOException
+	{
+		DirCache index = DirCache.newInCore();
+		DirCacheBuilder builder = index.builder();
+		if ( base != null )
+		{
+			ObjectReader reader = repository.newObjectReader();
+			try
+			{
+				builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, base.getTree());
+			} finally
+			{
+				reader.release();
+			}
+		}
+		builder.finish();
+
+		DirCacheEditor editor = index.editor();
+		for (Map.Entry<String, GitEntry> change : changes.entrySet())
+		{
+			final GitEntry entry = change.getValue();
+			if ( entry == null )
+			{
+				editor.add(new DirCacheEditor.DeletePath(change.getKey()));
+			} else
+			{
+				editor.add(new DirCacheEditor.PathEdit(entry.getPath())
+				{
+					@Override
+					public void apply(DirCacheEntry dirCacheEntry)
+					{
+						dirCacheEntry.setFileMode(entry.getFileMode());
+						dirCacheEntry.setObjectId(entry.getObjectId());
+					}
+				});
+			}
+		}
+		editor.finish();
+
+		CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(index.writeTree(inserter));
+		if ( base != null )
+		{
+			commit.setParentId(base);
+		}
+		PersonIdent person = new PersonIdent(repository);
+		commit.setAuthor(person);
+		commit.setCommitter(person);
+		commit.setMessage(message);
+		ObjectId commitId = inserter.insert(commit);
+		inserter.flush();
+		return commitId;
+	}
+
+	private void stage(String path, FileMode fileMode, ObjectId objectId)
+	{
+		changes.put(path, new GitEntry(path, fileMode, objectId));
+	}
+
+	/**
+	 * @return the staged or committed entry of a path, null if there is none
+	 */
+	private GitEntry lookup(String path) throws IOException
+	{
+		if ( changes.containsKey(path) )
+		{
+			return changes.get(path);
+		}
+		if ( base == null )
+		{
+			return null;
+		}
+
+		TreeWalk treeWalk = TreeWalk.forPath(repository, path, base.getTree());
+		if ( treeWalk == null )
+		{
+			return null;
+		}
+		try
+		{
+			return new GitEntry(path, treeWalk.getFileMode(0), treeWalk.getObjectId(0));
+		} finally
+		{
+			treeWalk.release();
+		}
+	}
+
+	/**
+	 * @return the file at the path or the files under the folder at the path, staged ones included
+	 */
+	private List<GitEntry> listFiles(String path) throws IOException
+	{
+		List<GitEntry> files = new ArrayList<GitEntry>();
+		GitEntry entry = lookup(path);
+		if ( entry != null && entry.getFileMode() != FileMode.TREE )
+		{
+			files.add(entry);
+			return files;
+		}
+
+		String prefix = path + "/";
+		if ( base != null )
+		{
+			TreeWalk treeWalk = new TreeWalk(repository);
+			try
+			{
+				treeWalk.addTree(base.getTree());
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(PathFilter.create(path));
+				while (treeWalk.next())
+				{
+					if ( !changes.containsKey(treeWalk.getPathString()) )
+					{
+						files.add(new GitEntry(treeWalk.getPathString(), treeWalk.getFileMode(0), treeWalk.getObjectId(0)));
+					}
+				}
+			} finally
+			{
+				treeWalk.release();
+			}
+		}
+		for (GitEntry staged : changes.subMap(prefix, prefix + Character.MAX_VALUE).values())
+		{
+			if ( staged != null )
+			{
+				files.add(staged);
+			}
+		}
+		return files;
+	}
+
+	private void checkOpen()
+	{
+		if ( closed )
+		{
+			throw new IllegalStateException("The transaction is closed");
+		}
+	}
+}
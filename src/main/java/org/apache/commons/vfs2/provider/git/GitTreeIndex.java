@@ -0,0 +1,283 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.MutableObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Flat index of every path of a tree, built with a single walk so that path lookups don't parse tree objects again.
+ * <p>
+ * Entries are stored in tree walk (pre-)order in parallel arrays : the paths are kept encoded in one byte array and
+ * the object ids in another one, which keeps the footprint around a hundred bytes per path. Slot 0 is the root tree.
+ * A folder knows where its descendants end, so the children of a folder are a contiguous range of slots.
+ */
+final class GitTreeIndex
+{
+
+	static final int NOT_FOUND = -1;
+
+	static final long UNKNOWN_SIZE = -1;
+
+	private final int count;
+	private final byte[] paths;
+	private final int[] pathOffsets;
+	private final int[] modes;
+	private final byte[] objectIds;
+	private final int[] ends;
+	// filled lazily by the threads reading the index : an atomic array publishes the sizes, a long isn't even written
+	// atomically. Two threads may look up the same size, they both store the same value.
+	private final AtomicLongArray sizes;
+	private final int[] table;
+
+	private GitTreeIndex(int count, byte[] paths, int[] pathOffsets, int[] modes, byte[] objectIds, int[] ends)
+	{
+		this.count = count;
+		this.paths = paths;
+		this.pathOffsets = pathOffsets;
+		this.modes = modes;
+		this.objectIds = objectIds;
+		this.ends = ends;
+		this.sizes = new AtomicLongArray(count);
+		for (int slot = 0; slot < count; slot++)
+		{
+			sizes.set(slot, UNKNOWN_SIZE);
+		}
+		this.table = new int[tableSize(count)];
+
+		for (int slot = 0; slot < count; slot++)
+		{
+			int mask = table.length - 1;
+			int position = hash(paths, pathOffsets[slot], pathOffsets[slot + 1]) & mask;
+			while (table[position] != 0)
+			{
+				position = (position + 1) & mask;
+			}
+			table[position] = slot + 1;
+		}
+	}
+
+	/**
+	 * Walk the whole tree and index it.
+	 *
+	 * @return the index or null if the tree holds more than maxEntries paths
+	 */
+	static GitTreeIndex build(ObjectReader reader, ObjectId tree, int maxEntries) throws IOException
+	{
+		Builder builder = new Builder();
+		builder.add(new byte[0], FileMode.TREE.getBits(), tree, 0);
+
+		TreeWalk treeWalk = new TreeWalk(reader);
+		try
+		{
+			treeWalk.addTree(tree);
+			treeWalk.setRecursive(false);
+
+			MutableObjectId objectId = new MutableObjectId();
+			while (treeWalk.next())
+			{
+				if (builder.count >= maxEntries)
+				{
+					return null;
+				}
+
+				treeWalk.getObjectId(objectId, 0);
+				byte[] rawPath = Arrays.copyOf(treeWalk.getRawPath(), treeWalk.getPathLength());
+				builder.add(rawPath, treeWalk.getRawMode(0), objectId, treeWalk.getDepth() + 1);
+
+				if (treeWalk.isSubtree())
+				{
+					treeWalk.enterSubtree();
+				}
+			}
+		} finally
+		{
+			treeWalk.release();
+		}
+
+		return builder.build();
+	}
+
+	int size()
+	{
+		return count;
+	}
+
+	int find(String path)
+	{
+		byte[] rawPath = Constants.encode(path);
+		int mask = table.length - 1;
+		int position = hash(rawPath, 0, rawPath.length) & mask;
+		while (table[position] != 0)
+		{
+			int slot = table[position] - 1;
+			if (pathEquals(slot, rawPath))
+			{
+				return slot;
+			}
+			position = (position + 1) & mask;
+		}
+		return NOT_FOUND;
+	}
+
+	String getPath(int slot)
+	{
+		return new String(paths, pathOffsets[slot], pathOffsets[slot + 1] - pathOffsets[slot], Constants.CHARSET);
+	}
+
+	FileMode getFileMode(int slot)
+	{
+		return FileMode.fromBits(modes[slot]);
+	}
+
+	ObjectId getObjectId(int slot)
+	{
+		return ObjectId.fromRaw(objectIds, slot * Constants.OBJECT_ID_LENGTH);
+	}
+
+	GitEntry getEntry(int slot)
+	{
+		return new GitEntry(getPath(slot), getFileMode(slot), getObjectId(slot));
+	}
+
+	boolean isTree(int slot)
+	{
+		return FileMode.TREE.equals(modes[slot]);
+	}
+
+	/**
+	 * @return the slot following the last descendant of the given slot
+	 */
+	int getEnd(int slot)
+	{
+		return ends[slot];
+	}
+
+	long getSize(int slot)
+	{
+		return sizes.get(slot);
+	}
+
+	/**
+	 * Remember the size of the blob of a slot, safely published to the other threads reading the index.
+	 */
+	void setSize(int slot, long size)
+	{
+		sizes.set(slot, size);
+	}
+
+	private boolean pathEquals(int slot, byte[] rawPath)
+	{
+		int start = pathOffsets[slot];
+		int length = pathOffsets[slot + 1] - start;
+		if (length != rawPath.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; i++)
+		{
+			if (paths[start + i] != rawPath[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(byte[] buffer, int start, int end)
+	{
+		int hash = 0;
+		for (int i = start; i < end; i++)
+		{
+			hash = 31 * hash + buffer[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int tableSize(int count)
+	{
+		int size = 2;
+		while (size < count * 2)
+		{
+			size <<= 1;
+		}
+		return size;
+	}
+
+	private static final class Builder
+	{
+		private int count;
+		private byte[] paths = new byte[4096];
+		private int pathLength;
+		private int[] pathOffsets = new int[65];
+		private int[] modes = new int[64];
+		private byte[] objectIds = new byte[64 * Constants.OBJECT_ID_LENGTH];
+		private int[] ends = new int[64];
+		private int[] depths = new int[64];
+
+		private int[] openTrees = new int[16];
+		private int openTreeCount;
+
+		void add(byte[] rawPath, int mode, AnyObjectId objectId, int depth)
+		{
+			closeTrees(depth);
+			ensureCapacity(rawPath.length);
+
+			System.arraycopy(rawPath, 0, paths, pathLength, rawPath.length);
+			pathLength += rawPath.length;
+			pathOffsets[count + 1] = pathLength;
+			modes[count] = mode;
+			objectId.copyRawTo(objectIds, count * Constants.OBJECT_ID_LENGTH);
+			ends[count] = count + 1;
+			depths[count] = depth;
+
+			if (FileMode.TREE.equals(mode))
+			{
+				if (openTreeCount == openTrees.length)
+				{
+					openTrees = Arrays.copyOf(openTrees, openTreeCount * 2);
+				}
+				openTrees[openTreeCount++] = count;
+			}
+			count++;
+		}
+
+		GitTreeIndex build()
+		{
+			closeTrees(0);
+			return new GitTreeIndex(count, Arrays.copyOf(paths, pathLength), Arrays.copyOf(pathOffsets, count + 1), Arrays.copyOf(modes, count), Arrays.copyOf(objectIds, count * Constants.OBJECT_ID_LENGTH), Arrays.copyOf(ends, count));
+		}
+
+		private void closeTrees(int depth)
+		{
+			while (openTreeCount > 0 && depths[openTrees[openTreeCount - 1]] >= depth)
+			{
+				ends[openTrees[--openTreeCount]] = count;
+			}
+		}
+
+		private void ensureCapacity(int rawPathLength)
+		{
+			if (count == modes.length)
+			{
+				int capacity = count * 2;
+				pathOffsets = Arrays.copyOf(pathOffsets, capacity + 1);
+				modes = Arrays.copyOf(modes, capacity);
+				objectIds = Arrays.copyOf(objectIds, capacity * Constants.OBJECT_ID_LENGTH);
+				ends = Arrays.copyOf(ends, capacity);
+				depths = Arrays.copyOf(depths, capacity);
+			}
+			if (pathLength + rawPathLength > paths.length)
+			{
+				paths = Arrays.copyOf(paths, Math.max(paths.length * 2, pathLength + rawPathLength));
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * The parsed entries of a single tree object : the encoded name, the mode and the object id of each child, in the
+ * order of the tree. A tree never changes, so its listing is shared by all the commits holding it.
+ */
+final class GitTreeListing
+{
+
+	static final int NOT_FOUND = -1;
+
+	// rough footprint of the arrays and of an entry, for the memory budget of the cache
+	private static final int OVERHEAD = 64;
+	private static final int ENTRY_OVERHEAD = 16 + 4 + Constants.OBJECT_ID_LENGTH;
+
+	private final byte[][] names;
+	private final int[] modes;
+	private final byte[] objectIds;
+
+	private GitTreeListing(byte[][] names, int[] modes, byte[] objectIds)
+	{
+		this.names = names;
+		this.modes = modes;
+		this.objectIds = objectIds;
+	}
+
+	static GitTreeListing read(ObjectReader reader, AnyObjectId treeId) throws IOException
+	{
+		List<byte[]> names = new ArrayList<byte[]>();
+		int[] modes = new int[16];
+		byte[] objectIds = new byte[16 * Constants.OBJECT_ID_LENGTH];
+
+		CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId);
+		for (int count = 0; !parser.eof(); count++, parser.next())
+		{
+			if (count == modes.length)
+			{
+				modes = Arrays.copyOf(modes, count * 2);
+				objectIds = Arrays.copyOf(objectIds, count * 2 * Constants.OBJECT_ID_LENGTH);
+			}
+			names.add(Arrays.copyOf(parser.getEntryPathBuffer(), parser.getEntryPathLength()));
+			modes[count] = parser.getEntryRawMode();
+			parser.getEntryObjectId().copyRawTo(objectIds, count * Constants.OBJECT_ID_LENGTH);
+		}
+
+		int count = names.size();
+		return new GitTreeListing(names.toArray(new byte[count][]), Arrays.copyOf(modes, count), Arrays.copyOf(objectIds, count * Constants.OBJECT_ID_LENGTH));
+	}
+
+	int size()
+	{
+		return names.length;
+	}
+
+	/**
+	 * @return the approximate number of bytes held by this listing
+	 */
+	int getWeight()
+	{
+		int weight = OVERHEAD;
+		for (byte[] name : names)
+		{
+			weight += ENTRY_OVERHEAD + name.length;
+		}
+		return weight;
+	}
+
+	/**
+	 * Find a child with a binary search in the order of git, where a folder sorts as its name followed by a slash.
+	 * @return the slot of the child or {@link #NOT_FOUND}
+	 */
+	int find(String name)
+	{
+		byte[] rawName = Constants.encode(name);
+		int slot = search(rawName, false);
+		return slot != NOT_FOUND ? slot : search(rawName, true);
+	}
+
+	String getName(int slot)
+	{
+		return RawParseUtils.decode(names[slot]);
+	}
+
+	FileMode getFileMode(int slot)
+	{
+		return FileMode.fromBits(modes[slot]);
+	}
+
+	ObjectId getObjectId(int slot)
+	{
+		return ObjectId.fromRaw(objectIds, slot * Constants.OBJECT_ID_LENGTH);
+	}
+
+	/**
+	 * @param folderPath the path of the tree relative to the repository root, the empty string for the root
+	 */
+	GitEntry getEntry(int slot, String folderPath)
+	{
+		String name = getName(slot);
+		return new GitEntry(folderPath.length() == 0 ? name : folderPath + "/" + name, getFileMode(slot), getObjectId(slot));
+	}
+
+	/**
+	 * @param folderPath the path of the tree relative to the repository root, the empty string for the root
+	 */
+	List<GitEntry> getEntries(String folderPath)
+	{
+		List<GitEntry> entries = new ArrayList<GitEntry>(names.length);
+		for (int slot = 0; slot < names.length; slot++)
+		{
+			entries.add(getEntry(slot, folderPath));
+		}
+		return entries;
+	}
+
+	private int search(byte[] rawName, boolean tree)
+	{
+		int low = 0;
+		int high = names.length - 1;
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			int comparison = compare(names[middle], FileMode.TREE.equals(modes[middle]), rawName, tree);
+			if (comparison < 0)
+			{
+				low = middle + 1;
+			} else if (comparison > 0)
+			{
+				high = middle - 1;
+			} else
+			{
+				return middle;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	private static int compare(byte[] a, boolean aTree, byte[] b, boolean bTree)
+	{
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++)
+		{
+			int difference = (a[i] & 0xff) - (b[i] & 0xff);
+			if (difference != 0)
+			{
+				return difference;
+			}
+		}
+		if (a.length == b.length)
+		{
+			return aTree == bTree ? 0 : aTree ? 1 : -1;
+		}
+		int aNext = a.length > length ? a[length] & 0xff : aTree ? '/' : 0;
+		int bNext = b.length > length ? b[length] & 0xff : bTree ? '/' : 0;
+		return aNext - bNext;
+	}
+}
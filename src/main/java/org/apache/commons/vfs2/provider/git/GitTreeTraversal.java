@@ -0,0 +1,260 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Walk a tree on a fork join pool : each subtree is read by its own task, with the object reader of the thread running
+ * it, so that the trees are inflated on all the threads of the pool.
+ * <p>
+ * Unordered, the tasks give their files to the visitor as soon as they read them. Ordered, the tasks keep their files
+ * and the calling thread gives them to the visitor in the order of the tree, waiting for each subtree in turn : the
+ * calling thread starts the subtrees a bounded number ahead of the one it visits, and drops the files once visited.
+ */
+final class GitTreeTraversal
+{
+
+	// the subtrees read ahead of the visit per thread of the pool, when ordered
+	private static final int READ_AHEAD_PER_THREAD = 4;
+
+	private final GitFileSystem fileSystem;
+	private final Repository repository;
+	private final GitFileVisitor visitor;
+	private final boolean ordered;
+	// the reader of each thread of the pool for this traversal, all released at its end
+	private final ThreadLocal<ObjectReader> reader = new ThreadLocal<ObjectReader>();
+	private final Queue<ObjectReader> readers = new ConcurrentLinkedQueue<ObjectReader>();
+	// the tasks started and not done, waited for at the end of the traversal before their readers are released
+	private final Set<SubtreeTask> running = Collections.newSetFromMap(new ConcurrentHashMap<SubtreeTask, Boolean>());
+	private ForkJoinPool pool;
+	private int readAhead;
+	// the subtrees started and not visited yet, when ordered
+	private int pending;
+
+	GitTreeTraversal(GitFileSystem fileSystem, Repository repository, GitFileVisitor visitor, boolean ordered)
+	{
+		this.fileSystem = fileSystem;
+		this.repository = repository;
+		this.visitor = visitor;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Visit the files and folders under a folder, not the folder itself.
+	 */
+	void traverse(GitEntry folder, ForkJoinPool pool) throws IOException
+	{
+		this.pool = pool;
+		this.readAhead = READ_AHEAD_PER_THREAD * pool.getParallelism();
+		try
+		{
+			SubtreeTask root = new SubtreeTask(folder);
+			if ( ordered )
+			{
+				start(root);
+				visit(root);
+			} else
+			{
+				running.add(root);
+				pool.invoke(root);
+			}
+		} catch (RuntimeException e)
+		{
+			throw unwrap(e);
+		} finally
+		{
+			// the tasks still running after a failure, or read ahead, use the readers
+			while (!running.isEmpty())
+			{
+				for (SubtreeTask task : running)
+				{
+					task.cancel(false);
+					task.quietlyJoin();
+					running.remove(task);
+				}
+			}
+			ObjectReader objectReader;
+			while ((objectReader = readers.poll()) != null)
+			{
+				objectReader.release();
+			}
+		}
+	}
+
+	private void start(SubtreeTask task)
+	{
+		running.add(task);
+		task.started = true;
+		pending++;
+		pool.execute(task);
+	}
+
+	private void visit(SubtreeTask task) throws IOException
+	{
+		task.join();
+		pending--;
+		List<Object> items = task.items;
+		startAhead(items, 0);
+		for (int index = 0; index < items.size(); index++)
+		{
+			Object item = items.get(index);
+			// a visited file isn't held until the end of the traversal
+			items.set(index, null);
+			if ( item instanceof SubtreeTask )
+			{
+				SubtreeTask subtree = (SubtreeTask) item;
+				if ( !subtree.started )
+				{
+					start(subtree);
+				}
+				visit(subtree);
+				startAhead(items, index + 1);
+			} else
+			{
+				visitor.visit((GitFile) item);
+			}
+		}
+		items.clear();
+	}
+
+	/**
+	 * Start the next subtrees of a folder, as long as the subtrees read ahead stay under the bound.
+	 */
+	private void startAhead(List<Object> items, int from)
+	{
+		for (int index = from; index < items.size() && pending < readAhead; index++)
+		{
+			Object item = items.get(index);
+			if ( item instanceof SubtreeTask && !((SubtreeTask) item).started )
+			{
+				start((SubtreeTask) item);
+			}
+		}
+	}
+
+	/**
+	 * @return the reader of the current thread, created on its first subtree
+	 */
+	private ObjectReader getReader()
+	{
+		ObjectReader objectReader = reader.get();
+		if ( objectReader == null )
+		{
+			objectReader = repository.newObjectReader();
+			reader.set(objectReader);
+			readers.add(objectReader);
+		}
+		return objectReader;
+	}
+
+	/**
+	 * @return the IOException thrown by a task, the fork join pool may rethrow it wrapped in another exception
+	 */
+	private static IOException unwrap(RuntimeException e)
+	{
+		for (Throwable cause = e; cause != null; cause = cause.getCause())
+		{
+			if ( cause instanceof IOException )
+			{
+				return (IOException) cause;
+			}
+		}
+		throw e;
+	}
+
+	private final class SubtreeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final GitEntry folder;
+		// the files and the tasks of the subtrees in the order of the tree, when ordered
+		private final List<Object> items = new ArrayList<Object>();
+		// submitted to the pool, only used by the visiting thread
+		private boolean started;
+
+		SubtreeTask(GitEntry folder)
+		{
+			this.folder = folder;
+		}
+
+		@Override
+		protected void compute()
+		{
+			try
+			{
+				walk();
+			} catch (IOException e)
+			{
+				throw new TraversalException(e);
+			} finally
+			{
+				running.remove(this);
+			}
+		}
+
+		private void walk() throws IOException
+		{
+			List<SubtreeTask> subtrees = new ArrayList<SubtreeTask>();
+			fileSystem.getMetricsRecorder().treeWalked();
+			// not released with the walk, the reader serves the next subtrees of the thread
+			TreeWalk treeWalk = new TreeWalk(getReader());
+			treeWalk.addTree(folder.getObjectId());
+			while (treeWalk.next())
+			{
+				String path = folder.getPath().length() == 0 ? treeWalk.getNameString() : folder.getPath() + "/" + treeWalk.getNameString();
+				GitEntry entry = new GitEntry(path, treeWalk.getFileMode(0), treeWalk.getObjectId(0));
+				GitFile file = fileSystem.resolveEntry(entry);
+				if ( ordered )
+				{
+					items.add(file);
+				} else
+				{
+					visitor.visit(file);
+				}
+
+				if ( treeWalk.isSubtree() )
+				{
+					SubtreeTask subtree = new SubtreeTask(entry);
+					if ( ordered )
+					{
+						// started by the visiting thread
+						items.add(subtree);
+					} else
+					{
+						running.add(subtree);
+						subtree.fork();
+						subtrees.add(subtree);
+					}
+				}
+			}
+
+			for (ForkJoinTask<Void> subtree : subtrees)
+			{
+				subtree.join();
+			}
+		}
+	}
+
+	private static final class TraversalException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		TraversalException(IOException cause)
+		{
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package org.apache.commons.vfs2.provider.git;
+
+/**
+ * Where the files written outside of a {@link GitTransaction} go before being committed.
+ * @see GitFileSystemConfigBuilder#setWriteMode(org.apache.commons.vfs2.FileSystemOptions, GitWriteMode)
+ */
+public enum GitWriteMode
+{
+	/**
+	 * Write the file in the working tree, add it to the index and commit the index. The repository must have a
+	 * working tree.
+	 */
+	WORK_TREE,
+
+	/**
+	 * Write the content straight to the object database and commit each change on the branch of the file system
+	 * without touching the index or the working tree, as a {@link GitTransaction} of one change. Works on bare
+	 * repositories.
+	 */
+	OBJECT_DATABASE
+}
@@ -1,16 +1,35 @@
 package org.apache.commons.vfs2.provider.local;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.util.RandomAccessMode;
 
+/**
+ * Random access over a temporary copy of a blob, the copy is deleted when the content is closed.
+ */
 public class GitFileRandomAccessContent extends LocalFileRandomAccessContent
 {
 
+	private final File localFile;
+
 	public GitFileRandomAccessContent(File localFile, RandomAccessMode mode) throws FileSystemException
 	{
 		super(localFile, mode);
+		this.localFile = localFile;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			super.close();
+		} finally
+		{
+			localFile.delete();
+		}
 	}
 
 }
\ No newline at end of file
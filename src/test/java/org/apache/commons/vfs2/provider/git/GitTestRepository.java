@@ -0,0 +1,166 @@
+package org.apache.commons.vfs2.provider.git;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.StandardFileSystemManager;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.rules.ExternalResource;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * A git repository in a temporary directory, created before each test and deleted after it, with the file system
+ * manager of the test, created on first use and closed after the test.
+ */
+public final class GitTestRepository extends ExternalResource
+{
+
+	private final boolean bare;
+	private File directory;
+	private Repository repository;
+	private Git git;
+	private StandardFileSystemManager manager;
+
+	/**
+	 * A repository with a work tree.
+	 */
+	public GitTestRepository()
+	{
+		this(false);
+	}
+
+	private GitTestRepository(boolean bare)
+	{
+		this.bare = bare;
+	}
+
+	/**
+	 * A repository without work tree, the temporary directory is the git directory.
+	 */
+	public static GitTestRepository bare()
+	{
+		return new GitTestRepository(true);
+	}
+
+	@Override
+	protected void before() throws IOException
+	{
+		directory = File.createTempFile("git", "test");
+		directory.delete();
+		directory.mkdirs();
+
+		if ( bare )
+		{
+			repository = new RepositoryBuilder().setGitDir(directory).setBare().build();
+			repository.create(true);
+		} else
+		{
+			repository = new RepositoryBuilder().setGitDir(new File(directory, Constants.DOT_GIT)).setWorkTree(directory).build();
+			repository.create();
+		}
+		git = new Git(repository);
+	}
+
+	@Override
+	protected void after()
+	{
+		if ( manager != null )
+		{
+			manager.close();
+		}
+		repository.close();
+		try
+		{
+			FileUtils.forceDelete(directory);
+		} catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * @return the work tree, null for a bare repository
+	 */
+	public File getWorkTree()
+	{
+		return bare ? null : directory;
+	}
+
+	public File getGitDir()
+	{
+		return repository.getDirectory();
+	}
+
+	public Repository getRepository()
+	{
+		return repository;
+	}
+
+	public Git getGit()
+	{
+		return git;
+	}
+
+	public StandardFileSystemManager getManager() throws FileSystemException
+	{
+		if ( manager == null )
+		{
+			manager = new StandardFileSystemManager();
+			manager.init();
+		}
+		return manager;
+	}
+
+	/**
+	 * Write a file of the work tree and add it to the index.
+	 */
+	public void write(String path, String content) throws IOException, GitAPIException
+	{
+		write(path, content.getBytes(Charsets.UTF_8));
+	}
+
+	/**
+	 * Write a file of the work tree and add it to the index.
+	 */
+	public void write(String path, byte[] content) throws IOException, GitAPIException
+	{
+		File file = new File(directory, path);
+		file.getParentFile().mkdirs();
+		Files.write(content, file);
+		git.add().addFilepattern(path).call();
+	}
+
+	public RevCommit commit(String message) throws GitAPIException
+	{
+		return git.commit().setMessage(message).call();
+	}
+
+	/**
+	 * Resolve the root of the file system reading this repository.
+	 * @param options the options of the file system, its git directory is set to this repository
+	 */
+	public FileObject resolveRoot(FileSystemOptions options) throws FileSystemException
+	{
+		GitFileSystemConfigBuilder.getInstance().setGitDirectory(options, getGitDir());
+		return getManager().resolveFile("git:/", options);
+	}
+
+	/**
+	 * @see #resolveRoot(FileSystemOptions)
+	 */
+	public GitFileSystem resolveFileSystem(FileSystemOptions options) throws FileSystemException
+	{
+		return (GitFileSystem) resolveRoot(options).getFileSystem();
+	}
+}
@@ -0,0 +1,124 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.Selectors;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestGitBareRepository
+{
+
+	@Rule
+	public final GitTestRepository repository = GitTestRepository.bare();
+
+	@Test
+	public void testWriteWithoutWorkTree() throws Exception
+	{
+		FileObject root = resolveRoot();
+		assertThat(root.getChildren()).isEmpty();
+
+		write(root.resolveFile("folder/large.bin"), new byte[100]);
+		write(root.resolveFile("folder/small.txt"), "small".getBytes());
+		root.resolveFile("folder/small.txt").moveTo(root.resolveFile("moved.txt"));
+
+		FileObject appended = root.resolveFile("moved.txt");
+		OutputStream outputStream = appended.getContent().getOutputStream(true);
+		outputStream.write(" and appended".getBytes());
+		outputStream.close();
+
+		root.resolveFile("folder/large.bin").delete();
+
+		List<RevCommit> commits = Lists.newArrayList(repository.getGit().log().call());
+		assertThat(commits).hasSize(5);
+		assertThat(commits.get(0).getFullMessage()).isEqualTo("Delete folder/large.bin");
+
+		assertThat(root.resolveFile("folder").exists()).isFalse();
+		assertThat(read(root.resolveFile("moved.txt"))).isEqualTo("small and appended".getBytes());
+	}
+
+	@Test
+	public void testAnEmptyBranchIsReadWithoutWriting() throws Exception
+	{
+		FileObject root = resolveRoot();
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		File objects = new File(repository.getGitDir(), "objects");
+		int objectFiles = FileUtils.listFiles(objects, null, true).size();
+
+		assertThat(root.getChildren()).isEmpty();
+		assertThat(root.findFiles(Selectors.SELECT_ALL)).hasSize(1);
+		assertThat(root.findFiles(new GitFileSelector("**/*.txt"))).isEmpty();
+		assertThat(root.resolveFile("missing.txt").exists()).isFalse();
+		assertThat(fileSystem.getFileTypes(Arrays.asList("", "missing.txt")).values()).containsOnly(FileType.FOLDER, FileType.IMAGINARY);
+		assertThat(fileSystem.readFiles(Arrays.asList("missing.txt"))).isEmpty();
+		fileSystem.traverse("", new GitFileVisitor()
+		{
+			@Override
+			public void visit(GitFile file)
+			{
+				throw new AssertionError(file);
+			}
+		}, true);
+		assertThat(fileSystem.refreshTree()).isFalse();
+		assertThat(FileUtils.listFiles(objects, null, true)).hasSize(objectFiles);
+
+		// the first commit of the branch
+		write(root.resolveFile("file.txt"), "content".getBytes());
+		assertThat(root.getChildren()).hasSize(1);
+	}
+
+	@Test
+	public void testLargeContentIsSpilledToATemporaryFile() throws Exception
+	{
+		FileObject root = resolveRoot();
+
+		byte[] large = new byte[GitBlobOutputStream.MEMORY_THRESHOLD * 2 + 10];
+		new Random(42).nextBytes(large);
+		write(root.resolveFile("large.bin"), large);
+
+		assertThat(read(root.resolveFile("large.bin"))).isEqualTo(large);
+		for (String name : new File(repository.getGitDir(), "objects").list())
+		{
+			assertThat(name).doesNotMatch("vfs-git.*\\.tmp");
+		}
+		assertThat(repository.getRepository().resolve(Constants.HEAD)).isNotNull();
+	}
+
+	private FileObject resolveRoot() throws IOException
+	{
+		return repository.getManager().resolveFile("git://" + repository.getGitDir().getAbsolutePath(), new FileSystemOptions());
+	}
+
+	private void write(FileObject file, byte[] content) throws IOException
+	{
+		OutputStream outputStream = file.getContent().getOutputStream();
+		try
+		{
+			outputStream.write(content);
+		} finally
+		{
+			outputStream.close();
+		}
+	}
+
+	private byte[] read(FileObject file) throws IOException
+	{
+		return IOUtils.toByteArray(file.getContent().getInputStream());
+	}
+}
@@ -0,0 +1,118 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestGitBatchLookup
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			repository.write("folder" + i % 10 + "/sub/file" + i + ".txt", "content " + i);
+		}
+		repository.write("file.txt", "content");
+		repository.commit("first");
+	}
+
+	@Test
+	public void testThePathsAreCheckedWithASingleWalk() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, 0);
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		GitFileSystem fileSystem = repository.resolveFileSystem(options);
+		assertThat(fileSystem.getTreeIndex()).isNull();
+		long treeWalks = fileSystem.getMetrics().getTreeWalks();
+
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < 200; i++)
+		{
+			paths.add("folder" + i % 10 + "/sub/file" + i + ".txt");
+		}
+		paths.addAll(Arrays.asList("", "folder3", "folder3/sub", "file.txt", "file.txt/child", "folder3/missing"));
+		Map<String, FileType> types = fileSystem.getFileTypes(paths);
+		assertThat(fileSystem.getMetrics().getTreeWalks() - treeWalks).isEqualTo(1);
+
+		assertThat(Lists.newArrayList(types.keySet())).isEqualTo(paths);
+		for (int i = 0; i < 200; i++)
+		{
+			assertThat(types.get("folder" + i % 10 + "/sub/file" + i + ".txt")).isEqualTo(i < 100 ? FileType.FILE : FileType.IMAGINARY);
+		}
+		assertThat(types.get("")).isEqualTo(FileType.FOLDER);
+		assertThat(types.get("folder3")).isEqualTo(FileType.FOLDER);
+		assertThat(types.get("folder3/sub")).isEqualTo(FileType.FOLDER);
+		assertThat(types.get("file.txt")).isEqualTo(FileType.FILE);
+		assertThat(types.get("file.txt/child")).isEqualTo(FileType.IMAGINARY);
+		assertThat(types.get("folder3/missing")).isEqualTo(FileType.IMAGINARY);
+	}
+
+	@Test
+	public void testTheEntriesMatchTheSingleLookups() throws Exception
+	{
+		for (int maxEntries : new int[] { 0, 1000 })
+		{
+			FileSystemOptions options = new FileSystemOptions();
+			GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, maxEntries);
+			GitFileSystem fileSystem = repository.resolveFileSystem(options);
+
+			List<String> paths = Arrays.asList("folder5/sub/file15.txt", "missing.txt", "folder5", "file.txt");
+			Map<String, GitEntry> entries = fileSystem.getEntries(paths);
+			assertThat(Lists.newArrayList(entries.keySet())).isEqualTo(Arrays.asList("folder5/sub/file15.txt", "folder5", "file.txt"));
+			for (GitEntry entry : entries.values())
+			{
+				GitEntry single = fileSystem.getEntry(entry.getPath());
+				assertThat(entry.getFileMode()).isEqualTo(single.getFileMode());
+				assertThat(entry.getObjectId()).isEqualTo(single.getObjectId());
+			}
+			assertThat(entries.get("folder5").getFileMode()).isEqualTo(FileMode.TREE);
+		}
+	}
+
+	@Test
+	public void testTheStagedChangesAreSeen() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, 0);
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		GitFileSystem fileSystem = repository.resolveFileSystem(options);
+		GitTransaction transaction = fileSystem.beginTransaction();
+		try
+		{
+			transaction.write("staged.txt", FileMode.REGULAR_FILE, ObjectId.fromString("d670460b4b4aece5915caf5c68d12f560a9fe3e4"));
+			transaction.delete("folder1/sub/file1.txt");
+			long treeWalks = fileSystem.getMetrics().getTreeWalks();
+			Map<String, FileType> types = fileSystem.getFileTypes(Arrays.asList("staged.txt", "file.txt", "folder1/sub/file1.txt", "folder1/sub/file11.txt"));
+			// the committed entries are read with a single walk
+			assertThat(fileSystem.getMetrics().getTreeWalks() - treeWalks).isEqualTo(1);
+			assertThat(types.get("staged.txt")).isEqualTo(FileType.FILE);
+			assertThat(types.get("file.txt")).isEqualTo(FileType.FILE);
+			assertThat(types.get("folder1/sub/file1.txt")).isEqualTo(FileType.IMAGINARY);
+			assertThat(types.get("folder1/sub/file11.txt")).isEqualTo(FileType.FILE);
+		} finally
+		{
+			transaction.close();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheStats;
+
+public class TestGitBlobCache
+{
+
+	private static final String LARGE_CONTENT = StringUtils.repeat("large", 1000);
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit first;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		repository.write("config.xml", "<config/>");
+		repository.write("large.txt", LARGE_CONTENT);
+		first = repository.commit("first");
+		repository.write("other.txt", "other");
+		repository.commit("second");
+	}
+
+	@Test
+	public void testBlobsAreSharedAcrossReferences() throws Exception
+	{
+		FileObject master = resolveRoot(Constants.MASTER, false);
+		FileObject previous = resolveRoot(first.getName(), false);
+		GitFileSystem fileSystem = (GitFileSystem) master.getFileSystem();
+		assertThat(previous.getFileSystem()).isNotSameAs(fileSystem);
+
+		assertThat(read(master.resolveFile("config.xml"))).isEqualTo("<config/>");
+		assertThat(read(previous.resolveFile("config.xml"))).isEqualTo("<config/>");
+		assertThat(read(previous.resolveFile("config.xml"))).isEqualTo("<config/>");
+
+		CacheStats stats = fileSystem.getBlobCacheStats();
+		assertThat(stats.missCount()).isEqualTo(1);
+		assertThat(stats.hitCount()).isEqualTo(2);
+		assertThat(((GitFileSystem) previous.getFileSystem()).getBlobCacheStats()).isEqualTo(stats);
+
+		// too large to be cached
+		assertThat(read(master.resolveFile("large.txt"))).isEqualTo(LARGE_CONTENT);
+		assertThat(read(master.resolveFile("large.txt"))).isEqualTo(LARGE_CONTENT);
+		assertThat(fileSystem.getBlobCacheStats().hitCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testOffHeapRandomAccess() throws Exception
+	{
+		FileObject file = resolveRoot(Constants.MASTER, true).resolveFile("config.xml");
+		for (int i = 0; i < 2; i++)
+		{
+			RandomAccessContent content = file.getContent().getRandomAccessContent(RandomAccessMode.READ);
+			try
+			{
+				content.seek(1);
+				assertThat((char) content.readByte()).isEqualTo('c');
+				assertThat(content.length()).isEqualTo("<config/>".length());
+			} finally
+			{
+				content.close();
+			}
+		}
+		assertThat(read(file)).isEqualTo("<config/>");
+		assertThat(((GitFileSystem) file.getFileSystem()).getBlobCacheStats().hitCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testDisabledByDefault() throws Exception
+	{
+		FileObject root = repository.resolveRoot(new FileSystemOptions());
+		assertThat(read(root.resolveFile("config.xml"))).isEqualTo("<config/>");
+		assertThat(((GitFileSystem) root.getFileSystem()).getBlobCacheStats()).isNull();
+	}
+
+	private FileObject resolveRoot(String reference, boolean offHeap) throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+		config.setReference(options, reference);
+		config.setBlobCacheSize(options, 1024 * 1024);
+		config.setBlobCacheMaxBlobSize(options, 1024);
+		config.setBlobCacheOffHeap(options, offHeap);
+		return repository.resolveRoot(options);
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+}
@@ -0,0 +1,130 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.GC;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+
+public class TestGitBulkRead
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (int i = 0; i < 200; i++)
+		{
+			repository.write("folder" + i % 10 + "/file" + i + ".txt", "content " + i);
+		}
+		repository.write("copy.txt", "content 0");
+		repository.commit("first");
+	}
+
+	@Test
+	public void testTheFilesAreReadWithASingleWalk() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, 0);
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		GitFileSystem fileSystem = repository.resolveFileSystem(options);
+		assertThat(fileSystem.getTreeIndex()).isNull();
+		long treeWalks = fileSystem.getMetrics().getTreeWalks();
+
+		Map<String, ByteBuffer> contents = fileSystem.readFiles(Arrays.asList("folder3/file13.txt", "copy.txt", "folder3", "missing.txt", "folder0/file0.txt",
+				"folder3/file13.txt"));
+		assertThat(fileSystem.getMetrics().getTreeWalks() - treeWalks).isEqualTo(1);
+		assertThat(Lists.newArrayList(contents.keySet())).isEqualTo(Arrays.asList("folder3/file13.txt", "copy.txt", "folder0/file0.txt"));
+		assertThat(toString(contents.get("folder3/file13.txt"))).isEqualTo("content 13");
+		assertThat(toString(contents.get("copy.txt"))).isEqualTo("content 0");
+		// the same blob, each path reads it from the start
+		assertThat(toString(contents.get("folder0/file0.txt"))).isEqualTo("content 0");
+		assertThat(contents.get("copy.txt").isReadOnly()).isTrue();
+	}
+
+	@Test
+	public void testThePackedFilesAreReadInParallel() throws Exception
+	{
+		new GC((FileRepository) repository.getRepository()).gc();
+		GitFileSystem fileSystem = repository.resolveFileSystem(new FileSystemOptions());
+
+		List<String> paths = new ArrayList<String>();
+		for (int i = 199; i >= 0; i--)
+		{
+			paths.add("folder" + i % 10 + "/file" + i + ".txt");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			Map<String, ByteBuffer> contents = fileSystem.readFiles(paths, executor);
+			assertThat(Lists.newArrayList(contents.keySet())).isEqualTo(paths);
+			for (int i = 0; i < 200; i++)
+			{
+				assertThat(toString(contents.get("folder" + i % 10 + "/file" + i + ".txt"))).isEqualTo("content " + i);
+			}
+		} finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testTheFilesAreReadThroughTheBlobCache() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setBlobCacheSize(options, 1024 * 1024);
+		GitFileSystem fileSystem = repository.resolveFileSystem(options);
+
+		List<String> paths = Arrays.asList("folder3/file13.txt", "copy.txt");
+		assertThat(toString(fileSystem.readFiles(paths).get("copy.txt"))).isEqualTo("content 0");
+		assertThat(fileSystem.getBlobCacheStats().missCount()).isEqualTo(2);
+		assertThat(toString(fileSystem.readFiles(paths).get("folder3/file13.txt"))).isEqualTo("content 13");
+		assertThat(fileSystem.getBlobCacheStats().hitCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testTheLargeFilesAreNotLoaded() throws Exception
+	{
+		repository.write("large.txt", Strings.repeat("large ", 100));
+		repository.commit("large");
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setRandomAccessBufferThreshold(options, 100);
+		GitFileSystem fileSystem = repository.resolveFileSystem(options);
+
+		assertThat(fileSystem.readFiles(Arrays.asList("copy.txt"))).hasSize(1);
+		try
+		{
+			fileSystem.readFiles(Arrays.asList("copy.txt", "large.txt"));
+			throw new AssertionError("The large file is loaded");
+		} catch (IOException e)
+		{
+			assertThat(e.getMessage()).contains("600 bytes");
+		}
+	}
+
+	private static String toString(ByteBuffer content)
+	{
+		byte[] bytes = new byte[content.remaining()];
+		content.get(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+}
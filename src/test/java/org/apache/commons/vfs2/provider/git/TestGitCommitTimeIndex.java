@@ -0,0 +1,121 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestGitCommitTimeIndex
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit[] commits = new RevCommit[3];
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (int i = 0; i < commits.length; i++)
+		{
+			repository.write("file.txt", "version " + i);
+			commits[i] = commit((i + 1) * 1000);
+		}
+	}
+
+	@Test
+	public void testFindTheCommitAtADate() throws Exception
+	{
+		RevWalk walk = new RevWalk(repository.getRepository());
+		try
+		{
+			GitCommitTimeIndex index = GitCommitTimeIndex.build(walk, commits[2], new NoIndex());
+			assertThat(index.size()).isEqualTo(3);
+			assertThat(index.find(999 * 1000L)).isNull();
+			assertThat(index.find(1000 * 1000L)).isEqualTo(commits[0]);
+			assertThat(index.find(2500 * 1000L)).isEqualTo(commits[1]);
+			assertThat(index.find(2999 * 1000L + 999)).isEqualTo(commits[1]);
+			assertThat(index.find(Long.MAX_VALUE)).isEqualTo(commits[2]);
+
+			// the branch advances
+			repository.write("file.txt", "version 3");
+			RevCommit newTip = commit(4000);
+			final GitCommitTimeIndex previous = index;
+			GitCommitTimeIndex extended = GitCommitTimeIndex.build(walk, newTip, new GitCommitTimeIndex.Lookup()
+			{
+				@Override
+				public GitCommitTimeIndex get(AnyObjectId tip)
+				{
+					return tip.equals(previous.getTip()) ? previous : null;
+				}
+			});
+			assertThat(extended.size()).isEqualTo(4);
+			assertThat(extended.getTip()).isEqualTo(newTip);
+			assertThat(extended.find(1500 * 1000L)).isEqualTo(commits[0]);
+			assertThat(extended.find(5000 * 1000L)).isEqualTo(newTip);
+		} finally
+		{
+			walk.release();
+		}
+	}
+
+	@Test
+	public void testSnapshotsAtDatesShareTheIndex() throws Exception
+	{
+		FileObject first = resolveRoot(new Date(1500 * 1000L));
+		FileObject second = resolveRoot(new Date(2500 * 1000L));
+		FileObject before = resolveRoot(new Date(500 * 1000L));
+
+		assertThat(read(first.resolveFile("file.txt"))).isEqualTo("version 0");
+		assertThat(read(second.resolveFile("file.txt"))).isEqualTo("version 1");
+		assertThat(before.getChildren()).isEmpty();
+		assertThat(((GitFileSystem) first.getFileSystem()).getBranch()).isNull();
+
+		GitRepositoryCaches caches = ((GitFileSystem) first.getFileSystem()).getRepositoryCaches();
+		assertThat(((GitFileSystem) second.getFileSystem()).getRepositoryCaches()).isSameAs(caches);
+		assertThat(caches.getCommitTimeIndex(commits[2]).size()).isEqualTo(3);
+		assertThat(caches.getCommitTimeIndex(commits[2])).isSameAs(caches.getCommitTimeIndex(commits[2]));
+	}
+
+	private FileObject resolveRoot(Date date) throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setCommitDate(options, date);
+		return repository.resolveRoot(options);
+	}
+
+	private RevCommit commit(long seconds) throws GitAPIException
+	{
+		PersonIdent person = new PersonIdent("author", "author@example.com", new Date(seconds * 1000), TimeZone.getTimeZone("UTC"));
+		return repository.getGit().commit().setMessage("at " + seconds).setAuthor(person).setCommitter(person).call();
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+
+	private static final class NoIndex implements GitCommitTimeIndex.Lookup
+	{
+		@Override
+		public GitCommitTimeIndex get(AnyObjectId tip)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileChangeEvent;
+import org.apache.commons.vfs2.FileListener;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestGitConcurrentRead
+{
+
+	private static final int FOLDERS = 10;
+	private static final int FILES_PER_FOLDER = 20;
+	private static final int THREADS = 8;
+	private static final int READS_PER_THREAD = 2000;
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (int folder = 0; folder < FOLDERS; folder++)
+		{
+			for (int file = 0; file < FILES_PER_FOLDER; file++)
+			{
+				repository.write(path(folder, file), content(folder, file));
+			}
+		}
+		repository.commit("first");
+	}
+
+	@Test
+	public void testManyThreadsReadASharedFileSystem() throws Exception
+	{
+		final FileObject root = repository.resolveRoot(new FileSystemOptions());
+		final GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+
+		final Queue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean reading = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+		try
+		{
+			List<Future<?>> readers = new ArrayList<Future<?>>();
+			for (int thread = 0; thread < THREADS; thread++)
+			{
+				final Random random = new Random(thread);
+				readers.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							start.await();
+							for (int read = 0; read < READS_PER_THREAD; read++)
+							{
+								int folder = random.nextInt(FOLDERS);
+								int file = random.nextInt(FILES_PER_FOLDER);
+								FileObject fileObject = root.resolveFile(path(folder, file));
+								assertThat(fileObject.getType()).isEqualTo(FileType.FILE);
+								assertThat(fileObject.getContent().getSize()).isEqualTo(content(folder, file).length());
+								assertThat(IOUtils.toString(fileObject.getContent().getInputStream(), Charsets.UTF_8.name())).isEqualTo(content(folder, file));
+								assertThat(fileSystem.getEntry("folder" + folder).getFileType()).isEqualTo(FileType.FOLDER);
+								assertThat(fileSystem.listEntries("folder" + folder)).hasSize(FILES_PER_FOLDER);
+							}
+						} catch (Throwable e)
+						{
+							errors.add(e);
+						}
+					}
+				}));
+			}
+
+			// the reference moves while the files are read : the readers switch to the new tree
+			Future<?> committer = executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						int commit = 0;
+						do
+						{
+							repository.write("other/file" + commit + ".txt", "other " + commit);
+							repository.commit("commit " + commit);
+							fileSystem.refreshTree();
+							commit++;
+						} while (reading.get());
+					} catch (Throwable e)
+					{
+						errors.add(e);
+					}
+				}
+			});
+
+			start.countDown();
+			for (Future<?> reader : readers)
+			{
+				reader.get(60, TimeUnit.SECONDS);
+			}
+			reading.set(false);
+			committer.get(60, TimeUnit.SECONDS);
+		} finally
+		{
+			executor.shutdownNow();
+		}
+
+		assertThat(errors).isEmpty();
+		assertThat(root.resolveFile("other").getChildren()).isNotEmpty();
+	}
+
+	@Test
+	public void testTheDirectReadsDontWaitForTheFileSystemLock() throws Exception
+	{
+		final FileObject root = repository.resolveRoot(new FileSystemOptions());
+		final GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		final InputStream input = root.resolveFile(path(0, 0)).getContent().getInputStream();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			Future<String> content;
+			synchronized (fileSystem)
+			{
+				// another thread holds the lock of the file system, as resolveFile does
+				content = executor.submit(new Callable<String>()
+				{
+					@Override
+					public String call() throws Exception
+					{
+						assertThat(fileSystem.getEntry("folder1").getFileType()).isEqualTo(FileType.FOLDER);
+						assertThat(fileSystem.listEntries("folder1")).hasSize(FILES_PER_FOLDER);
+						assertThat(fileSystem.getFileTypes(Arrays.asList(path(1, 1), "missing")).values()).containsOnly(FileType.FILE, FileType.IMAGINARY);
+						assertThat(fileSystem.readFiles(Arrays.asList(path(2, 2))).get(path(2, 2))).isEqualTo(ByteBuffer.wrap(content(2, 2).getBytes(Charsets.UTF_8)));
+						return IOUtils.toString(input, Charsets.UTF_8.name());
+					}
+				});
+				assertThat(content.get(30, TimeUnit.SECONDS)).isEqualTo(content(0, 0));
+			}
+		} finally
+		{
+			executor.shutdownNow();
+			input.close();
+		}
+	}
+
+	@Test
+	public void testTheRefreshNotifiesOutsideOfTheFileSystemLock() throws Exception
+	{
+		final FileObject root = repository.resolveRoot(new FileSystemOptions());
+		final GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		FileObject file = root.resolveFile(path(0, 0));
+		assertThat(file.exists()).isTrue();
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final Queue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+		try
+		{
+			// the listener waits for another thread which needs the lock of the file system
+			file.getFileSystem().addListener(file, new FileListener()
+			{
+				@Override
+				public void fileChanged(FileChangeEvent event) throws Exception
+				{
+					Future<FileType> type = executor.submit(new Callable<FileType>()
+					{
+						@Override
+						public FileType call() throws Exception
+						{
+							return root.resolveFile(path(0, 1)).getType();
+						}
+					});
+					try
+					{
+						assertThat(type.get(30, TimeUnit.SECONDS)).isEqualTo(FileType.FILE);
+					} catch (Throwable e)
+					{
+						errors.add(e);
+					}
+				}
+
+				@Override
+				public void fileCreated(FileChangeEvent event)
+				{
+				}
+
+				@Override
+				public void fileDeleted(FileChangeEvent event)
+				{
+				}
+			});
+			repository.write(path(0, 0), "changed");
+			repository.commit("change");
+			assertThat(fileSystem.refreshTree()).isTrue();
+		} finally
+		{
+			executor.shutdownNow();
+		}
+		assertThat(errors).isEmpty();
+	}
+
+	private static String path(int folder, int file)
+	{
+		return "folder" + folder + "/file" + file + ".txt";
+	}
+
+	private static String content(int folder, int file)
+	{
+		return "content of " + path(folder, file);
+	}
+}
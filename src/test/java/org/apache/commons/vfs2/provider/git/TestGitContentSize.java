@@ -0,0 +1,116 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.GC;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitContentSize
+{
+
+	private static final List<String> PATHS = Arrays.asList("folder/empty.txt", "folder/small.txt", "folder/large.bin", "folder/large-copy.bin");
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit commit;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		// larger than the streaming threshold, and stored as a delta of each other once packed
+		byte[] large = new byte[200 * 1024];
+		new Random(42).nextBytes(large);
+		byte[] largeCopy = Arrays.copyOf(large, large.length + 10);
+		largeCopy[1000]++;
+		repository.write("folder/empty.txt", new byte[0]);
+		repository.write("folder/small.txt", "small".getBytes());
+		repository.write("folder/large.bin", large);
+		repository.write("folder/large-copy.bin", largeCopy);
+		commit = repository.commit("first");
+	}
+
+	@Test
+	public void testTheSizesOfLooseBlobs() throws Exception
+	{
+		assertSizes(false);
+		assertSizes(true);
+	}
+
+	@Test
+	public void testTheSizesOfPackedBlobs() throws Exception
+	{
+		new GC((FileRepository) repository.getRepository()).gc();
+		assertSizes(false);
+		assertSizes(true);
+	}
+
+	@Test
+	public void testTheSizesArePrefetchedByTheListing() throws Exception
+	{
+		FileObject root = resolveRoot(true);
+		root.resolveFile("folder").getChildren();
+
+		// the loose objects are gone, the sizes can only come from the prefetch
+		for (String path : PATHS)
+		{
+			ObjectId objectId = getObjectId(path);
+			FileUtils.forceDelete(new File(repository.getGitDir(), "objects/" + objectId.name().substring(0, 2) + "/" + objectId.name().substring(2)));
+		}
+		for (String path : PATHS)
+		{
+			assertThat(root.resolveFile(path).getContent().getSize()).isEqualTo(new File(repository.getWorkTree(), path).length());
+		}
+	}
+
+	private void assertSizes(boolean prefetch) throws IOException
+	{
+		FileObject root = resolveRoot(prefetch);
+		root.resolveFile("folder").getChildren();
+		for (String path : PATHS)
+		{
+			long size = repository.getRepository().open(getObjectId(path), Constants.OBJ_BLOB).getSize();
+			assertThat(size).isEqualTo(new File(repository.getWorkTree(), path).length());
+			assertThat(root.resolveFile(path).getContent().getSize()).isEqualTo(size);
+		}
+		repository.getManager().closeFileSystem(root.getFileSystem());
+	}
+
+	private FileObject resolveRoot(boolean prefetch) throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setPrefetchContentSizes(options, prefetch);
+		// the sizes are looked up by blob, not kept by the tree index
+		GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, 0);
+		return repository.resolveRoot(options);
+	}
+
+	private ObjectId getObjectId(String path) throws IOException
+	{
+		TreeWalk treeWalk = TreeWalk.forPath(repository.getRepository(), path, commit.getTree());
+		try
+		{
+			return treeWalk.getObjectId(0);
+		} finally
+		{
+			treeWalk.release();
+		}
+	}
+}
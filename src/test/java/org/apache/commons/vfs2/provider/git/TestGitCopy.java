@@ -0,0 +1,110 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.Selectors;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+public class TestGitCopy
+{
+
+	@Rule
+	public final GitTestRepository repository = GitTestRepository.bare();
+
+	@Rule
+	public final GitTestRepository workTreeRepository = new GitTestRepository();
+
+	@Test
+	public void testCopyReusesTheBlobs() throws Exception
+	{
+		FileObject root = resolveRoot(new FileSystemOptions());
+		write(root.resolveFile("folder/first.txt"), "first");
+		write(root.resolveFile("folder/sub/second.txt"), "second");
+		write(root.resolveFile("copy/old.txt"), "old");
+
+		root.resolveFile("copy").copyFrom(root.resolveFile("folder"), Selectors.SELECT_ALL);
+		root.resolveFile("single.txt").copyFrom(root.resolveFile("folder/first.txt"), Selectors.SELECT_SELF);
+
+		List<RevCommit> commits = Lists.newArrayList(repository.getGit().log().call());
+		assertThat(commits).hasSize(5);
+		assertThat(commits.get(1).getFullMessage()).isEqualTo("Copy folder to copy");
+
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		assertThat(fileSystem.getEntry("copy/sub/second.txt").getObjectId()).isEqualTo(fileSystem.getEntry("folder/sub/second.txt").getObjectId());
+		assertThat(read(root.resolveFile("copy/first.txt"))).isEqualTo("first");
+		assertThat(read(root.resolveFile("single.txt"))).isEqualTo("first");
+		assertThat(root.resolveFile("copy/old.txt").exists()).isFalse();
+		assertThat(root.resolveFile("copy").getChildren()).hasSize(2);
+	}
+
+	@Test
+	public void testCopyToAnotherBranch() throws Exception
+	{
+		FileObject master = resolveRoot(new FileSystemOptions());
+		write(master.resolveFile("file.txt"), "content");
+
+		// the other branch starts from master
+		repository.getGit().branchCreate().setName("other").call();
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setReference(options, "refs/heads/other");
+		FileObject other = resolveRoot(options);
+
+		other.resolveFile("copied.txt").copyFrom(master.resolveFile("file.txt"), Selectors.SELECT_SELF);
+		assertThat(read(other.resolveFile("copied.txt"))).isEqualTo("content");
+		assertThat(master.resolveFile("copied.txt").exists()).isFalse();
+		assertThat(other.resolveFile("file.txt").exists()).isTrue();
+	}
+
+	@Test
+	public void testRenameInTheWorkTreeMovesTheIndexEntries() throws Exception
+	{
+		workTreeRepository.write("file.txt", "content");
+		workTreeRepository.write("folder/nested.txt", "nested");
+		workTreeRepository.commit("first");
+
+		FileObject root = workTreeRepository.resolveRoot(new FileSystemOptions());
+		root.resolveFile("file.txt").moveTo(root.resolveFile("renamed.txt"));
+		root.resolveFile("folder").moveTo(root.resolveFile("moved"));
+
+		assertThat(read(root.resolveFile("renamed.txt"))).isEqualTo("content");
+		assertThat(read(root.resolveFile("moved/nested.txt"))).isEqualTo("nested");
+		assertThat(root.resolveFile("file.txt").exists()).isFalse();
+		Status status = workTreeRepository.getGit().status().call();
+		assertThat(status.isClean()).isTrue();
+	}
+
+	private FileObject resolveRoot(FileSystemOptions options) throws IOException
+	{
+		return repository.getManager().resolveFile("git://" + repository.getGitDir().getAbsolutePath(), options);
+	}
+
+	private void write(FileObject file, String content) throws IOException
+	{
+		OutputStream outputStream = file.getContent().getOutputStream();
+		try
+		{
+			outputStream.write(content.getBytes(Charsets.UTF_8));
+		} finally
+		{
+			outputStream.close();
+		}
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+}
@@ -0,0 +1,114 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitDiff
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private GitFileSystem fileSystem;
+	private RevCommit first;
+	private RevCommit second;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		repository.write("unchanged/file.txt", "unchanged");
+		repository.write("folder/modified.txt", "content");
+		repository.write("folder/deleted.txt", "deleted");
+		repository.write("folder/renamed.txt", "renamed");
+		first = repository.commit("first");
+
+		repository.write("folder/modified.txt", "modified");
+		repository.write("folder/added.txt", "added");
+		repository.write("moved/renamed.txt", "renamed");
+		repository.getGit().rm().addFilepattern("folder/deleted.txt").addFilepattern("folder/renamed.txt").call();
+		second = repository.commit("second");
+
+		fileSystem = repository.resolveFileSystem(new FileSystemOptions());
+	}
+
+	@Test
+	public void testDiffTwoRevisions() throws Exception
+	{
+		List<GitDiffEntry> entries = fileSystem.diff(first.getName(), Constants.HEAD);
+		assertThat(describe(entries)).containsOnly("ADDED folder/added.txt", "DELETED folder/deleted.txt", "MODIFIED folder/modified.txt",
+				"RENAMED folder/renamed.txt moved/renamed.txt");
+
+		for (GitDiffEntry entry : entries)
+		{
+			if ( entry.getChangeType() == GitDiffEntry.ChangeType.MODIFIED )
+			{
+				assertThat(entry.getOldId()).isEqualTo(blobId(first, "folder/modified.txt"));
+				assertThat(entry.getNewId()).isEqualTo(blobId(second, "folder/modified.txt"));
+				assertThat(entry.getNewMode()).isEqualTo(FileMode.REGULAR_FILE);
+			} else if ( entry.getChangeType() == GitDiffEntry.ChangeType.ADDED )
+			{
+				assertThat(entry.getOldPath()).isNull();
+				assertThat(entry.getOldId()).isEqualTo(ObjectId.zeroId());
+				assertThat(entry.getOldMode()).isEqualTo(FileMode.MISSING);
+			}
+		}
+	}
+
+	@Test
+	public void testDiffWithPathFilters() throws Exception
+	{
+		assertThat(describe(fileSystem.diff(first.getName(), second.getName(), "folder/modified.txt", "unchanged"))).containsOnly("MODIFIED folder/modified.txt");
+		assertThat(describe(fileSystem.diff(first.getName(), second.getName(), "moved"))).containsOnly("ADDED moved/renamed.txt");
+		assertThat(fileSystem.diff(second.getName(), second.getName())).isEmpty();
+	}
+
+	@Test
+	public void testDiffFromTheEmptyTree() throws Exception
+	{
+		assertThat(describe(fileSystem.diff(null, first.getName()))).containsOnly("ADDED unchanged/file.txt", "ADDED folder/modified.txt", "ADDED folder/deleted.txt",
+				"ADDED folder/renamed.txt");
+	}
+
+	@Test(expected = FileSystemException.class)
+	public void testUnknownRevision() throws Exception
+	{
+		fileSystem.diff(first.getName(), "refs/heads/unknown");
+	}
+
+	private List<String> describe(List<GitDiffEntry> entries)
+	{
+		List<String> descriptions = new ArrayList<String>();
+		for (GitDiffEntry entry : entries)
+		{
+			descriptions.add(entry.toString());
+		}
+		return descriptions;
+	}
+
+	private ObjectId blobId(RevCommit commit, String path) throws IOException
+	{
+		TreeWalk treeWalk = TreeWalk.forPath(repository.getRepository(), path, commit.getTree());
+		try
+		{
+			return treeWalk.getObjectId(0);
+		} finally
+		{
+			treeWalk.release();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.util.FileObjectUtils;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.FileMode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitEntryIterator
+{
+
+	private static final int FILE_COUNT = 100;
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (int i = 0; i < FILE_COUNT; i++)
+		{
+			write(String.format("huge/file %03d.txt", i));
+		}
+		write("huge/sub/file.txt");
+		repository.commit("first");
+	}
+
+	@Test
+	public void testIterateTheTree() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, 0);
+		assertChildren(repository.resolveRoot(options));
+	}
+
+	@Test
+	public void testIterateTheTreeIndex() throws Exception
+	{
+		assertChildren(repository.resolveRoot(new FileSystemOptions()));
+	}
+
+	@Test
+	public void testCloseBeforeTheEnd() throws Exception
+	{
+		GitEntryIterator entries = getGitFile(repository.resolveRoot(new FileSystemOptions()).resolveFile("huge")).iterateChildren();
+		assertThat(entries.next().getName()).isEqualTo("file 000.txt");
+		entries.close();
+		assertThat(entries.hasNext()).isFalse();
+	}
+
+	@Test(expected = FileSystemException.class)
+	public void testIterateAFile() throws Exception
+	{
+		getGitFile(repository.resolveRoot(new FileSystemOptions()).resolveFile("huge/sub/file.txt")).iterateChildren();
+	}
+
+	private void assertChildren(FileObject root) throws IOException
+	{
+		FileObject folder = root.resolveFile("huge");
+		List<GitEntry> children = new ArrayList<GitEntry>();
+		GitEntryIterator entries = getGitFile(folder).iterateChildren();
+		try
+		{
+			while (entries.hasNext())
+			{
+				children.add(entries.next());
+			}
+		} finally
+		{
+			entries.close();
+		}
+
+		assertThat(children).hasSize(FILE_COUNT + 1);
+		assertThat(children.get(0).getPath()).isEqualTo("huge/file 000.txt");
+		assertThat(children.get(0).getFileMode()).isEqualTo(FileMode.REGULAR_FILE);
+		assertThat(children.get(FILE_COUNT).getPath()).isEqualTo("huge/sub");
+		assertThat(children.get(FILE_COUNT).getFileType()).isEqualTo(FileType.FOLDER);
+
+		FileObject[] files = folder.getChildren();
+		assertThat(files).hasSize(FILE_COUNT + 1);
+		assertThat(files[0].getName().getBaseName()).isEqualTo("file 000.txt");
+	}
+
+	private static GitFile getGitFile(FileObject file) throws FileSystemException
+	{
+		return (GitFile) FileObjectUtils.getAbstractFileObject(file);
+	}
+
+	private void write(String path) throws IOException, GitAPIException
+	{
+		repository.write(path, path);
+	}
+}
@@ -0,0 +1,115 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileDepthSelector;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.Selectors;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitFindFiles
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private FileObject root;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		write("pom.xml");
+		write("README.txt");
+		write("src/pom.xml");
+		write("src/main/config.xml");
+		write("src/main/java/Main.java");
+		write("src/test/data.xml");
+		write("lib/lib.xml");
+		repository.commit("first");
+
+		root = repository.resolveRoot(new FileSystemOptions());
+	}
+
+	@Test
+	public void testTheSelectorIsPushedDownIntoTheWalk() throws Exception
+	{
+		assertThat(paths(root.findFiles(GitFileSelector.suffix(".xml")))).containsOnly("pom.xml", "src/pom.xml", "src/main/config.xml", "src/test/data.xml", "lib/lib.xml");
+		assertThat(paths(root.findFiles(new GitFileSelector("src/**/*.xml")))).containsOnly("src/pom.xml", "src/main/config.xml", "src/test/data.xml");
+		assertThat(paths(root.findFiles(new GitFileSelector("*/pom.xml")))).containsOnly("src/pom.xml");
+		assertThat(paths(root.findFiles(new GitFileSelector("**/*.xml", 2, 2)))).containsOnly("src/pom.xml", "lib/lib.xml");
+		assertThat(paths(root.resolveFile("src").findFiles(new GitFileSelector("*/*.java")))).isEmpty();
+		assertThat(paths(root.resolveFile("src").findFiles(new GitFileSelector("**/*.java")))).containsOnly("src/main/java/Main.java");
+
+		FileObject config = root.findFiles(new GitFileSelector("src/main/config.xml"))[0];
+		assertThat(config).isSameAs(root.resolveFile("src/main/config.xml"));
+		assertThat(config.getContent().getSize()).isEqualTo("src/main/config.xml".length());
+	}
+
+	@Test
+	public void testTheOrderOfVfsIsKept() throws Exception
+	{
+		FileSelector[] selectors = { Selectors.SELECT_ALL, Selectors.SELECT_FILES, Selectors.EXCLUDE_SELF, new FileDepthSelector(1, 2) };
+		for (FileSelector selector : selectors)
+		{
+			for (boolean depthwise : new boolean[] { true, false })
+			{
+				List<FileObject> walked = new ArrayList<FileObject>();
+				root.findFiles(selector, depthwise, walked);
+
+				List<FileObject> listed = new ArrayList<FileObject>();
+				listFiles(root, selector, depthwise, listed);
+				assertThat(paths(walked)).isEqualTo(paths(listed));
+			}
+		}
+	}
+
+	/**
+	 * Find the files as VFS does, with a listing of each folder : the files are listed while a transaction is open.
+	 */
+	private void listFiles(FileObject baseFolder, FileSelector selector, boolean depthwise, List<FileObject> selected) throws Exception
+	{
+		GitTransaction transaction = ((GitFileSystem) baseFolder.getFileSystem()).beginTransaction();
+		try
+		{
+			baseFolder.findFiles(selector, depthwise, selected);
+		} finally
+		{
+			transaction.close();
+		}
+	}
+
+	private List<String> paths(FileObject[] files) throws FileSystemException
+	{
+		List<FileObject> list = new ArrayList<FileObject>();
+		for (FileObject file : files)
+		{
+			list.add(file);
+		}
+		return paths(list);
+	}
+
+	private List<String> paths(List<FileObject> files) throws FileSystemException
+	{
+		List<String> paths = new ArrayList<String>();
+		for (FileObject file : files)
+		{
+			paths.add(root.getName().getRelativeName(file.getName()));
+		}
+		return paths;
+	}
+
+	private void write(String path) throws IOException, GitAPIException
+	{
+		repository.write(path, path);
+	}
+}
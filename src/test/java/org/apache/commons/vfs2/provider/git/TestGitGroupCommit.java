@@ -0,0 +1,119 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+public class TestGitGroupCommit
+{
+
+	private static final int THREADS = 8;
+	private static final int WRITES_PER_THREAD = 25;
+
+	@Rule
+	public final GitTestRepository repository = GitTestRepository.bare();
+
+	@Test
+	public void testConcurrentWritesShareCommits() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setGroupCommitWindow(options, 50);
+		GitFileSystemConfigBuilder.getInstance().setGroupCommitBatchSize(options, 50);
+		final FileObject root = repository.resolveRoot(options);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int i = 0; i < THREADS; i++)
+		{
+			final int thread = i;
+			results.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					for (int j = 0; j < WRITES_PER_THREAD; j++)
+					{
+						write(root.resolveFile("thread" + thread + "/file" + j + ".txt"), "content " + j);
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> result : results)
+		{
+			// each write returned once committed
+			result.get();
+		}
+		executor.shutdown();
+
+		List<RevCommit> commits = Lists.newArrayList(repository.getGit().log().call());
+		assertThat(commits.size()).isLessThan(THREADS * WRITES_PER_THREAD);
+		assertThat(commits.size()).isGreaterThanOrEqualTo(THREADS * WRITES_PER_THREAD / 50);
+
+		assertThat(root.getChildren()).hasSize(THREADS);
+		for (int i = 0; i < THREADS; i++)
+		{
+			assertThat(root.resolveFile("thread" + i).getChildren()).hasSize(WRITES_PER_THREAD);
+			assertThat(read(root.resolveFile("thread" + i + "/file7.txt"))).isEqualTo("content 7");
+		}
+	}
+
+	@Test
+	public void testChangesAreCommittedOnTopOfConcurrentCommits() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setGroupCommitWindow(options, 10);
+		FileObject first = repository.resolveRoot(options);
+		write(first.resolveFile("first.txt"), "first");
+
+		// another file system of the same branch moves it
+		FileSystemOptions otherOptions = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setReference(otherOptions, "refs/heads/master");
+		FileObject second = repository.resolveRoot(otherOptions);
+		assertThat(second.getFileSystem()).isNotSameAs(first.getFileSystem());
+		write(second.resolveFile("second.txt"), "second");
+
+		write(first.resolveFile("third.txt"), "third");
+		first.resolveFile("first.txt").delete();
+
+		List<RevCommit> commits = Lists.newArrayList(repository.getGit().log().call());
+		assertThat(commits).hasSize(4);
+		assertThat(commits.get(0).getFullMessage()).isEqualTo("Delete first.txt");
+		assertThat(first.resolveFile("second.txt").exists()).isTrue();
+		assertThat(first.resolveFile("first.txt").exists()).isFalse();
+	}
+
+	private void write(FileObject file, String content) throws IOException
+	{
+		OutputStream outputStream = file.getContent().getOutputStream();
+		try
+		{
+			outputStream.write(content.getBytes(Charsets.UTF_8));
+		} finally
+		{
+			outputStream.close();
+		}
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+}
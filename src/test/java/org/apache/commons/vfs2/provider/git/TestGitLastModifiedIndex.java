@@ -0,0 +1,88 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitLastModifiedIndex
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit[] commits = new RevCommit[3];
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		repository.write("a.txt", "a");
+		repository.write("folder/b.txt", "b");
+		repository.write("folder/c.txt", "c");
+		repository.write("other/d.txt", "d");
+		commits[0] = commit(1000);
+
+		repository.write("folder/b.txt", "b modified");
+		commits[1] = commit(2000);
+
+		repository.getGit().rm().addFilepattern("folder/c.txt").call();
+		commits[2] = commit(3000);
+	}
+
+	@Test
+	public void testLastModifiedTimeIsTheTimeOfTheLastCommit() throws Exception
+	{
+		FileObject root = repository.resolveRoot(new FileSystemOptions());
+
+		assertThat(root.resolveFile("a.txt").getContent().getLastModifiedTime()).isEqualTo(1000 * 1000L);
+		assertThat(root.resolveFile("folder/b.txt").getContent().getLastModifiedTime()).isEqualTo(2000 * 1000L);
+		assertThat(root.resolveFile("other").getContent().getLastModifiedTime()).isEqualTo(1000 * 1000L);
+		// a file deleted from the folder
+		assertThat(root.resolveFile("folder").getContent().getLastModifiedTime()).isEqualTo(3000 * 1000L);
+		assertThat(root.getContent().getLastModifiedTime()).isEqualTo(3000 * 1000L);
+	}
+
+	@Test
+	public void testUpdateWalksOnlyTheNewCommits() throws Exception
+	{
+		ObjectReader reader = repository.getRepository().newObjectReader();
+		try
+		{
+			GitLastModifiedIndex index = GitLastModifiedIndex.build(reader, commits[1]);
+			assertThat(index.getLastModified("folder")).isEqualTo(2000 * 1000L);
+			assertThat(index.getLastModified("folder/c.txt")).isEqualTo(1000 * 1000L);
+
+			GitLastModifiedIndex updated = index.update(reader, commits[2]);
+			assertThat(updated.getTip()).isEqualTo(commits[2]);
+			assertThat(updated.getLastModified("folder")).isEqualTo(3000 * 1000L);
+			assertThat(updated.getLastModified("folder/b.txt")).isEqualTo(2000 * 1000L);
+			assertThat(updated.getLastModified("a.txt")).isEqualTo(1000 * 1000L);
+			assertThat(updated.getLastModified("")).isEqualTo(3000 * 1000L);
+
+			// not a descendant : rebuilt
+			GitLastModifiedIndex rebuilt = updated.update(reader, commits[0]);
+			assertThat(rebuilt.getLastModified("folder/b.txt")).isEqualTo(1000 * 1000L);
+			assertThat(rebuilt.getLastModified("missing.txt")).isEqualTo(0);
+		} finally
+		{
+			reader.release();
+		}
+	}
+
+	private RevCommit commit(long seconds) throws GitAPIException
+	{
+		PersonIdent person = new PersonIdent("author", "author@example.com", new Date(seconds * 1000), TimeZone.getTimeZone("UTC"));
+		return repository.getGit().commit().setMessage("at " + seconds).setAuthor(person).setCommitter(person).call();
+	}
+}
@@ -0,0 +1,74 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.util.FileObjectUtils;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitListChildren
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit commit;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			repository.write("folder/file" + i + ".txt", "content " + i);
+			repository.write("folder/sub" + i + "/file.txt", "sub " + i);
+		}
+		commit = repository.commit("first");
+	}
+
+	@Test
+	public void testTheChildrenAreListedWithASingleWalk() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		// every lookup walks the tree
+		GitFileSystemConfigBuilder.getInstance().setTreeIndexMaxEntries(options, 0);
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		FileObject folder = repository.resolveRoot(options).resolveFile("folder");
+		GitFileSystem fileSystem = (GitFileSystem) folder.getFileSystem();
+		assertThat(folder.getType()).isEqualTo(FileType.FOLDER);
+		long treeWalks = fileSystem.getMetrics().getTreeWalks();
+
+		FileObject[] children = folder.getChildren();
+		assertThat(children).hasSize(20);
+		for (FileObject child : children)
+		{
+			String path = fileSystem.getRootName().getRelativeName(child.getName());
+			GitFile file = (GitFile) FileObjectUtils.getAbstractFileObject(child);
+			assertThat(file.getType()).isEqualTo(child.getName().getBaseName().endsWith(".txt") ? FileType.FILE : FileType.FOLDER);
+			assertThat(file.getEntry().getObjectId()).isEqualTo(getObjectId(path));
+		}
+		// the types and the ids come from the listing
+		assertThat(fileSystem.getMetrics().getTreeWalks() - treeWalks).isEqualTo(1);
+	}
+
+	private ObjectId getObjectId(String path) throws IOException
+	{
+		TreeWalk treeWalk = TreeWalk.forPath(repository.getRepository(), path, commit.getTree());
+		try
+		{
+			return treeWalk.getObjectId(0);
+		} finally
+		{
+			treeWalk.release();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestGitMetrics
+{
+
+	@Rule
+	public final GitTestRepository repository = GitTestRepository.bare();
+
+	@Test
+	public void testTheOperationsAreCounted() throws Exception
+	{
+		FileObject root = resolveRoot(true);
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		assertThat(fileSystem.getMetrics().getCommits().getCount()).isEqualTo(0);
+
+		write(root.resolveFile("folder/file.txt"), "content");
+		write(root.resolveFile("other.txt"), "other");
+		GitMetricsSnapshot metrics = fileSystem.getMetrics();
+		assertThat(metrics.getCommits().getCount()).isEqualTo(2);
+		assertThat(metrics.getTreeWalks()).isGreaterThan(0);
+		assertThat(metrics.getCommits().getMax(TimeUnit.NANOSECONDS)).isGreaterThan(0);
+
+		FileObject file = root.resolveFile("folder/file.txt");
+		assertThat(IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name())).isEqualTo("content");
+		root.resolveFile("folder").getChildren();
+		GitMetricsSnapshot read = fileSystem.getMetrics();
+		assertThat(read.getObjectsOpened() - metrics.getObjectsOpened()).isEqualTo(1);
+		assertThat(read.getBytesInflated() - metrics.getBytesInflated()).isEqualTo(7);
+		// the paths are looked up in the tree index built once
+		assertThat(read.getTreeWalks()).isEqualTo(metrics.getTreeWalks());
+		assertThat(read.getLookups().getCount()).isGreaterThan(metrics.getLookups().getCount());
+		assertThat(read.getCommits().getCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testTheMetricsAreRegisteredInJmx() throws Exception
+	{
+		FileObject root = resolveRoot(true);
+		write(root.resolveFile("file.txt"), "content");
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName pattern = new ObjectName("org.apache.commons.vfs2.provider.git:type=GitFileSystem,*");
+		Set<ObjectName> names = server.queryNames(pattern, null);
+		assertThat(names).hasSize(1);
+		ObjectName name = names.iterator().next();
+		assertThat(server.getAttribute(name, "CommitCount")).isEqualTo(1L);
+		assertThat(server.getAttribute(name, "Root")).isEqualTo(root.getName().getURI());
+
+		repository.getManager().closeFileSystem(root.getFileSystem());
+		assertThat(server.isRegistered(name)).isFalse();
+	}
+
+	@Test
+	public void testTheBlobCacheIsCountedPerFileSystem() throws Exception
+	{
+		FileObject first = resolveCachingRoot(1);
+		write(first.resolveFile("file.txt"), "content");
+		FileObject second = resolveCachingRoot(2);
+		assertThat(second.getFileSystem()).isNotSameAs(first.getFileSystem());
+
+		for (int i = 0; i < 3; i++)
+		{
+			IOUtils.toString(first.resolveFile("file.txt").getContent().getInputStream(), Charsets.UTF_8.name());
+		}
+		IOUtils.toString(second.resolveFile("file.txt").getContent().getInputStream(), Charsets.UTF_8.name());
+
+		// the cache is shared, its hits and misses are counted by the reading file system
+		GitMetricsSnapshot firstMetrics = ((GitFileSystem) first.getFileSystem()).getMetrics();
+		assertThat(firstMetrics.getBlobCacheMisses()).isEqualTo(1);
+		assertThat(firstMetrics.getBlobCacheHits()).isEqualTo(2);
+		GitMetricsSnapshot secondMetrics = ((GitFileSystem) second.getFileSystem()).getMetrics();
+		assertThat(secondMetrics.getBlobCacheMisses()).isEqualTo(0);
+		assertThat(secondMetrics.getBlobCacheHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void testNothingIsCountedWhenDisabled() throws Exception
+	{
+		FileObject root = resolveRoot(false);
+		write(root.resolveFile("file.txt"), "content");
+		RandomAccessContent content = root.resolveFile("file.txt").getContent().getRandomAccessContent(RandomAccessMode.READ);
+		content.close();
+
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		assertThat(fileSystem.getMetrics()).isNull();
+		assertThat(fileSystem.getMetricsRecorder().snapshot().getTreeWalks()).isEqualTo(0);
+		assertThat(fileSystem.getMetricsRecorder().snapshot().getObjectsOpened()).isEqualTo(0);
+		assertThat(ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName("org.apache.commons.vfs2.provider.git:*"), null)).isEmpty();
+	}
+
+	private FileObject resolveRoot(boolean metricsEnabled) throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, metricsEnabled);
+		return repository.resolveRoot(options);
+	}
+
+	private FileObject resolveCachingRoot(int blobSizeCacheSize) throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		GitFileSystemConfigBuilder.getInstance().setBlobCacheSize(options, 1024 * 1024);
+		// distinct options, distinct file systems
+		GitFileSystemConfigBuilder.getInstance().setBlobSizeCacheSize(options, blobSizeCacheSize);
+		return repository.resolveRoot(options);
+	}
+
+	private void write(FileObject file, String content) throws IOException
+	{
+		OutputStream outputStream = file.getContent().getOutputStream();
+		try
+		{
+			outputStream.write(content.getBytes(Charsets.UTF_8));
+		} finally
+		{
+			outputStream.close();
+		}
+	}
+}
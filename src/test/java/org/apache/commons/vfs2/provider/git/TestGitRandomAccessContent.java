@@ -0,0 +1,235 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.RandomAccessContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepository;
+import org.eclipse.jgit.storage.file.GC;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitRandomAccessContent
+{
+
+	private static final int CONTENT_SIZE = 2 * 1024 * 1024;
+
+	private static final int SPAN = 64 * 1024;
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private byte[] contents;
+	private ObjectId blobId;
+
+	@Before
+	public void createGitRepository() throws IOException
+	{
+		// compressible, incompressible (stored blocks) and trivially compressible parts
+		contents = new byte[CONTENT_SIZE];
+		Random random = new Random(42);
+		for (int i = 0; i < CONTENT_SIZE / 2; i++)
+		{
+			contents[i] = (byte) ('a' + random.nextInt(8));
+		}
+		byte[] noise = new byte[CONTENT_SIZE / 4];
+		random.nextBytes(noise);
+		System.arraycopy(noise, 0, contents, CONTENT_SIZE / 2, noise.length);
+
+		ObjectInserter inserter = repository.getRepository().newObjectInserter();
+		try
+		{
+			blobId = inserter.insert(Constants.OBJ_BLOB, contents);
+			inserter.flush();
+		} finally
+		{
+			inserter.release();
+		}
+	}
+
+	@Test
+	public void testBufferRandomAccess() throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(repository.getRepository().open(blobId).getCachedBytes()).asReadOnlyBuffer();
+		assertRandomAccess(new GitBufferRandomAccessContent(buffer, RandomAccessMode.READ));
+	}
+
+	@Test
+	public void testStreamRandomAccess() throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		GitFileSystem fileSystem = repository.resolveFileSystem(options);
+		assertRandomAccess(new GitStreamRandomAccessContent(fileSystem, blobId, CONTENT_SIZE, RandomAccessMode.READ));
+		// the blob is read through the file system
+		assertThat(fileSystem.getMetrics().getObjectsOpened()).isGreaterThan(0);
+		assertThat(fileSystem.getMetrics().getBytesInflated()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testCheckpointRandomAccessOnLooseObject() throws IOException
+	{
+		assertCheckpointRandomAccess();
+	}
+
+	@Test
+	public void testTempFileRandomAccess() throws IOException
+	{
+		commitBlob();
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setRandomAccessStrategy(options, GitRandomAccessStrategy.TEMP_FILE);
+		GitFileSystemConfigBuilder.getInstance().setPrefetchContentSizes(options, true);
+		FileObject root = repository.resolveRoot(options);
+		int tempFiles = countTempFiles();
+
+		assertRandomAccess(root.resolveFile("blob.bin").getContent().getRandomAccessContent(RandomAccessMode.READ));
+		assertThat(countTempFiles()).isEqualTo(tempFiles);
+
+		// the size is prefetched by the listing, the blob itself can't be read
+		assertThat(root.getChildren()).hasSize(1);
+		root.resolveFile("blob.bin").refresh();
+		FileUtils.forceDelete(new File(repository.getGitDir(), "objects/" + blobId.name().substring(0, 2) + "/" + blobId.name().substring(2)));
+		try
+		{
+			root.resolveFile("blob.bin").getContent().getRandomAccessContent(RandomAccessMode.READ);
+			throw new AssertionError("The missing blob is read");
+		} catch (FileSystemException e)
+		{
+			// the partial copy is deleted
+			assertThat(countTempFiles()).isEqualTo(tempFiles);
+		}
+	}
+
+	@Test
+	public void testCheckpointRandomAccessOnPackedObject() throws IOException, ParseException
+	{
+		commitBlob();
+		GC gc = new GC((FileRepository) repository.getRepository());
+		gc.repack();
+		gc.prunePacked();
+
+		assertThat(repository.getRepository().hasObject(blobId)).isTrue();
+		assertCheckpointRandomAccess();
+	}
+
+	private void commitBlob() throws IOException
+	{
+		ObjectInserter inserter = repository.getRepository().newObjectInserter();
+		try
+		{
+			TreeFormatter tree = new TreeFormatter();
+			tree.append("blob.bin", FileMode.REGULAR_FILE, blobId);
+			CommitBuilder commit = new CommitBuilder();
+			commit.setTreeId(inserter.insert(tree));
+			commit.setAuthor(new PersonIdent("test", "test@test"));
+			commit.setCommitter(commit.getAuthor());
+			commit.setMessage("msg");
+			RefUpdate refUpdate = repository.getRepository().updateRef(Constants.HEAD);
+			refUpdate.setNewObjectId(inserter.insert(commit));
+			inserter.flush();
+			refUpdate.forceUpdate();
+		} finally
+		{
+			inserter.release();
+		}
+	}
+
+	private static int countTempFiles()
+	{
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter()
+		{
+			@Override
+			public boolean accept(File dir, String name)
+			{
+				return name.startsWith("vfs-git") && name.endsWith(".tmp");
+			}
+		});
+		return names == null ? 0 : names.length;
+	}
+
+	private void assertCheckpointRandomAccess() throws IOException
+	{
+		GitCompressedBlob blob = GitCompressedBlob.locate(repository.getRepository(), blobId);
+		assertThat(blob).isNotNull();
+
+		GitInflateIndex index = blob.buildIndex(SPAN);
+		assertThat(index.size()).isGreaterThan(CONTENT_SIZE / SPAN / 2);
+		assertThat(index.getInflatedSize()).isEqualTo(CONTENT_SIZE + blob.getHeaderLength());
+
+		File indexFile = new File(repository.getWorkTree(), "checkpoints");
+		index.write(indexFile);
+		assertThat(GitInflateIndex.read(indexFile, "another source", SPAN)).isNull();
+		GitInflateIndex readIndex = GitInflateIndex.read(indexFile, blob.getSource(), SPAN);
+		assertThat(readIndex.size()).isEqualTo(index.size());
+
+		assertRandomAccess(new GitCheckpointRandomAccessContent(repository.resolveFileSystem(new FileSystemOptions()), blobId, CONTENT_SIZE, blob, index, RandomAccessMode.READ));
+		assertRandomAccess(new GitCheckpointRandomAccessContent(repository.resolveFileSystem(new FileSystemOptions()), blobId, CONTENT_SIZE, blob, readIndex, RandomAccessMode.READ));
+
+		// every checkpoint resumes at the right place
+		RandomAccessContent content = new GitCheckpointRandomAccessContent(repository.resolveFileSystem(new FileSystemOptions()), blobId, CONTENT_SIZE, blob, index, RandomAccessMode.READ);
+		try
+		{
+			for (int checkpoint = 1; checkpoint < index.size(); checkpoint++)
+			{
+				int position = (int) index.getOffset(checkpoint) - blob.getHeaderLength();
+				assertRead(content, position, Math.min(100, CONTENT_SIZE - position));
+			}
+		} finally
+		{
+			content.close();
+		}
+	}
+
+	private void assertRandomAccess(RandomAccessContent content) throws IOException
+	{
+		try
+		{
+			assertThat(content.length()).isEqualTo(CONTENT_SIZE);
+
+			assertRead(content, CONTENT_SIZE - 4096, 4096);
+			assertRead(content, 10, 100);
+			assertRead(content, 200000, 1000);
+			assertRead(content, 0, 1);
+
+			content.seek(1000);
+			assertThat(content.readByte()).isEqualTo(contents[1000]);
+			assertThat(content.getFilePointer()).isEqualTo(1001);
+			content.skipBytes(9);
+			assertThat(content.readByte()).isEqualTo(contents[1010]);
+		} finally
+		{
+			content.close();
+		}
+	}
+
+	private void assertRead(RandomAccessContent content, int position, int length) throws IOException
+	{
+		content.seek(position);
+		byte[] result = new byte[length];
+		content.readFully(result);
+
+		assertThat(result).isEqualTo(Arrays.copyOfRange(contents, position, position + length));
+		assertThat(content.getFilePointer()).isEqualTo(position + length);
+	}
+}
@@ -0,0 +1,126 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitRepositoryPool
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Test
+	public void testRepositoryIsSharedWhileUsed() throws IOException
+	{
+		GitRepositoryPool pool = new GitRepositoryPool(0);
+
+		Repository first = pool.acquire(repository.getGitDir(), null);
+		Repository second = pool.acquire(new File(repository.getWorkTree(), "./" + Constants.DOT_GIT), null);
+		assertThat(second).isSameAs(first);
+
+		pool.release(first);
+		assertThat(pool.size()).isEqualTo(1);
+		pool.release(second);
+		assertThat(pool.size()).isEqualTo(0);
+
+		Repository third = pool.acquire(repository.getGitDir(), null);
+		assertThat(third).isNotSameAs(first);
+		pool.close();
+	}
+
+	@Test
+	public void testIdleRepositoryStaysOpenUntilTimeout() throws IOException
+	{
+		GitRepositoryPool pool = new GitRepositoryPool(60 * 1000);
+
+		Repository first = pool.acquire(repository.getGitDir(), null);
+		pool.release(first);
+		assertThat(pool.size()).isEqualTo(1);
+		assertThat(pool.acquire(repository.getGitDir(), null)).isSameAs(first);
+
+		pool.release(first);
+		pool.setIdleTimeout(0);
+		assertThat(pool.acquire(repository.getGitDir(), null)).isNotSameAs(first);
+		pool.close();
+		assertThat(pool.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testIdleRepositoryIsClosedWithoutFurtherCalls() throws Exception
+	{
+		GitRepositoryPool pool = new GitRepositoryPool(100);
+
+		pool.release(pool.acquire(repository.getGitDir(), null));
+		assertThat(pool.size()).isEqualTo(1);
+		long deadline = System.currentTimeMillis() + 10 * 1000;
+		while (pool.size() > 0 && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(20);
+		}
+		assertThat(pool.size()).isEqualTo(0);
+		pool.close();
+	}
+
+	@Test
+	public void testLargeRepositoryPreset() throws IOException
+	{
+		GitFileSystemConfigBuilder builder = GitFileSystemConfigBuilder.getInstance();
+		FileSystemOptions options = new FileSystemOptions();
+		assertThat(builder.getWindowCacheConfig(options)).isNull();
+
+		builder.setLargeRepositoryPreset(options);
+		builder.setPackedGitMMAP(options, true);
+		WindowCacheConfig cacheConfig = builder.getWindowCacheConfig(options);
+		assertThat(cacheConfig.getPackedGitWindowSize()).isEqualTo(64 * 1024);
+		assertThat(cacheConfig.isPackedGitMMAP()).isTrue();
+
+		GitRepositoryPool pool = new GitRepositoryPool(0);
+		// the defaults are applied first, unless a file system of the JVM applied settings before
+		pool.release(pool.acquire(repository.getGitDir(), new WindowCacheConfig()));
+		WindowCacheConfig applied = GitRepositoryPool.getWindowCacheConfig();
+		assertThat(applied).isNotNull();
+
+		// the pack cache of the JVM isn't emptied for the different settings of another file system
+		GitRepositoryPool other = new GitRepositoryPool(0);
+		Repository otherRepository = other.acquire(repository.getGitDir(), cacheConfig);
+		assertThat(otherRepository.getDirectory()).isEqualTo(repository.getGitDir().getCanonicalFile());
+		assertThat(GitRepositoryPool.getWindowCacheConfig()).isSameAs(applied);
+		other.close();
+		pool.close();
+	}
+
+	@Test
+	public void testFileSystemsOfEveryReferenceShareTheRepository() throws IOException, GitAPIException
+	{
+		repository.write("file.txt", "");
+		RevCommit first = repository.commit("first");
+		repository.commit("second");
+
+		FileSystemOptions headOptions = new FileSystemOptions();
+		FileSystemOptions firstOptions = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setReference(firstOptions, first.getName());
+
+		FileObject headFile = repository.getManager().resolveFile("git://" + new File(repository.getWorkTree(), "file.txt").getAbsolutePath(), headOptions);
+		FileObject firstFile = repository.getManager().resolveFile("git://" + new File(repository.getWorkTree(), "file.txt").getAbsolutePath(), firstOptions);
+		assertThat(headFile.exists()).isTrue();
+		assertThat(firstFile.exists()).isTrue();
+
+		assertThat(headFile.getFileSystem()).isNotSameAs(firstFile.getFileSystem());
+		assertThat(headFile.getFileSystem().getRoot().getName().getPath()).isEqualTo(repository.getWorkTree().getCanonicalPath());
+		Repository headRepository = ((GitFileSystem) headFile.getFileSystem()).getRepository();
+		Repository firstRepository = ((GitFileSystem) firstFile.getFileSystem()).getRepository();
+		assertThat(headRepository).isSameAs(firstRepository);
+	}
+}
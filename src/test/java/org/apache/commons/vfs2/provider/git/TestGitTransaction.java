@@ -0,0 +1,221 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileChangeEvent;
+import org.apache.commons.vfs2.FileListener;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestGitTransaction
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		repository.write("folder/file.txt", "content");
+		repository.commit("first");
+	}
+
+	private FileObject resolveRoot(String reference) throws FileSystemException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setReference(options, reference);
+		return repository.resolveRoot(options);
+	}
+
+	@Test
+	public void testChangesAreRecordedInOneCommit() throws Exception
+	{
+		FileObject root = resolveRoot("");
+		ObjectId head = repository.getRepository().resolve(Constants.HEAD);
+
+		GitTransaction transaction = ((GitFileSystem) root.getFileSystem()).beginTransaction();
+		try
+		{
+			for (int i = 0; i < 100; i++)
+			{
+				write(root.resolveFile("imported/file" + i + ".txt"), "content " + i);
+			}
+			root.resolveFile("folder/file.txt").moveTo(root.resolveFile("moved/file.txt"));
+			root.resolveFile("imported/file0.txt").delete();
+			assertThat(transaction.getChangeCount()).isEqualTo(102);
+
+			// the thread of the transaction reads the staged files
+			assertThat(root.resolveFile("imported").getChildren()).hasSize(99);
+			assertThat(read(root.resolveFile("moved/file.txt"))).isEqualTo("content");
+			transaction.commit("Import");
+		} finally
+		{
+			transaction.close();
+		}
+
+		RevCommit commit = new RevWalk(repository.getRepository()).parseCommit(repository.getRepository().resolve(Constants.HEAD));
+		assertThat(commit.getParentCount()).isEqualTo(1);
+		assertThat(commit.getParent(0).getId()).isEqualTo(head);
+		assertThat(commit.getFullMessage()).isEqualTo("Import");
+
+		assertThat(root.resolveFile("imported").getChildren()).hasSize(99);
+		assertThat(root.resolveFile("imported/file0.txt").exists()).isFalse();
+		assertThat(read(root.resolveFile("imported/file42.txt"))).isEqualTo("content 42");
+		assertThat(root.resolveFile("folder").exists()).isFalse();
+		assertThat(read(root.resolveFile("moved/file.txt"))).isEqualTo("content");
+	}
+
+	@Test
+	public void testAFolderWhoseFilesAreDeletedIsGone() throws Exception
+	{
+		FileObject root = resolveRoot("");
+
+		GitTransaction transaction = ((GitFileSystem) root.getFileSystem()).beginTransaction();
+		try
+		{
+			write(root.resolveFile("other/kept.txt"), "kept");
+			write(root.resolveFile("other/deleted.txt"), "deleted");
+			root.resolveFile("folder/file.txt").delete();
+			root.resolveFile("other/deleted.txt").delete();
+
+			// the folder is gone the way it will be once committed, a folder with a file left stays
+			FileObject folder = root.resolveFile("folder");
+			folder.refresh();
+			assertThat(folder.exists()).isFalse();
+			assertThat(root.resolveFile("other").exists()).isTrue();
+			assertThat(Arrays.asList(root.getChildren())).containsOnly(root.resolveFile("other"));
+			transaction.commit("Delete");
+		} finally
+		{
+			transaction.close();
+		}
+		assertThat(root.resolveFile("folder").exists()).isFalse();
+	}
+
+	@Test
+	public void testCommitFailsWhenTheBranchMoved() throws Exception
+	{
+		FileObject root = resolveRoot("");
+
+		GitTransaction transaction = ((GitFileSystem) root.getFileSystem()).beginTransaction();
+		try
+		{
+			write(root.resolveFile("file.txt"), "content");
+			repository.commit("concurrent");
+			transaction.commit("Write");
+			fail("the branch moved");
+		} catch (IOException e)
+		{
+			assertThat(e.getMessage()).contains("LOCK_FAILURE");
+		} finally
+		{
+			transaction.close();
+		}
+		assertThat(((GitFileSystem) root.getFileSystem()).getTransaction()).isNull();
+	}
+
+	@Test
+	public void testTheCommitsOfOthersAreRefreshed() throws Exception
+	{
+		FileObject root = resolveRoot("");
+		FileObject file = root.resolveFile("folder/file.txt");
+		assertThat(read(file)).isEqualTo("content");
+		final List<String> changed = new ArrayList<String>();
+		root.getFileSystem().addListener(file, new FileListener()
+		{
+			@Override
+			public void fileCreated(FileChangeEvent event)
+			{
+			}
+
+			@Override
+			public void fileDeleted(FileChangeEvent event)
+			{
+			}
+
+			@Override
+			public void fileChanged(FileChangeEvent event)
+			{
+				changed.add(event.getFile().getName().getPath());
+			}
+		});
+
+		// another process commits, then this file system commits on top of it
+		repository.write("folder/file.txt", "modified");
+		repository.commit("other");
+		write(root.resolveFile("written.txt"), "written");
+
+		assertThat(read(file)).isEqualTo("modified");
+		assertThat(changed).containsOnly("/folder/file.txt");
+		assertThat(read(root.resolveFile("written.txt"))).isEqualTo("written");
+	}
+
+	@Test
+	public void testTheCommitsNotifiedOutOfOrderDontMoveBack() throws Exception
+	{
+		FileObject root = resolveRoot("");
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		ObjectId first = fileSystem.getTree();
+		RevCommit base = new RevWalk(repository.getRepository()).parseCommit(repository.getRepository().resolve(Constants.HEAD));
+
+		RevCommit second = commit("second.txt");
+		RevCommit third = commit("third.txt");
+		fileSystem.committed(third, second, Arrays.asList("third.txt"));
+		fileSystem.committed(second, base, Arrays.asList("second.txt"));
+
+		assertThat(fileSystem.getTree()).isEqualTo(third.getTree());
+		assertThat(fileSystem.getTree()).isNotEqualTo(first);
+		assertThat(root.resolveFile("second.txt").exists()).isTrue();
+		assertThat(root.resolveFile("third.txt").exists()).isTrue();
+	}
+
+	private RevCommit commit(String path) throws IOException, GitAPIException
+	{
+		repository.write(path, path);
+		return repository.commit(path);
+	}
+
+	@Test(expected = FileSystemException.class)
+	public void testTransactionNeedsABranch() throws Exception
+	{
+		String commit = repository.getRepository().resolve(Constants.HEAD).name();
+		FileObject root = resolveRoot(commit);
+		((GitFileSystem) root.getFileSystem()).beginTransaction();
+	}
+
+	private void write(FileObject file, String content) throws IOException
+	{
+		OutputStream outputStream = file.getContent().getOutputStream();
+		try
+		{
+			outputStream.write(content.getBytes(Charsets.UTF_8));
+		} finally
+		{
+			outputStream.close();
+		}
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+}
@@ -0,0 +1,100 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitTreeIndex
+{
+
+	private static final String[] PATHS = { "a.txt", "folder/b.txt", "folder/subfolder/c.txt", "folder/subfolder/d.txt", "folder2/e.txt", "z.txt" };
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit commit;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (String path : PATHS)
+		{
+			repository.write(path, path);
+		}
+		commit = repository.commit("msg");
+	}
+
+	@Test
+	public void testFindMatchesTreeWalk() throws IOException
+	{
+		GitTreeIndex index = buildIndex(Integer.MAX_VALUE);
+
+		// root + 6 files + folder, folder/subfolder, folder2
+		assertThat(index.size()).isEqualTo(10);
+		assertThat(index.find("")).isEqualTo(0);
+		assertThat(index.getObjectId(0)).isEqualTo(commit.getTree().copy());
+
+		for (String path : new String[] { "a.txt", "folder", "folder/b.txt", "folder/subfolder", "folder/subfolder/d.txt", "folder2/e.txt" })
+		{
+			TreeWalk treeWalk = TreeWalk.forPath(repository.getRepository(), path, commit.getTree());
+			int slot = index.find(path);
+
+			assertThat(slot).isNotEqualTo(GitTreeIndex.NOT_FOUND);
+			assertThat(index.getPath(slot)).isEqualTo(path);
+			assertThat(index.getFileMode(slot)).isEqualTo(treeWalk.getFileMode(0));
+			assertThat(index.getObjectId(slot)).isEqualTo(treeWalk.getObjectId(0));
+			treeWalk.release();
+		}
+	}
+
+	@Test
+	public void testFindUnknownPath() throws IOException
+	{
+		GitTreeIndex index = buildIndex(Integer.MAX_VALUE);
+
+		assertThat(index.find("unknown.txt")).isEqualTo(GitTreeIndex.NOT_FOUND);
+		assertThat(index.find("folder/subfolder/c")).isEqualTo(GitTreeIndex.NOT_FOUND);
+		assertThat(index.find("folder/")).isEqualTo(GitTreeIndex.NOT_FOUND);
+	}
+
+	@Test
+	public void testFolderRanges() throws IOException
+	{
+		GitTreeIndex index = buildIndex(Integer.MAX_VALUE);
+
+		int folder = index.find("folder");
+		assertThat(index.isTree(folder)).isTrue();
+		assertThat(index.getFileMode(folder)).isEqualTo(FileMode.TREE);
+		// b.txt, subfolder, c.txt, d.txt
+		assertThat(index.getEnd(folder) - folder - 1).isEqualTo(4);
+		assertThat(index.getEnd(index.find("folder/subfolder"))).isEqualTo(index.find("folder2"));
+		assertThat(index.getEnd(0)).isEqualTo(index.size());
+	}
+
+	@Test
+	public void testTooLargeTree() throws IOException
+	{
+		assertThat(buildIndex(5)).isNull();
+	}
+
+	private GitTreeIndex buildIndex(int maxEntries) throws IOException
+	{
+		ObjectReader reader = repository.getRepository().newObjectReader();
+		try
+		{
+			return GitTreeIndex.build(reader, commit.getTree(), maxEntries);
+		} finally
+		{
+			reader.release();
+		}
+	}
+}
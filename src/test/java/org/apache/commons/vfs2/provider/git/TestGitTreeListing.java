@@ -0,0 +1,101 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestGitTreeListing
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private RevCommit first;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		repository.write("a.txt", "a.txt");
+		repository.write("a/b.txt", "a/b.txt");
+		repository.write("a-b", "a-b");
+		repository.write("lib/lib.txt", "lib");
+		first = repository.commit("first");
+		repository.write("a/b.txt", "modified");
+		repository.commit("second");
+	}
+
+	@Test
+	public void testFindInTheOrderOfGit() throws Exception
+	{
+		ObjectReader reader = repository.getRepository().newObjectReader();
+		try
+		{
+			GitTreeListing listing = GitTreeListing.read(reader, first.getTree());
+			assertThat(listing.size()).isEqualTo(4);
+			// a-b, a.txt, a/ and lib/
+			assertThat(listing.getName(0)).isEqualTo("a-b");
+			assertThat(listing.find("a")).isEqualTo(2);
+			assertThat(listing.getFileMode(2)).isEqualTo(FileMode.TREE);
+			assertThat(listing.find("a.txt")).isEqualTo(1);
+			assertThat(listing.find("a-b")).isEqualTo(0);
+			assertThat(listing.find("lib")).isEqualTo(3);
+			assertThat(listing.find("b")).isEqualTo(GitTreeListing.NOT_FOUND);
+			assertThat(listing.getEntry(3, "").getObjectId()).isEqualTo(TreeWalk.forPath(repository.getRepository(), "lib", first.getTree()).getObjectId(0));
+		} finally
+		{
+			reader.release();
+		}
+	}
+
+	@Test
+	public void testListingsAreSharedAcrossReferences() throws Exception
+	{
+		FileObject master = resolveRoot(Constants.MASTER);
+		FileObject previous = resolveRoot(first.getName());
+
+		assertThat(read(master.resolveFile("a/b.txt"))).isEqualTo("modified");
+		assertThat(read(previous.resolveFile("a/b.txt"))).isEqualTo("a/b.txt");
+		assertThat(master.resolveFile("a").getType()).isEqualTo(FileType.FOLDER);
+		assertThat(master.resolveFile("a.txt/b").exists()).isFalse();
+		assertThat(master.resolveFile("missing").exists()).isFalse();
+		assertThat(master.getChildren()).hasSize(4);
+		assertThat(previous.resolveFile("lib").getChildren()).hasSize(1);
+
+		GitFileSystem fileSystem = (GitFileSystem) master.getFileSystem();
+		assertThat(fileSystem.getTreeIndex()).isNull();
+		GitEntry lib = fileSystem.getEntry("lib");
+		GitRepositoryCaches caches = fileSystem.getRepositoryCaches();
+		assertThat(((GitFileSystem) previous.getFileSystem()).getRepositoryCaches()).isSameAs(caches);
+		assertThat(caches.getTreeListing(lib.getObjectId(), 0, 0)).isSameAs(caches.getTreeListing(lib.getObjectId(), 0, 0));
+	}
+
+	private FileObject resolveRoot(String reference) throws IOException
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder config = GitFileSystemConfigBuilder.getInstance();
+		config.setReference(options, reference);
+		config.setTreeListingCacheMaxEntries(options, 1000);
+		return repository.resolveRoot(options);
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+}
@@ -0,0 +1,155 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileChangeEvent;
+import org.apache.commons.vfs2.FileListener;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.provider.AbstractFileObject;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class TestGitTreeRefresh
+{
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		repository.write("unchanged/file.txt", "unchanged");
+		repository.write("folder/modified.txt", "content");
+		repository.write("folder/deleted.txt", "deleted");
+		repository.commit("first");
+	}
+
+	@Test
+	public void testOnlyTheChangedFilesAreRefreshed() throws Exception
+	{
+		FileObject root = repository.resolveRoot(new FileSystemOptions());
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		assertThat(fileSystem.refreshTree()).isFalse();
+
+		FileObject unchanged = root.resolveFile("unchanged/file.txt");
+		FileObject modified = root.resolveFile("folder/modified.txt");
+		FileObject deleted = root.resolveFile("folder/deleted.txt");
+		FileObject created = root.resolveFile("folder/created.txt");
+		assertThat(read(unchanged)).isEqualTo("unchanged");
+		assertThat(read(modified)).isEqualTo("content");
+		assertThat(created.exists()).isFalse();
+		assertThat(root.resolveFile("folder").getChildren()).hasSize(2);
+
+		RecordingListener listener = new RecordingListener();
+		for (FileObject file : new FileObject[] { unchanged, modified, deleted, created })
+		{
+			fileSystem.addListener(file, listener);
+		}
+
+		// another process commits on the branch
+		repository.write("folder/modified.txt", "modified");
+		repository.write("folder/created.txt", "created");
+		repository.getGit().rm().addFilepattern("folder/deleted.txt").call();
+		repository.commit("second");
+		assertThat(read(modified)).isEqualTo("content");
+
+		assertThat(fileSystem.refreshTree()).isTrue();
+		assertThat(listener.events).containsOnly("created folder/created.txt", "deleted folder/deleted.txt", "changed folder/modified.txt");
+		assertThat(((AbstractFileObject) unchanged).isAttached()).isTrue();
+
+		assertThat(read(modified)).isEqualTo("modified");
+		assertThat(created.exists()).isTrue();
+		assertThat(deleted.exists()).isFalse();
+		assertThat(root.resolveFile("folder").getChildren()).hasSize(2);
+		assertThat(fileSystem.refreshTree()).isFalse();
+	}
+
+	@Test
+	public void testAFolderCreatedOrDeletedIsASingleChange() throws Exception
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			repository.write("large/file" + i + ".txt", "content " + i);
+		}
+		repository.commit("large");
+		FileObject root = repository.resolveRoot(new FileSystemOptions());
+		GitFileSystem fileSystem = (GitFileSystem) root.getFileSystem();
+		assertThat(root.getChildren()).hasSize(3);
+
+		RecordingListener listener = new RecordingListener();
+		fileSystem.addListener(root.resolveFile("large"), listener);
+		fileSystem.addListener(root.resolveFile("created"), listener);
+		fileSystem.addListener(root.resolveFile("large/file1.txt"), listener);
+
+		repository.getGit().rm().addFilepattern("large").call();
+		for (int i = 0; i < 100; i++)
+		{
+			repository.write("created/file" + i + ".txt", "content " + i);
+		}
+		repository.commit("second");
+
+		assertThat(fileSystem.refreshTree()).isTrue();
+		// the files of the folders are neither resolved nor notified
+		assertThat(listener.events).containsOnly("created created", "deleted large");
+		assertThat(root.resolveFile("large").exists()).isFalse();
+		assertThat(root.resolveFile("created").getChildren()).hasSize(100);
+	}
+
+	@Test
+	public void testTheReferenceIsPolled() throws Exception
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setRefreshInterval(options, 20);
+		FileObject root = repository.resolveRoot(options);
+		FileObject created = root.resolveFile("created.txt");
+		assertThat(created.exists()).isFalse();
+
+		repository.write("created.txt", "created");
+		repository.commit("second");
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!created.exists() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(20);
+		}
+		assertThat(created.exists()).isTrue();
+	}
+
+	private String read(FileObject file) throws IOException
+	{
+		return IOUtils.toString(file.getContent().getInputStream(), Charsets.UTF_8.name());
+	}
+
+	private static final class RecordingListener implements FileListener
+	{
+		private final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void fileCreated(FileChangeEvent event)
+		{
+			events.add("created " + event.getFile().getName().getPath().substring(1));
+		}
+
+		@Override
+		public void fileDeleted(FileChangeEvent event)
+		{
+			events.add("deleted " + event.getFile().getName().getPath().substring(1));
+		}
+
+		@Override
+		public void fileChanged(FileChangeEvent event)
+		{
+			events.add("changed " + event.getFile().getName().getPath().substring(1));
+		}
+	}
+}
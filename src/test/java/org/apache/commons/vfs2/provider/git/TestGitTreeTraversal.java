@@ -0,0 +1,229 @@
+package org.apache.commons.vfs2.provider.git;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.util.FileObjectUtils;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestGitTreeTraversal
+{
+
+	// in the order of git, a folder sorts as its name followed by a slash
+	private static final List<String> PATHS = Arrays.asList("a.txt", "a", "a/b", "a/b/c.txt", "a/d.txt", "e", "e/f.txt", "e/g", "e/g/h.txt", "i.txt");
+
+	@Rule
+	public final GitTestRepository repository = new GitTestRepository();
+
+	private GitFileSystem fileSystem;
+
+	@Before
+	public void createGitRepository() throws IOException, GitAPIException
+	{
+		for (String path : PATHS)
+		{
+			if ( path.endsWith(".txt") )
+			{
+				write(path);
+			}
+		}
+		repository.commit("first");
+		fileSystem = repository.resolveFileSystem(options());
+	}
+
+	private FileSystemOptions options()
+	{
+		FileSystemOptions options = new FileSystemOptions();
+		GitFileSystemConfigBuilder.getInstance().setTraversalParallelism(options, 4);
+		return options;
+	}
+
+	@Test
+	public void testTraverseInParallel() throws Exception
+	{
+		final List<String> paths = Collections.synchronizedList(new ArrayList<String>());
+		fileSystem.traverse("", new GitFileVisitor()
+		{
+			@Override
+			public void visit(GitFile file) throws IOException
+			{
+				assertThat(file.getType()).isEqualTo(file.getName().getBaseName().endsWith(".txt") ? FileType.FILE : FileType.FOLDER);
+				paths.add(path(file));
+			}
+		}, false);
+		assertThat(paths).hasSize(PATHS.size()).containsOnly(PATHS.toArray());
+	}
+
+	@Test
+	public void testTraverseInTheOrderOfTheTree() throws Exception
+	{
+		assertThat(traverseOrdered("")).isEqualTo(PATHS);
+		assertThat(traverseOrdered("e")).isEqualTo(Arrays.asList("e/f.txt", "e/g", "e/g/h.txt"));
+	}
+
+	@Test(expected = FileSystemException.class)
+	public void testTraverseAFile() throws Exception
+	{
+		traverseOrdered("a.txt");
+	}
+
+	@Test
+	public void testVisitorFailure() throws Exception
+	{
+		final IOException failure = new IOException("visit failed");
+		try
+		{
+			fileSystem.traverse("", new GitFileVisitor()
+			{
+				@Override
+				public void visit(GitFile file) throws IOException
+				{
+					if ( path(file).equals("e/g/h.txt") )
+					{
+						throw failure;
+					}
+				}
+			}, false);
+			throw new AssertionError("The failure of the visitor isn't thrown");
+		} catch (IOException e)
+		{
+			assertThat(e).isSameAs(failure);
+		}
+	}
+
+	@Test
+	public void testTheTraversalsShareTheirThreads() throws Exception
+	{
+		final Set<String> pools = Collections.synchronizedSet(new HashSet<String>());
+		for (int traversal = 0; traversal < 3; traversal++)
+		{
+			fileSystem.traverse("", new GitFileVisitor()
+			{
+				@Override
+				public void visit(GitFile file)
+				{
+					String thread = Thread.currentThread().getName();
+					pools.add(thread.substring(0, thread.indexOf("-worker")));
+				}
+			}, false);
+		}
+		assertThat(pools).hasSize(1);
+	}
+
+	@Test
+	public void testTheResolvedFilesDontWaitForTheFileSystemLock() throws Exception
+	{
+		GitFile resolved = (GitFile) FileObjectUtils.getAbstractFileObject(repository.resolveRoot(options()).resolveFile("a/d.txt"));
+		final Map<String, GitFile> files = new ConcurrentHashMap<String, GitFile>();
+		final GitFileVisitor visitor = new GitFileVisitor()
+		{
+			@Override
+			public void visit(GitFile file) throws IOException
+			{
+				files.put(path(file), file);
+			}
+		};
+		fileSystem.traverse("", visitor, false);
+		assertThat(files.get("a/d.txt")).isSameAs(resolved);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			synchronized (fileSystem)
+			{
+				// the files are in the cache of the file system now
+				Future<?> traversal = executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						fileSystem.traverse("", visitor, false);
+						return null;
+					}
+				});
+				traversal.get(30, TimeUnit.SECONDS);
+			}
+		} finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testTheOrderedTraversalReadsABoundedNumberOfSubtreesAhead() throws Exception
+	{
+		for (int folder = 0; folder < 50; folder++)
+		{
+			write("wide/folder" + folder + "/file.txt");
+		}
+		repository.commit("wide");
+		FileSystemOptions options = options();
+		GitFileSystemConfigBuilder.getInstance().setTraversalParallelism(options, 1);
+		GitFileSystemConfigBuilder.getInstance().setMetricsEnabled(options, true);
+		final GitFileSystem wideFileSystem = repository.resolveFileSystem(options);
+		wideFileSystem.getTreeIndex();
+
+		final long walks = wideFileSystem.getMetrics().getTreeWalks();
+		final int[] folders = new int[1];
+		wideFileSystem.traverse("wide", new GitFileVisitor()
+		{
+			@Override
+			public void visit(GitFile file) throws IOException
+			{
+				// the subtrees walked are the ones visited, the one visited and at most 4 per thread ahead
+				assertThat(wideFileSystem.getMetrics().getTreeWalks() - walks).isLessThanOrEqualTo(folders[0] + 2 + 4);
+				if ( file.getType() == FileType.FOLDER )
+				{
+					folders[0]++;
+				}
+			}
+		}, true);
+		assertThat(folders[0]).isEqualTo(50);
+	}
+
+	private List<String> traverseOrdered(String path) throws IOException
+	{
+		final List<String> paths = new ArrayList<String>();
+		final Thread caller = Thread.currentThread();
+		fileSystem.traverse(path, new GitFileVisitor()
+		{
+			@Override
+			public void visit(GitFile file) throws IOException
+			{
+				assertThat(Thread.currentThread()).isSameAs(caller);
+				paths.add(path(file));
+			}
+		}, true);
+		return paths;
+	}
+
+	private String path(GitFile file) throws FileSystemException
+	{
+		return fileSystem.getRootName().getRelativeName(file.getName());
+	}
+
+	private void write(String path) throws IOException, GitAPIException
+	{
+		repository.write(path, path);
+	}
+}